@@ -15,6 +15,11 @@
  */
 package net.jafaran;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.util.Random;
 
 /**
@@ -57,6 +62,12 @@ public abstract class AbstractRNG extends Random {
     
     private static final long serialVersionUID = 1L;
     
+    /**
+     * Max number of values generated at once into a temporary array,
+     * when filling a buffer that is not backed by an accessible array.
+     */
+    private static final int MAX_BUFFER_CHUNK_SIZE = 256;
+    
     /**
      * Could as well be non-final, but adding final shouldn't hurt, and could
      * even help if extending classes publish "this" in their constructors.
@@ -172,6 +183,10 @@ public abstract class AbstractRNG extends Random {
     }
 
     /**
+     * Uses Lemire's nearly divisionless algorithm ("Fast Random Integer
+     * Generation in an Interval", D. Lemire, 2019), which is unbiased,
+     * and only computes a remainder in rare cases.
+     * 
      * @return Uniform int in [0,n[.
      */
     @Override
@@ -181,19 +196,25 @@ public abstract class AbstractRNG extends Random {
         }
 
         if ((n & -n) == n) {
-            return (int)((n * (long)(nextInt() & Integer.MAX_VALUE)) >> 31);
+            // Using MSBits (no rejection).
+            return (int)(((this.nextInt() & 0xFFFFFFFFL) * n) >>> 32);
         }
 
-        int bits;
-        int val;
-        do {
-            bits = (this.nextInt() & Integer.MAX_VALUE);
-            val = bits % n;
-        } while (bits - val + (n-1) < 0);
-        return val;
+        long m = (this.nextInt() & 0xFFFFFFFFL) * n;
+        if ((m & 0xFFFFFFFFL) < n) {
+            // Rejecting values that would cause a bias,
+            // i.e. with 32 LSBits below 2^32 % n.
+            final long threshold = (1L<<32) % n;
+            while ((m & 0xFFFFFFFFL) < threshold) {
+                m = (this.nextInt() & 0xFFFFFFFFL) * n;
+            }
+        }
+        return (int)(m >>> 32);
     }
     
     /**
+     * Uses Lemire's nearly divisionless algorithm, as nextInt(int).
+     * 
      * @return Uniform long in [0,n[.
      */
     public long nextLong(long n) {
@@ -207,13 +228,313 @@ public abstract class AbstractRNG extends Random {
             return this.nextInt((int)n);
         }
 
-        long bits;
-        long val;
-        do {
-            bits = (this.nextLong() & Long.MAX_VALUE);
-            val = bits % n;
-        } while (bits - val + (n-1) < 0);
-        return val;
+        if ((n & -n) == n) {
+            // Using MSBits (no rejection).
+            return this.nextLong() >>> (Long.numberOfLeadingZeros(n) + 1);
+        }
+
+        long bits = this.nextLong();
+        long lo = bits * n;
+        if (lo + Long.MIN_VALUE < n + Long.MIN_VALUE) {
+            // Rejecting values that would cause a bias,
+            // i.e. with 64 LSBits below 2^64 % n
+            // (unsigned comparisons).
+            final long threshold = RandomUtilz.twoPow64Remainder(n);
+            while (lo + Long.MIN_VALUE < threshold + Long.MIN_VALUE) {
+                bits = this.nextLong();
+                lo = bits * n;
+            }
+        }
+        return RandomUtilz.unsignedMultiplyHigh(bits, n);
+    }
+    
+    /*
+     * bulk
+     */
+
+    /**
+     * Fills the specified range with uniform ints,
+     * as if by successive calls to nextInt().
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first int to set.
+     * @param len Number of ints to set.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            dst[i] = this.nextInt();
+        }
+    }
+
+    /**
+     * Fills the specified range with uniform ints in [0,n[,
+     * as if by successive calls to nextInt(int).
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first int to set.
+     * @param len Number of ints to set.
+     * @param n Upper bound (exclusive), must be positive.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     * @throws IllegalArgumentException if n is not positive.
+     */
+    public void nextInts(int[] dst, int off, int len, int n) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        // Same algorithm as nextInt(int), but with threshold computed
+        // once for all (0 for powers of two).
+        final long threshold = (1L<<32) % n;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            long m;
+            do {
+                m = (this.nextInt() & 0xFFFFFFFFL) * n;
+            } while ((m & 0xFFFFFFFFL) < threshold);
+            dst[i] = (int)(m >>> 32);
+        }
+    }
+
+    /**
+     * Fills the specified range with uniform longs,
+     * as if by successive calls to nextLong().
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first long to set.
+     * @param len Number of longs to set.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            dst[i] = this.nextLong();
+        }
+    }
+
+    /**
+     * Fills the specified range with uniform longs in [0,n[,
+     * as if by successive calls to nextLong(long).
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first long to set.
+     * @param len Number of longs to set.
+     * @param n Upper bound (exclusive), must be positive.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     * @throws IllegalArgumentException if n is not positive.
+     */
+    public void nextLongs(long[] dst, int off, int len, long n) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        final int end = off + len;
+        if (n <= Integer.MAX_VALUE) {
+            // Same algorithm as nextInt(int), but with threshold computed
+            // once for all (0 for powers of two).
+            final long threshold = (1L<<32) % n;
+            for (int i=off;i<end;i++) {
+                long m;
+                do {
+                    m = (this.nextInt() & 0xFFFFFFFFL) * n;
+                } while ((m & 0xFFFFFFFFL) < threshold);
+                dst[i] = (m >>> 32);
+            }
+        } else {
+            // Same algorithm as nextLong(long), but with threshold computed
+            // once for all (0 for powers of two).
+            final long thresholdBiased = RandomUtilz.twoPow64Remainder(n) + Long.MIN_VALUE;
+            for (int i=off;i<end;i++) {
+                long bits;
+                do {
+                    bits = this.nextLong();
+                } while ((bits * n) + Long.MIN_VALUE < thresholdBiased);
+                dst[i] = RandomUtilz.unsignedMultiplyHigh(bits, n);
+            }
+        }
+    }
+    
+    /**
+     * Uses 8 bytes of each nextLong(), LSByte first,
+     * and only calls nextLong() for a last partial group of bytes.
+     * Not using Random's implementation, which calls nextInt()
+     * for each group of 4 bytes.
+     */
+    @Override
+    public void nextBytes(byte[] bytes) {
+        this.nextBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Fills the specified range with uniform bytes, using 8 bytes of each
+     * nextLong(), LSByte first (the unused bytes of the last long, if any,
+     * being lost).
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first byte to set.
+     * @param len Number of bytes to set.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        int i = off;
+        final int end = off + len;
+        final int longsEnd = off + (len & ~7);
+        while (i < longsEnd) {
+            RandomUtilz.putBytes(this.nextLong(), dst, i, 8);
+            i += 8;
+        }
+        if (i < end) {
+            RandomUtilz.putBytes(this.nextLong(), dst, i, end - i);
+        }
+    }
+
+    /**
+     * Fills the remaining bytes of the specified buffer with uniform bytes,
+     * and sets its position to its limit.
+     * 
+     * Bytes are the same as those nextBytes(byte[],int,int) would compute,
+     * whatever the order of the specified buffer.
+     * 
+     * @param dst Buffer to fill.
+     * @throws NullPointerException if the specified buffer is null.
+     * @throws ReadOnlyBufferException if the specified buffer is read-only.
+     */
+    public void nextBytes(ByteBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        final int pos = dst.position();
+        final int len = dst.limit() - pos;
+        if (dst.hasArray()) {
+            this.nextBytes(dst.array(), dst.arrayOffset() + pos, len);
+            dst.position(pos + len);
+        } else {
+            // Bytes must be put LSByte first.
+            final boolean mustReverse = (dst.order() == ByteOrder.BIG_ENDIAN);
+            int done = 0;
+            while (len - done >= 8) {
+                final long bits = this.nextLong();
+                dst.putLong(mustReverse ? Long.reverseBytes(bits) : bits);
+                done += 8;
+            }
+            if (done < len) {
+                long bits = this.nextLong();
+                do {
+                    dst.put((byte)bits);
+                    bits >>= 8;
+                } while (++done < len);
+            }
+        }
+    }
+
+    /**
+     * Fills the specified range with uniform floats,
+     * as if by successive calls to nextFloat().
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first float to set.
+     * @param len Number of floats to set.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            dst[i] = (this.nextInt() & ((1<<24)-1)) * (1.0f/(1<<24));
+        }
+    }
+
+    /**
+     * Fills the remaining floats of the specified buffer with uniform floats,
+     * as if by successive calls to nextFloat(), and sets its position
+     * to its limit.
+     * 
+     * @param dst Buffer to fill.
+     * @throws NullPointerException if the specified buffer is null.
+     * @throws ReadOnlyBufferException if the specified buffer is read-only.
+     */
+    public void nextFloats(FloatBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        final int pos = dst.position();
+        final int len = dst.limit() - pos;
+        if (dst.hasArray()) {
+            this.nextFloats(dst.array(), dst.arrayOffset() + pos, len);
+            dst.position(pos + len);
+        } else {
+            final float[] tmp = new float[Math.min(len, MAX_BUFFER_CHUNK_SIZE)];
+            for (int done=0;done<len;) {
+                final int chunkSize = Math.min(tmp.length, len - done);
+                this.nextFloats(tmp, 0, chunkSize);
+                dst.put(tmp, 0, chunkSize);
+                done += chunkSize;
+            }
+        }
+    }
+
+    /**
+     * Fills the specified range with uniform doubles,
+     * as if by successive calls to nextDouble().
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first double to set.
+     * @param len Number of doubles to set.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            dst[i] = (this.nextLong() & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+    }
+
+    /**
+     * Fills the remaining doubles of the specified buffer with uniform doubles,
+     * as if by successive calls to nextDouble(), and sets its position
+     * to its limit.
+     * 
+     * @param dst Buffer to fill.
+     * @throws NullPointerException if the specified buffer is null.
+     * @throws ReadOnlyBufferException if the specified buffer is read-only.
+     */
+    public void nextDoubles(DoubleBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        final int pos = dst.position();
+        final int len = dst.limit() - pos;
+        if (dst.hasArray()) {
+            this.nextDoubles(dst.array(), dst.arrayOffset() + pos, len);
+            dst.position(pos + len);
+        } else {
+            final double[] tmp = new double[Math.min(len, MAX_BUFFER_CHUNK_SIZE)];
+            for (int done=0;done<len;) {
+                final int chunkSize = Math.min(tmp.length, len - done);
+                this.nextDoubles(tmp, 0, chunkSize);
+                dst.put(tmp, 0, chunkSize);
+                done += chunkSize;
+            }
+        }
     }
     
     /*
@@ -236,6 +557,39 @@ public abstract class AbstractRNG extends Random {
         return Ziggurat.nextGaussianFast(this);
     }
     
+    /*
+     * exponential
+     */
+    
+    /**
+     * Uses an exponential Ziggurat, which is much faster than
+     * -log(nextDouble()).
+     * 
+     * @return Exponential double, of rate (and mean) 1.
+     */
+    public double nextExponential() {
+        return Ziggurat.nextExponential(this);
+    }
+
+    /**
+     * Fills the specified range with exponential doubles,
+     * as if by successive calls to nextExponential().
+     * 
+     * @param dst Array to fill.
+     * @param off Index of the first double to set.
+     * @param len Number of doubles to set.
+     * @throws NullPointerException if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    public void nextExponentials(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            dst[i] = this.nextExponential();
+        }
+    }
+    
     /*
      * state get/set
      */
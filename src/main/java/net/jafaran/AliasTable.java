@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples indexes of categories with probabilities proportional to specified
+ * weights, in O(1) time, using Walker's alias method, with a table built
+ * in O(k) time by Vose's construction.
+ * 
+ * Each draw uses a single nextLong(): its product by the number of
+ * categories is taken as a fixed-point number, which integer part (high bits)
+ * picks the column, and fractional part (low bits) the coin, choosing between
+ * the column and its alias.
+ * Each column is stored in a single long of a primitive array (coin threshold
+ * in its 33 MSBits, alias in its 31 LSBits), so that a draw reads a single
+ * array element, i.e. causes at most one cache miss for large tables.
+ * 
+ * Draws don't allocate.
+ * Instances are immutable, and thread-safe if the specified RNG is.
+ */
+public class AliasTable {
+
+    /*
+     * "A Linear Algorithm For Generating Random Numbers With a Given
+     * Distribution", M. D. Vose, 1991.
+     * 
+     * Using the 32 MSBits of the fractional part for the coin, against
+     * a threshold in [0,2^32] (2^32 meaning the column never uses its alias),
+     * the probability of using the alias is off by at most 1/2^33 (rounding
+     * of the threshold), and the probability of picking a column by less
+     * than 1/2^64 (depending on whether it gets floor(2^64/k) or
+     * ceil(2^64/k) values of nextLong()).
+     */
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final int ALIAS_BITS = 31;
+    private static final long ALIAS_MASK = (1L<<ALIAS_BITS)-1;
+    
+    private static final double TWO_POW_32 = (double)(1L<<32);
+    
+    /**
+     * (threshold<<31)|alias, for each column.
+     */
+    private final long[] table;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param weights Weights of categories (each >= 0 and finite, with
+     *        a sum > 0 and finite). Not retained.
+     * @throws IllegalArgumentException if weights is empty, or if weights
+     *         are not as specified.
+     */
+    public AliasTable(double[] weights) {
+        final int k = weights.length;
+        if (k == 0) {
+            throw new IllegalArgumentException("weights must not be empty");
+        }
+        double sum = 0.0;
+        for (int i=0;i<k;i++) {
+            final double weight = weights[i];
+            if (!((weight >= 0.0) && (weight < Double.POSITIVE_INFINITY))) {
+                throw new IllegalArgumentException("weights["+i+"] ["+weight+"] must be >= 0 and finite");
+            }
+            sum += weight;
+        }
+        if (!((sum > 0.0) && (sum < Double.POSITIVE_INFINITY))) {
+            throw new IllegalArgumentException("sum of weights ["+sum+"] must be > 0 and finite");
+        }
+        
+        /*
+         * Vose's construction, with probabilities scaled by k,
+         * i.e. in [0,k], 1 meaning a full column.
+         */
+        
+        final double[] probs = new double[k];
+        final long[] table = new long[k];
+        // Stacks of indexes of small (< 1) and large (>= 1) probabilities,
+        // in a same array: small ones from start, large ones from end.
+        final int[] stacks = new int[k];
+        int nbrOfSmall = 0;
+        int largeIndex = k;
+        for (int i=0;i<k;i++) {
+            // Not using weights[i] * (k / sum), which overflows
+            // if sum is subnormal (and 0 * Infinity is NaN).
+            final double prob = (weights[i] / sum) * k;
+            probs[i] = prob;
+            if (prob < 1.0) {
+                stacks[nbrOfSmall++] = i;
+            } else {
+                stacks[--largeIndex] = i;
+            }
+        }
+        while ((nbrOfSmall != 0) && (largeIndex != k)) {
+            final int small = stacks[--nbrOfSmall];
+            final int large = stacks[largeIndex++];
+            table[small] = entry(probs[small], large);
+            // Computed this way for accuracy.
+            final double prob = (probs[large] + probs[small]) - 1.0;
+            probs[large] = prob;
+            if (prob < 1.0) {
+                stacks[nbrOfSmall++] = large;
+            } else {
+                stacks[--largeIndex] = large;
+            }
+        }
+        // Remaining ones are full (modulo rounding errors).
+        while (largeIndex != k) {
+            final int large = stacks[largeIndex++];
+            table[large] = entry(1.0, large);
+        }
+        while (nbrOfSmall != 0) {
+            final int small = stacks[--nbrOfSmall];
+            table[small] = entry(1.0, small);
+        }
+        this.table = table;
+    }
+    
+    /**
+     * @return The number of categories (k).
+     */
+    public int getNbrOfCategories() {
+        return this.table.length;
+    }
+    
+    /**
+     * @param rng RNG to use.
+     * @return Index of a category, in [0,getNbrOfCategories()[.
+     */
+    public int next(AbstractRNG rng) {
+        final long[] table = this.table;
+        final long k = table.length;
+        final long bits = rng.nextLong();
+        // Unsigned 64*31 bits product, as a fixed-point number
+        // (bits being a fraction in [0,1[): column is its integer part
+        // (bits 64 to 94), and coin its fractional part (low 64 bits),
+        // of which we use the 32 MSBits.
+        final long lowProduct = (bits & 0xFFFFFFFFL) * k;
+        final long midProduct = (bits>>>32) * k + (lowProduct>>>32);
+        final int column = (int)(midProduct>>>32);
+        final long coin = midProduct & 0xFFFFFFFFL;
+        final long entry = table[column];
+        return (coin < (entry>>>ALIAS_BITS)) ? column : (int)(entry & ALIAS_MASK);
+    }
+
+    /**
+     * Equivalent to len successive calls to next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the indexes.
+     * @param off Index where to put the first index.
+     * @param len Number of indexes to put.
+     * @throws IndexOutOfBoundsException if the specified range is out of dst.
+     */
+    public void next(AbstractRNG rng, int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        for (int i=0;i<len;i++) {
+            dst[off+i] = this.next(rng);
+        }
+    }
+    
+    /**
+     * Equivalent to next(rng,dst,0,dst.length).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array to fill with indexes.
+     */
+    public void next(AbstractRNG rng, int[] dst) {
+        this.next(rng, dst, 0, dst.length);
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param prob Probability of not using alias, in [0,1].
+     */
+    private static long entry(double prob, int alias) {
+        final long threshold = (long)(Math.min(1.0, prob) * TWO_POW_32 + 0.5);
+        return (threshold<<ALIAS_BITS) | alias;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+/**
+ * What concurrent RNGs do after a failed attempt (failed CAS, or state being
+ * replaced by another thread), before trying again.
+ * 
+ * Spins are busy loops, which number of iterations grows exponentially with
+ * the number of consecutive failures of the call, up to 2^10.
+ */
+public enum BackoffPolicy {
+    /**
+     * Trying again right away (fastest under low contention).
+     */
+    NONE {
+        @Override
+        void backoff(int nbrOfFailures) {
+        }
+    },
+    /**
+     * Spinning 2^(number of failures) iterations.
+     */
+    EXPONENTIAL {
+        @Override
+        void backoff(int nbrOfFailures) {
+            spin(1 << Math.min(nbrOfFailures, MAX_SPIN_SHIFT));
+        }
+    },
+    /**
+     * Yielding, which lets other threads progress if there are more of them
+     * than cores (closest thing to a spin-wait hint available in Java 5).
+     */
+    YIELD {
+        @Override
+        void backoff(int nbrOfFailures) {
+            Thread.yield();
+        }
+    },
+    /**
+     * Spinning a random number of iterations, in [0,2^(number of failures)[,
+     * so that threads that failed together don't retry together.
+     */
+    RANDOMIZED {
+        @Override
+        void backoff(int nbrOfFailures) {
+            final int window = 1 << Math.min(nbrOfFailures, MAX_SPIN_SHIFT);
+            // Thread-specific and time-varying, without shared state.
+            final long hash = RandomUtilz.mix64(System.nanoTime() + Thread.currentThread().getId() * RandomUtilz.GOLDEN_GAMMA);
+            spin(((int)hash) & (window-1));
+        }
+    };
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final int MAX_SPIN_SHIFT = 10;
+    
+    /**
+     * Written (almost never) for spin loops not to be optimized away.
+     */
+    private static volatile int spinSink;
+    
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param nbrOfFailures Number of consecutive failed attempts
+     *        of current call, >= 1.
+     */
+    abstract void backoff(int nbrOfFailures);
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static void spin(int nbrOfIterations) {
+        int x = nbrOfIterations | 1;
+        for (int i=0;i<nbrOfIterations;i++) {
+            // Xor-shift, which can't be computed in closed form.
+            x ^= (x << 13);
+            x ^= (x >>> 17);
+            x ^= (x << 5);
+        }
+        if (x == 0) {
+            // Never happens, since xor-shift of non-zero is non-zero.
+            spinSink = x;
+        }
+    }
+}
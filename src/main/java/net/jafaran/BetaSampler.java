@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples beta distribution of given shapes (alpha, beta), as X/(X+Y),
+ * with X and Y gamma-distributed of shapes alpha and beta.
+ * 
+ * If a shape is < 1, the ratio is computed from logarithms of X and Y,
+ * which don't underflow, to avoid 0/0 for tiny shapes.
+ * 
+ * Reusable, and draws don't allocate (see GammaSampler).
+ */
+public class BetaSampler {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private final GammaSampler gammaX;
+    private final GammaSampler gammaY;
+    
+    private final boolean useLogs;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param alpha First shape (>= GammaSampler.MIN_SHAPE, and finite).
+     * @param beta Second shape (>= GammaSampler.MIN_SHAPE, and finite).
+     * @throws IllegalArgumentException if alpha or beta is not
+     *         >= GammaSampler.MIN_SHAPE and finite.
+     */
+    public BetaSampler(
+            double alpha,
+            double beta) {
+        GammaSampler.checkMinFinite("alpha", alpha, GammaSampler.MIN_SHAPE);
+        GammaSampler.checkMinFinite("beta", beta, GammaSampler.MIN_SHAPE);
+        this.gammaX = new GammaSampler(alpha);
+        this.gammaY = new GammaSampler(beta);
+        this.useLogs = this.gammaX.isBoosted() || this.gammaY.isBoosted();
+    }
+    
+    @Override
+    public String toString() {
+        return "[alpha = " + this.getAlpha() + ", beta = " + this.getBeta() + "]";
+    }
+    
+    public double getAlpha() {
+        return this.gammaX.getShape();
+    }
+
+    public double getBeta() {
+        return this.gammaY.getShape();
+    }
+
+    /**
+     * @param rng RNG to use.
+     * @return A beta-distributed double, in [0,1].
+     */
+    public double next(AbstractRNG rng) {
+        if (this.useLogs) {
+            final double logX = this.gammaX.nextLogUnscaled(rng);
+            final double logY = this.gammaY.nextLogUnscaled(rng);
+            return 1.0/(1.0 + StrictMath.exp(logY - logX));
+        } else {
+            final double x = this.gammaX.nextMT(rng);
+            final double y = this.gammaY.nextMT(rng);
+            return x/(x + y);
+        }
+    }
+
+    /**
+     * Equivalent to len successive calls to next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the beta-distributed doubles.
+     * @param off Index where to put the first double.
+     * @param len Number of doubles to put.
+     * @throws IndexOutOfBoundsException if the specified range is out of dst.
+     */
+    public void next(AbstractRNG rng, double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        for (int i=0;i<len;i++) {
+            dst[off+i] = this.next(rng);
+        }
+    }
+}
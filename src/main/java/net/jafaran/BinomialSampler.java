@@ -0,0 +1,386 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples binomial distribution of given number of trials (n) and
+ * probability of success (p).
+ * 
+ * For n*min(p,1-p) <= 30, uses inversion (about n*min(p,1-p)+1 iterations
+ * per draw), and otherwise Kachitvichyanukul and Schmeiser's BTPE
+ * (constant expected time), counting failures if p > 0.5.
+ * 
+ * Setup (parameters-dependent constants) is cached, keyed by (n,p):
+ * next(AbstractRNG,int,double) only recomputes it if parameters differ
+ * from those of previous call, which makes repeated draws with a same
+ * (n,p) cheap, and allows to use a single instance for varying parameters.
+ * Draws don't allocate.
+ * 
+ * Not thread-safe (setup being mutable), but can use any RNG.
+ */
+public class BinomialSampler {
+
+    /*
+     * "Binomial Random Variate Generation", V. Kachitvichyanukul and
+     * B. W. Schmeiser, 1988.
+     * 
+     * BTPE: triangle in the middle (immediate acceptance), parallelograms
+     * on its sides, and exponential tails, with acceptance test by explicit
+     * evaluation of f(y)/f(m) if y is close to the mode, or else by squeeze
+     * and Stirling's formula.
+     * Unlike in the paper (and implementations copied from it), we subtract
+     * Stirling's corrections of log(y!) and log((n-y)!) instead of adding them,
+     * which makes the final bound exact (to about 1e-12) instead of too large
+     * by about 1/(6*y)+1/(6*(n-y)).
+     * 
+     * Using StrictMath, as Ziggurat, so that a same uniform randomness
+     * always yields a same sequence.
+     */
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * n*min(p,1-p) above which we use BTPE.
+     */
+    static final double BTPE_MIN_NR = 30.0;
+    
+    private int n;
+    private double p;
+    
+    /**
+     * min(p,1-p)
+     */
+    private double r;
+    /**
+     * 1-r
+     */
+    private double q;
+    
+    private boolean useInversion;
+    
+    /*
+     * For inversion.
+     */
+    
+    /**
+     * q^n, i.e. probability of 0.
+     */
+    private double qn;
+    /**
+     * r/q
+     */
+    private double s;
+    /**
+     * Beyond this, we restart with a new uniform, which means probability
+     * mass beyond it is ignored.
+     */
+    private double bound;
+    
+    /*
+     * For BTPE.
+     */
+    
+    private double nrq;
+    private double m;
+    private double p1;
+    private double xm;
+    private double xl;
+    private double xr;
+    private double c;
+    private double laml;
+    private double lamr;
+    private double p2;
+    private double p3;
+    private double p4;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Creates a sampler with n = 0 and p = 0, for use with
+     * next(AbstractRNG,int,double).
+     */
+    public BinomialSampler() {
+        this(0, 0.0);
+    }
+    
+    /**
+     * @param n Number of trials (>= 0).
+     * @param p Probability of success (in [0,1]).
+     * @throws IllegalArgumentException if n < 0 or p is not in [0,1].
+     */
+    public BinomialSampler(
+            int n,
+            double p) {
+        checkParams(n, p);
+        this.setUp(n, p);
+    }
+    
+    @Override
+    public String toString() {
+        return "[n = " + this.n + ", p = " + this.p + "]";
+    }
+    
+    /**
+     * @return Number of trials of last setup.
+     */
+    public int getN() {
+        return this.n;
+    }
+    
+    /**
+     * @return Probability of success of last setup.
+     */
+    public double getP() {
+        return this.p;
+    }
+
+    /**
+     * Uses parameters of last setup.
+     * 
+     * @param rng RNG to use.
+     * @return A binomially-distributed int, in [0,n].
+     */
+    public int next(AbstractRNG rng) {
+        final int y;
+        if (this.useInversion) {
+            y = this.nextInversion(rng);
+        } else {
+            y = this.nextBTPE(rng);
+        }
+        return (this.p > 0.5) ? this.n - y : y;
+    }
+
+    /**
+     * Recomputes setup if n or p differ from last setup.
+     * 
+     * @param rng RNG to use.
+     * @param n Number of trials (>= 0).
+     * @param p Probability of success (in [0,1]).
+     * @return A binomially-distributed int, in [0,n].
+     * @throws IllegalArgumentException if n < 0 or p is not in [0,1].
+     */
+    public int next(AbstractRNG rng, int n, double p) {
+        if ((n != this.n) || (p != this.p)) {
+            checkParams(n, p);
+            this.setUp(n, p);
+        }
+        return this.next(rng);
+    }
+
+    /**
+     * Equivalent to len successive calls to next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the binomially-distributed ints.
+     * @param off Index where to put the first int.
+     * @param len Number of ints to put.
+     * @throws IndexOutOfBoundsException if the specified range is out of dst.
+     */
+    public void next(AbstractRNG rng, int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        for (int i=0;i<len;i++) {
+            dst[off+i] = this.next(rng);
+        }
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static void checkParams(int n, double p) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n ["+n+"] must be >= 0");
+        }
+        if (!((p >= 0.0) && (p <= 1.0))) {
+            throw new IllegalArgumentException("p ["+p+"] must be in [0,1]");
+        }
+    }
+    
+    private void setUp(int n, double p) {
+        this.n = n;
+        this.p = p;
+        final double r = Math.min(p, 1.0 - p);
+        final double q = 1.0 - r;
+        this.r = r;
+        this.q = q;
+        final double nr = n * r;
+        this.useInversion = (nr <= BTPE_MIN_NR);
+        if (this.useInversion) {
+            this.qn = StrictMath.exp(n * StrictMath.log(q));
+            this.s = r / q;
+            this.bound = Math.min(n, nr + 10.0 * StrictMath.sqrt(nr * q + 1.0));
+        } else {
+            final double nrq = nr * q;
+            final double fm = nr + r;
+            final double m = Math.floor(fm);
+            final double p1 = Math.floor(2.195 * StrictMath.sqrt(nrq) - 4.6 * q) + 0.5;
+            final double xm = m + 0.5;
+            final double xl = xm - p1;
+            final double xr = xm + p1;
+            final double c = 0.134 + 20.5/(15.3 + m);
+            double a = (fm - xl)/(fm - xl * r);
+            final double laml = a * (1.0 + 0.5 * a);
+            a = (xr - fm)/(xr * q);
+            final double lamr = a * (1.0 + 0.5 * a);
+            final double p2 = p1 * (1.0 + 2.0 * c);
+            final double p3 = p2 + c/laml;
+            final double p4 = p3 + c/lamr;
+            this.nrq = nrq;
+            this.m = m;
+            this.p1 = p1;
+            this.xm = xm;
+            this.xl = xl;
+            this.xr = xr;
+            this.c = c;
+            this.laml = laml;
+            this.lamr = lamr;
+            this.p2 = p2;
+            this.p3 = p3;
+            this.p4 = p4;
+        }
+    }
+    
+    /**
+     * @return A binomially-distributed int for (n,r).
+     */
+    private int nextInversion(AbstractRNG rng) {
+        final int n = this.n;
+        final double s = this.s;
+        final double bound = this.bound;
+        int x = 0;
+        double px = this.qn;
+        double u = rng.nextDouble();
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                x = 0;
+                px = this.qn;
+                u = rng.nextDouble();
+            } else {
+                u -= px;
+                px *= ((n - x + 1) * s) / x;
+            }
+        }
+        return x;
+    }
+
+    /**
+     * @return A binomially-distributed int for (n,r).
+     */
+    private int nextBTPE(AbstractRNG rng) {
+        final double n = this.n;
+        final double r = this.r;
+        final double q = this.q;
+        final double nrq = this.nrq;
+        final double m = this.m;
+        final double p1 = this.p1;
+        final double xm = this.xm;
+        final double c = this.c;
+        while (true) {
+            final double u = rng.nextDouble() * this.p4;
+            double v = rng.nextDouble();
+            final double y;
+            if (u <= p1) {
+                // Triangle: immediate acceptance.
+                return (int)Math.floor(xm - p1 * v + u);
+            } else if (u <= this.p2) {
+                // Parallelograms.
+                final double x = this.xl + (u - p1)/c;
+                v = v * c + 1.0 - Math.abs(m - x + 0.5)/p1;
+                if (v > 1.0) {
+                    continue;
+                }
+                y = Math.floor(x);
+            } else if (u <= this.p3) {
+                // Left exponential tail.
+                y = Math.floor(this.xl + StrictMath.log(v)/this.laml);
+                if (y < 0.0) {
+                    continue;
+                }
+                v *= (u - this.p2) * this.laml;
+            } else {
+                // Right exponential tail.
+                y = Math.floor(this.xr - StrictMath.log(v)/this.lamr);
+                if (y > n) {
+                    continue;
+                }
+                v *= (u - this.p3) * this.lamr;
+            }
+            
+            final double k = Math.abs(y - m);
+            if ((k <= 20.0) || (k >= 0.5 * nrq - 1.0)) {
+                // Explicit evaluation of f(y)/f(m), by recursion.
+                final double s = r / q;
+                final double a = s * (n + 1.0);
+                double f = 1.0;
+                if (m < y) {
+                    for (double i=m+1.0;i<=y;i++) {
+                        f *= (a/i - s);
+                    }
+                } else if (m > y) {
+                    for (double i=y+1.0;i<=m;i++) {
+                        f /= (a/i - s);
+                    }
+                }
+                if (v <= f) {
+                    return (int)y;
+                }
+                continue;
+            }
+            
+            // Squeeze, using upper and lower bounds on log(f(y)/f(m)).
+            final double rho = (k/nrq) * ((k * (k/3.0 + 0.625) + 1.0/6)/nrq + 0.5);
+            final double t = -(k * k)/(2.0 * nrq);
+            final double logV = StrictMath.log(v);
+            if (logV < t - rho) {
+                return (int)y;
+            }
+            if (logV > t + rho) {
+                continue;
+            }
+            
+            // Final acceptance test, with Stirling's formula.
+            final double x1 = y + 1.0;
+            final double f1 = m + 1.0;
+            final double z = n + 1.0 - m;
+            final double w = n - y + 1.0;
+            final double bound = xm * StrictMath.log(f1/x1)
+                    + (n - m + 0.5) * StrictMath.log(z/w)
+                    + (y - m) * StrictMath.log((w * r)/(x1 * q))
+                    + stirlingCorrection(f1)
+                    + stirlingCorrection(z)
+                    - stirlingCorrection(x1)
+                    - stirlingCorrection(w);
+            if (logV <= bound) {
+                return (int)y;
+            }
+        }
+    }
+    
+    /**
+     * @return Correction term of Stirling's formula for log(gamma(x))
+     *         (1/(12*x) - 1/(360*x^3) + ...).
+     */
+    private static double stirlingCorrection(double x) {
+        final double x2 = x * x;
+        return (13860.0 - (462.0 - (132.0 - (99.0 - 140.0/x2)/x2)/x2)/x2)/x/166320.0;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples chi-squared distribution of a given number of degrees of freedom,
+ * as a gamma distribution of shape k/2 and scale 2.
+ * 
+ * Reusable, and draws don't allocate (see GammaSampler).
+ */
+public class ChiSquaredSampler {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private final double degreesOfFreedom;
+    
+    private final GammaSampler gamma;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param degreesOfFreedom Number of degrees of freedom
+     *        (>= 2*GammaSampler.MIN_SHAPE, and finite, not necessarily
+     *        integer).
+     * @throws IllegalArgumentException if degreesOfFreedom is not
+     *         >= 2*GammaSampler.MIN_SHAPE and finite.
+     */
+    public ChiSquaredSampler(double degreesOfFreedom) {
+        GammaSampler.checkMinFinite("degreesOfFreedom", degreesOfFreedom, 2 * GammaSampler.MIN_SHAPE);
+        this.degreesOfFreedom = degreesOfFreedom;
+        this.gamma = new GammaSampler(0.5 * degreesOfFreedom, 2.0);
+    }
+    
+    @Override
+    public String toString() {
+        return "[degreesOfFreedom = " + this.degreesOfFreedom + "]";
+    }
+    
+    public double getDegreesOfFreedom() {
+        return this.degreesOfFreedom;
+    }
+    
+    /**
+     * @param rng RNG to use.
+     * @return A chi-squared-distributed double, >= 0 (+Infinity possible
+     *         by overflow, for huge numbers of degrees of freedom).
+     */
+    public double next(AbstractRNG rng) {
+        return this.gamma.next(rng);
+    }
+
+    /**
+     * Equivalent to len successive calls to next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the chi-squared-distributed doubles.
+     * @param off Index where to put the first double.
+     * @param len Number of doubles to put.
+     * @throws IndexOutOfBoundsException if the specified range is out of dst.
+     */
+    public void next(AbstractRNG rng, double[] dst, int off, int len) {
+        this.gamma.next(rng, dst, off, len);
+    }
+}
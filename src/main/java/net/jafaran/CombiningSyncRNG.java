@@ -0,0 +1,572 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe RNG, as a wrapper around a backing (and typically sequential)
+ * RNG, using flat combining: a thread that can't acquire the lock publishes
+ * its request (method, and number of values for bulk methods) into
+ * a combining array, and the thread holding the lock serves all pending
+ * requests in one pass over the backing RNG.
+ * 
+ * Under contention, this avoids a lock hand-off (possibly with park/unpark)
+ * per call, and keeps the backing RNG's state in the cache of the combining
+ * thread. Waiting threads spin (yielding), so this is a blocking
+ * implementation.
+ * 
+ * When used by a single thread, gives the same output than the backing RNG.
+ */
+public class CombiningSyncRNG extends AbstractRNG {
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE CLASSES
+    //--------------------------------------------------------------------------
+
+    /**
+     * Request of a thread, reused for all its calls.
+     */
+    private static class MyRequest {
+        int op;
+        /**
+         * Number of bits for next(int).
+         */
+        int nbrOfBits;
+        /**
+         * Upper bound (exclusive), for bounded methods.
+         */
+        long bound;
+        /**
+         * Array or buffer to fill, for bulk methods.
+         */
+        Object dst;
+        int off;
+        int len;
+        /**
+         * Result of scalar methods, as raw bits for floating points.
+         */
+        long result;
+        /**
+         * Set to true by the combiner once the request has been served.
+         */
+        volatile boolean done;
+        /**
+         * Index of the slot where to try to publish first.
+         */
+        int slotIndex;
+    }
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int OP_BITS = 0;
+    private static final int OP_INT = 1;
+    private static final int OP_LONG = 2;
+    private static final int OP_FLOAT = 3;
+    private static final int OP_DOUBLE = 4;
+    private static final int OP_GAUSSIAN = 5;
+    private static final int OP_INTS = 6;
+    private static final int OP_LONGS = 7;
+    private static final int OP_FLOATS = 8;
+    private static final int OP_DOUBLES = 9;
+    private static final int OP_BYTES = 10;
+    private static final int OP_EXPONENTIAL = 11;
+    private static final int OP_EXPONENTIALS = 12;
+    private static final int OP_INT_BOUNDED = 13;
+    private static final int OP_LONG_BOUNDED = 14;
+    private static final int OP_INTS_BOUNDED = 15;
+    private static final int OP_LONGS_BOUNDED = 16;
+    private static final int OP_BYTE_BUFFER = 17;
+    private static final int OP_FLOAT_BUFFER = 18;
+    private static final int OP_DOUBLE_BUFFER = 19;
+    
+    /**
+     * Max number of passes over the combining array per combining,
+     * for the combiner not to be kept serving others forever.
+     */
+    private static final int MAX_NBR_OF_PASSES = 4;
+    
+    /**
+     * Guarded by the lock.
+     */
+    private final AbstractRNG rng;
+    
+    /**
+     * Contains 1 if locked, 0 otherwise.
+     */
+    private final PostPaddedAtomicLong lock = new PostPaddedAtomicLong();
+    
+    /**
+     * Pending requests.
+     */
+    private final AtomicReferenceArray<MyRequest> slots;
+    
+    /**
+     * Transient because not serializable, and then lazily recreated.
+     */
+    private transient ThreadLocal<MyRequest> requestByThread;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Uses twice as many slots as available processors.
+     * 
+     * @param rng The backing (and typically sequential) RNG instance.
+     * @throws NullPointerException if the specified RNG is null.
+     */
+    public CombiningSyncRNG(AbstractRNG rng) {
+        this(rng, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param rng The backing (and typically sequential) RNG instance.
+     * @param nbrOfSlots Number of slots in the combining array,
+     *        i.e. max number of pending requests. Must be >= 1.
+     * @throws NullPointerException if the specified RNG is null.
+     * @throws IllegalArgumentException if nbrOfSlots < 1.
+     */
+    public CombiningSyncRNG(AbstractRNG rng, int nbrOfSlots) {
+        super((Void)null);
+        if (rng == null) {
+            throw new NullPointerException();
+        }
+        if (nbrOfSlots < 1) {
+            throw new IllegalArgumentException("nbrOfSlots ["+nbrOfSlots+"] must be >= 1");
+        }
+        this.rng = rng;
+        this.slots = new AtomicReferenceArray<MyRequest>(nbrOfSlots);
+        this.requestByThread = newRequestByThread(nbrOfSlots);
+    }
+    
+    /*
+     * uniform
+     */
+
+    @Override
+    public int nextInt() {
+        final MyRequest request = this.getRequest();
+        request.op = OP_INT;
+        this.execute(request);
+        return (int)request.result;
+    }
+    
+    @Override
+    public long nextLong() {
+        final MyRequest request = this.getRequest();
+        request.op = OP_LONG;
+        this.execute(request);
+        return request.result;
+    }
+    
+    @Override
+    public float nextFloat() {
+        final MyRequest request = this.getRequest();
+        request.op = OP_FLOAT;
+        this.execute(request);
+        return Float.intBitsToFloat((int)request.result);
+    }
+
+    @Override
+    public double nextDouble() {
+        final MyRequest request = this.getRequest();
+        request.op = OP_DOUBLE;
+        this.execute(request);
+        return Double.longBitsToDouble(request.result);
+    }
+    
+    @Override
+    public int nextInt(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        final MyRequest request = this.getRequest();
+        request.op = OP_INT_BOUNDED;
+        request.bound = n;
+        this.execute(request);
+        return (int)request.result;
+    }
+    
+    @Override
+    public long nextLong(long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        final MyRequest request = this.getRequest();
+        request.op = OP_LONG_BOUNDED;
+        request.bound = n;
+        this.execute(request);
+        return request.result;
+    }
+    
+    /*
+     * bulk
+     */
+    
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        this.executeBulk(OP_INTS, dst, off, len, 0L);
+    }
+    
+    @Override
+    public void nextInts(int[] dst, int off, int len, int n) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        this.executeBulk(OP_INTS_BOUNDED, dst, off, len, n);
+    }
+    
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        this.executeBulk(OP_LONGS, dst, off, len, 0L);
+    }
+    
+    @Override
+    public void nextLongs(long[] dst, int off, int len, long n) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        this.executeBulk(OP_LONGS_BOUNDED, dst, off, len, n);
+    }
+    
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        this.executeBulk(OP_BYTES, dst, off, len, 0L);
+    }
+    
+    @Override
+    public void nextBytes(ByteBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        this.executeBulk(OP_BYTE_BUFFER, dst, 0, 0, 0L);
+    }
+    
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        this.executeBulk(OP_FLOATS, dst, off, len, 0L);
+    }
+    
+    @Override
+    public void nextFloats(FloatBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        this.executeBulk(OP_FLOAT_BUFFER, dst, 0, 0, 0L);
+    }
+    
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        this.executeBulk(OP_DOUBLES, dst, off, len, 0L);
+    }
+    
+    @Override
+    public void nextDoubles(DoubleBuffer dst) {
+        if (dst.isReadOnly()) {
+            throw new ReadOnlyBufferException();
+        }
+        this.executeBulk(OP_DOUBLE_BUFFER, dst, 0, 0, 0L);
+    }
+    
+    /*
+     * gaussian
+     */
+
+    @Override
+    public double nextGaussian() {
+        final MyRequest request = this.getRequest();
+        request.op = OP_GAUSSIAN;
+        this.execute(request);
+        return Double.longBitsToDouble(request.result);
+    }
+    
+    /*
+     * exponential
+     */
+
+    @Override
+    public double nextExponential() {
+        final MyRequest request = this.getRequest();
+        request.op = OP_EXPONENTIAL;
+        this.execute(request);
+        return Double.longBitsToDouble(request.result);
+    }
+    
+    @Override
+    public void nextExponentials(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        this.executeBulk(OP_EXPONENTIALS, dst, off, len, 0L);
+    }
+    
+    /*
+     * state get/set
+     */
+    
+    @Override
+    public byte[] getState() {
+        this.lock();
+        try {
+            return this.rng.getState();
+        } finally {
+            this.unlock();
+        }
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        this.lock();
+        try {
+            this.rng.setState(state);
+        } finally {
+            this.unlock();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        // No need to handle case where this.rng is null,
+        // since the constructor we use doesn't cause
+        // current method to be called.
+        this.lock();
+        try {
+            // We can bypass setSeed(long), since we know that the object has
+            // been created (and set).
+            this.rng.setSeedImpl(seed);
+        } finally {
+            this.unlock();
+        }
+    }
+
+    /**
+     * Overriding to use backing RNG's stored bits.
+     */
+    @Override
+    protected int next(int bits) {
+        final MyRequest request = this.getRequest();
+        request.op = OP_BITS;
+        request.nbrOfBits = bits;
+        this.execute(request);
+        return (int)request.result;
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static ThreadLocal<MyRequest> newRequestByThread(final int nbrOfSlots) {
+        return new ThreadLocal<MyRequest>() {
+            @Override
+            protected MyRequest initialValue() {
+                final MyRequest request = new MyRequest();
+                // Spreading threads over slots.
+                request.slotIndex = (int)(Thread.currentThread().getId() % nbrOfSlots);
+                return request;
+            }
+        };
+    }
+    
+    private MyRequest getRequest() {
+        ThreadLocal<MyRequest> requestByThread = this.requestByThread;
+        if (requestByThread == null) {
+            // Only happens after deserialization. Racy, but concurrent
+            // creations would only cause some requests to be recreated.
+            requestByThread = newRequestByThread(this.slots.length());
+            this.requestByThread = requestByThread;
+        }
+        return requestByThread.get();
+    }
+    
+    /**
+     * @param dst Array, or buffer (in which case off and len are not used).
+     * @param bound Upper bound (exclusive), for bounded methods.
+     */
+    private void executeBulk(int op, Object dst, int off, int len, long bound) {
+        final MyRequest request = this.getRequest();
+        request.op = op;
+        request.bound = bound;
+        request.dst = dst;
+        request.off = off;
+        request.len = len;
+        try {
+            this.execute(request);
+        } finally {
+            // Not to retain the array or buffer.
+            request.dst = null;
+        }
+    }
+    
+    /**
+     * Executes the specified request, either directly if the lock can be
+     * acquired, or by publishing it for the combiner to serve it (possibly
+     * becoming the combiner meanwhile).
+     */
+    private void execute(MyRequest request) {
+        if (this.tryLock()) {
+            try {
+                this.serve(request);
+                this.combine();
+            } finally {
+                this.unlock();
+            }
+            return;
+        }
+        
+        final boolean published = this.publish(request);
+        while (true) {
+            if (published && request.done) {
+                return;
+            }
+            if (this.tryLock()) {
+                try {
+                    if (!published) {
+                        this.serve(request);
+                    }
+                    // If our request is published and not done yet,
+                    // combining serves it, since it's in a slot.
+                    this.combine();
+                } finally {
+                    this.unlock();
+                }
+                return;
+            }
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * @return True if the specified request could be published, false
+     *         if all slots are busy.
+     */
+    private boolean publish(MyRequest request) {
+        final AtomicReferenceArray<MyRequest> slots = this.slots;
+        final int nbrOfSlots = slots.length();
+        request.done = false;
+        int index = request.slotIndex;
+        for (int k=0;k<nbrOfSlots;k++) {
+            if ((slots.get(index) == null)
+                    && slots.compareAndSet(index, null, request)) {
+                // Next time, trying this slot first.
+                request.slotIndex = index;
+                return true;
+            }
+            if (++index == nbrOfSlots) {
+                index = 0;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Must be called with the lock held.
+     * Serves pending requests.
+     */
+    private void combine() {
+        final AtomicReferenceArray<MyRequest> slots = this.slots;
+        final int nbrOfSlots = slots.length();
+        for (int p=0;p<MAX_NBR_OF_PASSES;p++) {
+            boolean servedSome = false;
+            for (int i=0;i<nbrOfSlots;i++) {
+                final MyRequest request = slots.get(i);
+                if (request != null) {
+                    this.serve(request);
+                    // Freeing the slot before signaling completion,
+                    // for the requester to be able to publish into it
+                    // again once done.
+                    slots.set(i, null);
+                    request.done = true;
+                    servedSome = true;
+                }
+            }
+            if (!servedSome) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Must be called with the lock held.
+     * Can't throw (other than errors), since arguments have been checked
+     * by the requester.
+     */
+    private void serve(MyRequest request) {
+        final AbstractRNG rng = this.rng;
+        switch (request.op) {
+        case OP_BITS: request.result = rng.next(request.nbrOfBits); break;
+        case OP_INT: request.result = rng.nextInt(); break;
+        case OP_LONG: request.result = rng.nextLong(); break;
+        case OP_FLOAT: request.result = Float.floatToRawIntBits(rng.nextFloat()); break;
+        case OP_DOUBLE: request.result = Double.doubleToRawLongBits(rng.nextDouble()); break;
+        case OP_GAUSSIAN: request.result = Double.doubleToRawLongBits(rng.nextGaussian()); break;
+        case OP_INTS: rng.nextInts((int[])request.dst, request.off, request.len); break;
+        case OP_LONGS: rng.nextLongs((long[])request.dst, request.off, request.len); break;
+        case OP_FLOATS: rng.nextFloats((float[])request.dst, request.off, request.len); break;
+        case OP_DOUBLES: rng.nextDoubles((double[])request.dst, request.off, request.len); break;
+        case OP_BYTES: rng.nextBytes((byte[])request.dst, request.off, request.len); break;
+        case OP_EXPONENTIAL: request.result = Double.doubleToRawLongBits(rng.nextExponential()); break;
+        case OP_EXPONENTIALS: rng.nextExponentials((double[])request.dst, request.off, request.len); break;
+        case OP_INT_BOUNDED: request.result = rng.nextInt((int)request.bound); break;
+        case OP_LONG_BOUNDED: request.result = rng.nextLong(request.bound); break;
+        case OP_INTS_BOUNDED: rng.nextInts((int[])request.dst, request.off, request.len, (int)request.bound); break;
+        case OP_LONGS_BOUNDED: rng.nextLongs((long[])request.dst, request.off, request.len, request.bound); break;
+        case OP_BYTE_BUFFER: rng.nextBytes((ByteBuffer)request.dst); break;
+        case OP_FLOAT_BUFFER: rng.nextFloats((FloatBuffer)request.dst); break;
+        case OP_DOUBLE_BUFFER: rng.nextDoubles((DoubleBuffer)request.dst); break;
+        default:
+            throw new AssertionError(request.op);
+        }
+    }
+    
+    /*
+     * 
+     */
+    
+    private boolean tryLock() {
+        // Reading first, to avoid useless CASes (and cache line
+        // invalidations) while locked.
+        final PostPaddedAtomicLong lock = this.lock;
+        return (lock.get() == 0L) && lock.compareAndSet(0L, 1L);
+    }
+    
+    private void lock() {
+        while (!this.tryLock()) {
+            Thread.yield();
+        }
+    }
+    
+    private void unlock() {
+        this.lock.set(0L);
+    }
+}
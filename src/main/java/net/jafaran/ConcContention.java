@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Backoff policy, and optional striped contention counters,
+ * of a concurrent RNG.
+ */
+final class ConcContention implements Serializable {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * Default: no backoff, and no counters.
+     */
+    static final ConcContention NONE = new ConcContention(BackoffPolicy.NONE, false);
+    
+    private static final int ATTEMPTS_INDEX = 0;
+    private static final int FAILED_CASES_INDEX = 1;
+    private static final int HOLDER_SWAPS_INDEX = 2;
+    
+    /**
+     * Each stripe spans 8 longs, i.e. 64 bytes, for counters of different
+     * stripes not to share cache lines (except for a stripe and its
+     * neighbours if the array is not aligned).
+     */
+    private static final int STRIPE_SPAN_SHIFT = 3;
+    
+    /**
+     * Golden ratio multiplier, to spread ids of successive threads.
+     */
+    private static final int THREAD_ID_MULTIPLIER = 0x9E3779B9;
+    
+    final BackoffPolicy backoffPolicy;
+    
+    /**
+     * Null if no counters.
+     */
+    private final AtomicLongArray counters;
+    
+    private final int stripeMask;
+
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param backoffPolicy Backoff policy.
+     * @param withCounters True if must count attempts, failed CASes
+     *        and holder swaps.
+     * @throws NullPointerException if the specified policy is null.
+     */
+    static ConcContention newInstance(BackoffPolicy backoffPolicy, boolean withCounters) {
+        if ((backoffPolicy == BackoffPolicy.NONE) && (!withCounters)) {
+            return NONE;
+        }
+        return new ConcContention(backoffPolicy, withCounters);
+    }
+    
+    boolean hasCounters() {
+        return this.counters != null;
+    }
+    
+    /**
+     * To be called when a call is done with shared state.
+     * Does nothing if no counters.
+     */
+    void onDone(int nbrOfAttempts, int nbrOfFailedCASes, int nbrOfHolderSwaps) {
+        final AtomicLongArray counters = this.counters;
+        if (counters == null) {
+            return;
+        }
+        final int offset = this.stripeOffset();
+        counters.addAndGet(offset + ATTEMPTS_INDEX, nbrOfAttempts);
+        if (nbrOfFailedCASes != 0) {
+            counters.addAndGet(offset + FAILED_CASES_INDEX, nbrOfFailedCASes);
+        }
+        if (nbrOfHolderSwaps != 0) {
+            counters.addAndGet(offset + HOLDER_SWAPS_INDEX, nbrOfHolderSwaps);
+        }
+    }
+    
+    /**
+     * @return Sums of counters, or null if no counters.
+     */
+    ContentionStats getStats() {
+        final AtomicLongArray counters = this.counters;
+        if (counters == null) {
+            return null;
+        }
+        long nbrOfAttempts = 0;
+        long nbrOfFailedCASes = 0;
+        long nbrOfHolderSwaps = 0;
+        for (int offset=0;offset<counters.length();offset+=(1<<STRIPE_SPAN_SHIFT)) {
+            nbrOfAttempts += counters.get(offset + ATTEMPTS_INDEX);
+            nbrOfFailedCASes += counters.get(offset + FAILED_CASES_INDEX);
+            nbrOfHolderSwaps += counters.get(offset + HOLDER_SWAPS_INDEX);
+        }
+        return new ContentionStats(nbrOfAttempts, nbrOfFailedCASes, nbrOfHolderSwaps);
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private ConcContention(BackoffPolicy backoffPolicy, boolean withCounters) {
+        if (backoffPolicy == null) {
+            throw new NullPointerException();
+        }
+        this.backoffPolicy = backoffPolicy;
+        if (withCounters) {
+            // Power of two, at least twice the number of CPUs.
+            int nbrOfStripes = 1;
+            while (nbrOfStripes < 2 * Runtime.getRuntime().availableProcessors()) {
+                nbrOfStripes <<= 1;
+            }
+            this.counters = new AtomicLongArray(nbrOfStripes << STRIPE_SPAN_SHIFT);
+            this.stripeMask = nbrOfStripes - 1;
+        } else {
+            this.counters = null;
+            this.stripeMask = 0;
+        }
+    }
+    
+    /**
+     * @return Index of the first counter of the stripe of current thread.
+     */
+    private int stripeOffset() {
+        final int hash = ((int)Thread.currentThread().getId()) * THREAD_ID_MULTIPLIER;
+        return ((hash >>> 16) & this.stripeMask) << STRIPE_SPAN_SHIFT;
+    }
+}
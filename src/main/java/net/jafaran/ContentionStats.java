@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+/**
+ * Snapshot of contention counters of a concurrent RNG.
+ * 
+ * Counters are summed over stripes without synchronization, so a snapshot
+ * taken during use is not atomic (but each counter is monotonic).
+ */
+public final class ContentionStats {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private final long nbrOfAttempts;
+    private final long nbrOfFailedCASes;
+    private final long nbrOfHolderSwaps;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    public ContentionStats(
+            long nbrOfAttempts,
+            long nbrOfFailedCASes,
+            long nbrOfHolderSwaps) {
+        this.nbrOfAttempts = nbrOfAttempts;
+        this.nbrOfFailedCASes = nbrOfFailedCASes;
+        this.nbrOfHolderSwaps = nbrOfHolderSwaps;
+    }
+    
+    @Override
+    public String toString() {
+        return "[attempts = " + this.nbrOfAttempts
+                + ", failed CASes = " + this.nbrOfFailedCASes
+                + ", holder swaps = " + this.nbrOfHolderSwaps
+                + "]";
+    }
+    
+    /**
+     * @return Number of attempts to use shared state, i.e. of iterations
+     *         of CAS loops (including those that just found state being
+     *         replaced).
+     */
+    public long getNbrOfAttempts() {
+        return this.nbrOfAttempts;
+    }
+    
+    /**
+     * @return Number of CASes on shared state that failed (or that were
+     *         not attempted, state having changed since it was read).
+     */
+    public long getNbrOfFailedCASes() {
+        return this.nbrOfFailedCASes;
+    }
+    
+    /**
+     * @return Number of replacements of an exhausted state holder by one
+     *         containing next state (0 for RNGs which state is a single
+     *         atomic value).
+     */
+    public long getNbrOfHolderSwaps() {
+        return this.nbrOfHolderSwaps;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wait-free concurrent RNG, based on Philox4x32-10 counter-based algorithm
+ * (J. K. Salmon et al., "Parallel Random Numbers: As Easy as 1, 2, 3", 2011),
+ * which outputs a bijection (keyed by the seed) of a 128 bits counter.
+ * 
+ * The only shared mutable state is a 64 bits index, incremented with
+ * a fetch-and-add for each long generated: there are no CAS loops, and
+ * the long of a given index doesn't depend on which thread drew it, or when.
+ * The long of index i is the (i%2)th 64 bits half of the Philox4x32-10 block
+ * for counter i/2 (as 128 bits value, 32 bits words from LSWord to MSWord,
+ * and the first half being made of the first two words, first one
+ * in LSBits), with the 32 LSBits of the seed as first key word,
+ * and its 32 MSBits as second key word.
+ * 
+ * A block takes much more computations than a step of a sequential RNG
+ * (ten rounds of two 32x32 bits multiplications), but it's done without
+ * synchronization, so this RNG is rather meant for heavy contention.
+ * 
+ * Bulk methods reserve all the indexes they need at once, and use both halves
+ * of each block they compute (scalar calls only use one).
+ * 
+ * nextInt() uses the 32 LSBits of a long, and nextDouble() its 53 LSBits.
+ */
+public class CounterConcRNG extends AbstractRNG {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final long PHILOX_M0 = 0xD2511F53L;
+    private static final long PHILOX_M1 = 0xCD9E8D57L;
+    private static final int PHILOX_W0 = 0x9E3779B9;
+    private static final int PHILOX_W1 = 0xBB67AE85;
+    
+    private static final int NBR_OF_ROUNDS = 10;
+    
+    private volatile long key;
+    
+    /**
+     * Index of the next long to generate.
+     * Not final because constructed in construct().
+     */
+    private PostPaddedAtomicLong index;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed.
+     */
+    public CounterConcRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     */
+    public CounterConcRNG(long seed) {
+        super(seed);
+    }
+    
+    /*
+     * 
+     */
+
+    @Override
+    public long nextLong() {
+        final long index = this.index.getAndIncrement();
+        return philox(index >>> 1, this.key, ((int)index & 1) != 0, null, 0);
+    }
+    
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (len == 0) {
+            return;
+        }
+        final long key = this.key;
+        long index = this.index.getAndAdd(len);
+        int i = off;
+        final int end = off + len;
+        if (((int)index & 1) != 0) {
+            dst[i++] = (int)philox(index >>> 1, key, true, null, 0);
+            index++;
+        }
+        while (i < end - 1) {
+            philox(index >>> 1, key, dst, i);
+            i += 2;
+            index += 2;
+        }
+        if (i < end) {
+            dst[i] = (int)philox(index >>> 1, key, false, null, 0);
+        }
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (len == 0) {
+            return;
+        }
+        final long key = this.key;
+        long index = this.index.getAndAdd(len);
+        int i = off;
+        final int end = off + len;
+        if (((int)index & 1) != 0) {
+            dst[i++] = philox(index >>> 1, key, true, null, 0);
+            index++;
+        }
+        while (i < end - 1) {
+            dst[i] = philox(index >>> 1, key, false, dst, i+1);
+            i += 2;
+            index += 2;
+        }
+        if (i < end) {
+            dst[i] = philox(index >>> 1, key, false, null, 0);
+        }
+    }
+    
+    /*
+     * 
+     */
+    
+    /**
+     * @return The index of the next long to generate.
+     */
+    public long getIndex() {
+        return this.index.get();
+    }
+
+    /**
+     * Allows to skip (or go back to) any long of the sequence,
+     * in constant time.
+     * 
+     * @param index Index of the next long to generate.
+     */
+    public void setIndex(long index) {
+        this.index.set(index);
+    }
+    
+    /**
+     * State is made of the key (the seed), and of the index.
+     */
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8*2];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        bb.putLong(this.key);
+        bb.putLong(this.index.get());
+        return tab;
+    }
+
+    /**
+     * Not atomic, but concurrent seedings or state settings
+     * make no sense anyway.
+     */
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        this.key = bb.getLong();
+        this.index.set(bb.getLong());
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void construct() {
+        this.index = new PostPaddedAtomicLong();
+    }
+    
+    /**
+     * Not atomic, but concurrent seedings or state settings
+     * make no sense anyway.
+     */
+    @Override
+    protected void setSeedImpl(long seed) {
+        this.key = seed;
+        this.index.set(0L);
+    }
+    
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Computes a Philox4x32-10 block.
+     * Only the two LSWords of the 128 bits counter are used (the other two
+     * being zero), and this method just provides the 128 bits output as two
+     * longs, one of which is returned, and the other optionally stored.
+     * 
+     * @param ctr Counter, for the two LSWords.
+     * @param key Key, 32 LSBits being the first key word.
+     * @param secondHalf True if must return the second half of the block,
+     *        false if must return the first half.
+     * @param dst Array where to store the half not returned, or null.
+     * @param off Index where to store the half not returned.
+     * @return The specified half of the block.
+     */
+    static long philox(long ctr, long key, boolean secondHalf, long[] dst, int off) {
+        int x0 = (int)ctr;
+        int x1 = (int)(ctr >>> 32);
+        int x2 = 0;
+        int x3 = 0;
+        int k0 = (int)key;
+        int k1 = (int)(key >>> 32);
+        for (int r=0;r<NBR_OF_ROUNDS;r++) {
+            if (r != 0) {
+                k0 += PHILOX_W0;
+                k1 += PHILOX_W1;
+            }
+            final long p0 = PHILOX_M0 * (x0 & 0xFFFFFFFFL);
+            final long p1 = PHILOX_M1 * (x2 & 0xFFFFFFFFL);
+            x0 = ((int)(p1 >>> 32)) ^ x1 ^ k0;
+            x1 = (int)p1;
+            x2 = ((int)(p0 >>> 32)) ^ x3 ^ k1;
+            x3 = (int)p0;
+        }
+        final long first = (x0 & 0xFFFFFFFFL) | (((long)x1) << 32);
+        final long second = (x2 & 0xFFFFFFFFL) | (((long)x3) << 32);
+        if (secondHalf) {
+            if (dst != null) {
+                dst[off] = first;
+            }
+            return second;
+        } else {
+            if (dst != null) {
+                dst[off] = second;
+            }
+            return first;
+        }
+    }
+    
+    /**
+     * Computes a Philox4x32-10 block, as philox(long,long,boolean,long[],int),
+     * and stores the ints of its two halves (i.e. their 32 LSBits), for
+     * nextInts(...) not to need a temporary array.
+     * 
+     * @param ctr Counter, for the two LSWords.
+     * @param key Key, 32 LSBits being the first key word.
+     * @param dst Array where to store the ints.
+     * @param off Index where to store the int of the first half,
+     *        the one of the second half being stored at off+1.
+     */
+    static void philox(long ctr, long key, int[] dst, int off) {
+        int x0 = (int)ctr;
+        int x1 = (int)(ctr >>> 32);
+        int x2 = 0;
+        int x3 = 0;
+        int k0 = (int)key;
+        int k1 = (int)(key >>> 32);
+        for (int r=0;r<NBR_OF_ROUNDS;r++) {
+            if (r != 0) {
+                k0 += PHILOX_W0;
+                k1 += PHILOX_W1;
+            }
+            final long p0 = PHILOX_M0 * (x0 & 0xFFFFFFFFL);
+            final long p1 = PHILOX_M1 * (x2 & 0xFFFFFFFFL);
+            x0 = ((int)(p1 >>> 32)) ^ x1 ^ k0;
+            x1 = (int)p1;
+            x2 = ((int)(p0 >>> 32)) ^ x3 ^ k1;
+            x3 = (int)p0;
+        }
+        dst[off] = x0;
+        dst[off+1] = x2;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Not thread-safe.
+ * 
+ * RNG based on double precision SIMD-oriented Fast Mersenne Twister algorithm
+ * (dSFMT19937), which natively generates doubles in [1,2), i.e. 52 random
+ * bits per 64 bits word, with a period of 2^19937-1.
+ * 
+ * nextDouble() and nextDoubleFast() only have a subtraction to do, but have
+ * 1/2^52 granularity instead of 1/2^53.
+ * nextInt() uses the 32 LSBits of a word, as the original implementation's
+ * dsfmt_genrand_uint32() does, and other methods are based on it, except
+ * for double-returning ones.
+ */
+public class DSFMTSeqRNG extends AbstractSeqRNG {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int N64 = DSFMTUtils.N64;
+
+    /**
+     * Generates exception if used prior to initialization,
+     * which allows us not to eventually ensure initialization
+     * when idx is N64.
+     */
+    private static final int INVALID_IDX = DSFMTUtils.STATE_LENGTH;
+
+    /**
+     * Not final because constructed in construct().
+     */
+    private long[] status;
+    private int idx;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Constructor using a random seed.
+     */
+    public DSFMTSeqRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     * 
+     * Only the 32 LSBits of the specified seed are used (as in the original
+     * implementation).
+     */
+    public DSFMTSeqRNG(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public DSFMTSeqRNG(int[] initKey, int keyLength) {
+        super((Void)null);
+        this.setSeed_noBitsClearing(initKey, keyLength);
+    }
+
+    /**
+     * Similar to SplittableRandom.split().
+     * 
+     * @return A new instance, seeded with random bits from this instance.
+     */
+    public DSFMTSeqRNG split() {
+        final int keyLength = 4;
+        final int[] initKey = new int[keyLength];
+        for (int i=0;i<keyLength;i++) {
+            initKey[i] = this.nextInt();
+        }
+        return new DSFMTSeqRNG(initKey, keyLength);
+    }
+    
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public void setSeed(int[] initKey, int keyLength) {
+        super.setSeedImpl(0L);
+        this.setSeed_noBitsClearing(initKey, keyLength);
+    }
+    
+    @Override
+    public int nextInt() {
+        int idx = this.idx;
+        if (idx == N64) {
+            DSFMTUtils.toNextState(this.status);
+            idx = 0;
+        }
+        final int result = (int)this.status[idx];
+        this.idx = idx+1;
+        return result;
+    }
+
+    /**
+     * @return Uniform double in [0,1-1/2^52], with 1/2^52 granularity.
+     */
+    @Override
+    public double nextDouble() {
+        int idx = this.idx;
+        if (idx == N64) {
+            DSFMTUtils.toNextState(this.status);
+            idx = 0;
+        }
+        final double result = Double.longBitsToDouble(this.status[idx]) - 1.0;
+        this.idx = idx+1;
+        return result;
+    }
+
+    /**
+     * @return Uniform double in [0,1-1/2^52], with 1/2^52 granularity
+     *         (same as nextDouble()).
+     */
+    @Override
+    public double nextDoubleFast() {
+        return this.nextDouble();
+    }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] status = this.status;
+        int idx = this.idx;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (idx == N64) {
+                DSFMTUtils.toNextState(status);
+                idx = 0;
+            }
+            // Using as many words as we can before next state computation.
+            // (Do-while for exception if invalid idx.)
+            final int chunkEnd = i + Math.min(N64 - idx, end - i);
+            do {
+                dst[i++] = (int)status[idx++];
+            } while (i < chunkEnd);
+        }
+        this.idx = idx;
+    }
+
+    /**
+     * Uses remaining words of current state, then whole regenerated states,
+     * and then words of a last state if needed.
+     */
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] status = this.status;
+        int idx = this.idx;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (idx == N64) {
+                DSFMTUtils.toNextState(status);
+                idx = 0;
+            }
+            // Using as many words as we can before next state computation.
+            // (Do-while for exception if invalid idx.)
+            final int chunkEnd = i + Math.min(N64 - idx, end - i);
+            do {
+                dst[i++] = Double.longBitsToDouble(status[idx++]) - 1.0;
+            } while (i < chunkEnd);
+        }
+        this.idx = idx;
+    }
+
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8*this.status.length + 4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        for (int i=0;i<this.status.length;i++) {
+            bb.putLong(this.status[i]);
+        }
+        bb.putInt(this.idx);
+        RandomUtilz.encodeNbrOfStoredBits(this.getCurrentNbrOfStoredBits(), bb);
+        RandomUtilz.encodeStoredBits(this.getCurrentStoredBits(), bb);
+        return tab;
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        for (int i=0;i<this.status.length;i++) {
+            this.status[i] = bb.getLong();
+        }
+        this.idx = bb.getInt();
+        this.setCurrentNbrOfStoredBits(RandomUtilz.decodeNbrOfStoredBits(bb));
+        this.setCurrentStoredBits(RandomUtilz.decodeStoredBits(bb));
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    protected DSFMTSeqRNG(Void dummy) {
+        super(dummy);
+    }
+
+    @Override
+    protected void construct() {
+        this.status = new long[DSFMTUtils.STATE_LENGTH];
+        this.idx = INVALID_IDX;
+    }
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        super.setSeedImpl(0L);
+        this.idx = DSFMTUtils.setSeed(this.status, (int)seed);
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private void setSeed_noBitsClearing(int[] initKey, int keyLength) {
+        this.idx = DSFMTUtils.setSeed(this.status, initKey, keyLength);
+    }
+}
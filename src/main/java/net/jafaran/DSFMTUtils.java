@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * =============================================================================
+ * License of the C implementation this one is derived from:
+ *
+ * Copyright (c) 2007, 2008, 2009 Mutsuo Saito, Makoto Matsumoto
+ * and Hiroshima University.
+ * Copyright (c) 2011, 2002 Mutsuo Saito, Makoto Matsumoto, Hiroshima
+ * University and The University of Tokyo.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *     * Neither the names of Hiroshima University, The University of
+ *       Tokyo nor the names of its contributors may be used to endorse
+ *       or promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.jafaran;
+
+/**
+ * Double precision SIMD-oriented Fast Mersenne Twister stuffs, for dSFMT19937
+ * (http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/SFMT/index.html).
+ * 
+ * State is stored as 64 bits words, each 128 bits lane being made of 2
+ * consecutive words, LSWord first, with the additional "lung" lane at the
+ * end. Each of the N64 first words is the bits representation of a double
+ * in [1,2), i.e. 12 constant MSBits and 52 random LSBits.
+ * 
+ * Indexes used by RNGs are in 64 bits words, in [0,N64], N64 meaning
+ * that state must be regenerated before use.
+ */
+class DSFMTUtils {
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Number of 128 bits lanes in state vector, not counting lung.
+     */
+    private static final int N = 191;
+
+    /**
+     * Number of 64 bits words in state vector, not counting lung.
+     */
+    static final int N64 = 2*N;
+
+    /**
+     * Number of 64 bits words in state vector, lung included.
+     */
+    static final int STATE_LENGTH = N64 + 2;
+
+    /**
+     * Mask for the random bits of a double in [1,2).
+     */
+    private static final long LOW_MASK = 0x000FFFFFFFFFFFFFL;
+
+    /**
+     * Bits of 1.0, to be or-ed with the random bits
+     * to obtain a double in [1,2).
+     */
+    private static final long HIGH_CONST = 0x3FF0000000000000L;
+
+    private static final int POS1 = 117;
+    private static final int SL1 = 19;
+    private static final int SR = 12;
+    private static final long MSK1 = 0x000FFAFFFFFFFB3FL;
+    private static final long MSK2 = 0x000FFDFFFC90FFFDL;
+    private static final long FIX1 = 0x90014964B32F4329L;
+    private static final long FIX2 = 0x3B8D12AC548A7C7AL;
+    private static final long PCV1 = 0x3D84E1AC0DC82880L;
+    private static final long PCV2 = 0x0000000000000001L;
+
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * @return New index, i.e. N64 (state must be regenerated before use).
+     */
+    static int setSeed(long[] status, int seed) {
+        final int[] status32 = new int[2*STATE_LENGTH];
+        SFMTUtils.initGenRand(status32, seed);
+        SFMTUtils.pack(status32, status);
+        initialMask(status);
+        certifyPeriod(status);
+        return N64;
+    }
+
+    /**
+     * @return New index, i.e. N64 (state must be regenerated before use).
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    static int setSeed(
+            long[] status,
+            int[] initKey,
+            int keyLength) {
+        final int[] status32 = new int[2*STATE_LENGTH];
+        SFMTUtils.initByArray(status32, initKey, keyLength);
+        SFMTUtils.pack(status32, status);
+        initialMask(status);
+        certifyPeriod(status);
+        return N64;
+    }
+
+    /**
+     * Regenerates the whole state vector (dsfmt_gen_rand_all() in C code).
+     */
+    static void toNextState(long[] status) {
+        long lung0 = status[N64];
+        long lung1 = status[N64+1];
+        int i = 0;
+        // Two loops, to avoid modulo or test for b.
+        for (;i<N-POS1;i++) {
+            final int a = 2*i;
+            final int b = a + 2*POS1;
+            final long t0 = status[a];
+            final long t1 = status[a+1];
+            final long l0 = lung0;
+            lung0 = (t0 << SL1) ^ (lung1 >>> 32) ^ (lung1 << 32) ^ status[b];
+            lung1 = (t1 << SL1) ^ (l0 >>> 32) ^ (l0 << 32) ^ status[b+1];
+            status[a] = (lung0 >>> SR) ^ (lung0 & MSK1) ^ t0;
+            status[a+1] = (lung1 >>> SR) ^ (lung1 & MSK2) ^ t1;
+        }
+        for (;i<N;i++) {
+            final int a = 2*i;
+            final int b = a + 2*(POS1-N);
+            final long t0 = status[a];
+            final long t1 = status[a+1];
+            final long l0 = lung0;
+            lung0 = (t0 << SL1) ^ (lung1 >>> 32) ^ (lung1 << 32) ^ status[b];
+            lung1 = (t1 << SL1) ^ (l0 >>> 32) ^ (l0 << 32) ^ status[b+1];
+            status[a] = (lung0 >>> SR) ^ (lung0 & MSK1) ^ t0;
+            status[a+1] = (lung1 >>> SR) ^ (lung1 & MSK2) ^ t1;
+        }
+        status[N64] = lung0;
+        status[N64+1] = lung1;
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Makes the N64 first words represent doubles in [1,2).
+     */
+    private static void initialMask(long[] status) {
+        for (int i=0;i<N64;i++) {
+            status[i] = (status[i] & LOW_MASK) | HIGH_CONST;
+        }
+    }
+
+    /**
+     * Modifies the lung if needed, for the period to be 2^19937-1.
+     */
+    private static void certifyPeriod(long[] status) {
+        long inner = ((status[N64] ^ FIX1) & PCV1) ^ ((status[N64+1] ^ FIX2) & PCV2);
+        for (int i=32;i>0;i>>=1) {
+            inner ^= inner >>> i;
+        }
+        if ((inner & 1L) == 1L) {
+            return;
+        }
+        // Since PCV2 LSBit is 1.
+        status[N64+1] ^= 1L;
+    }
+}
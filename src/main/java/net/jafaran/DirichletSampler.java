@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples Dirichlet distribution of given concentration parameters
+ * (alpha_0,...,alpha_(k-1)), as (X_0,...,X_(k-1))/sum(X_i), with X_i
+ * gamma-distributed of shape alpha_i.
+ * 
+ * If a concentration is < 1, the ratios are computed from logarithms
+ * of the X_i, which don't underflow, to avoid 0/0 for tiny concentrations.
+ * 
+ * Reusable, and draws don't allocate (destination array being used
+ * as temporary storage).
+ */
+public class DirichletSampler {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private final GammaSampler[] gammas;
+    
+    private final boolean useLogs;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param alphas Concentration parameters (each >= GammaSampler.MIN_SHAPE,
+     *        and finite). Not retained.
+     * @throws IllegalArgumentException if alphas is empty or if a concentration
+     *         is not >= GammaSampler.MIN_SHAPE and finite.
+     */
+    public DirichletSampler(double[] alphas) {
+        if (alphas.length == 0) {
+            throw new IllegalArgumentException("alphas must not be empty");
+        }
+        final GammaSampler[] gammas = new GammaSampler[alphas.length];
+        boolean useLogs = false;
+        for (int i=0;i<alphas.length;i++) {
+            GammaSampler.checkMinFinite("alphas["+i+"]", alphas[i], GammaSampler.MIN_SHAPE);
+            gammas[i] = new GammaSampler(alphas[i]);
+            useLogs |= gammas[i].isBoosted();
+        }
+        this.gammas = gammas;
+        this.useLogs = useLogs;
+    }
+    
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("[alphas = [");
+        for (int i=0;i<this.gammas.length;i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(this.gammas[i].getShape());
+        }
+        return sb.append("]]").toString();
+    }
+    
+    /**
+     * @return The number of components of drawn vectors (k).
+     */
+    public int getDimension() {
+        return this.gammas.length;
+    }
+    
+    /**
+     * @param i Index of a component, in [0,getDimension()[.
+     * @return The concentration parameter for the specified component.
+     */
+    public double getAlpha(int i) {
+        return this.gammas[i].getShape();
+    }
+
+    /**
+     * Puts getDimension() doubles, each in [0,1] and summing to 1 (modulo
+     * rounding errors), into the specified array.
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the vector.
+     * @param off Index where to put the first component.
+     * @throws IndexOutOfBoundsException if the range [off,off+getDimension()[
+     *         is out of dst.
+     */
+    public void next(AbstractRNG rng, double[] dst, int off) {
+        RandomUtilz.checkRange(dst.length, off, this.gammas.length);
+        this.nextImpl(rng, dst, off);
+    }
+
+    /**
+     * Equivalent to nbrOfVectors successive calls to
+     * next(AbstractRNG,double[],int), each vector being put
+     * right after the previous one.
+     * Not an overload of next(...), since for other samplers the last int
+     * of next(AbstractRNG,double[],int,int) is a number of values.
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the vectors.
+     * @param off Index where to put the first component of the first vector.
+     * @param nbrOfVectors Number of vectors to put.
+     * @throws IndexOutOfBoundsException if the range
+     *         [off,off+nbrOfVectors*getDimension()[ is out of dst,
+     *         or if nbrOfVectors < 0.
+     */
+    public void nextVectors(AbstractRNG rng, double[] dst, int off, int nbrOfVectors) {
+        final int k = this.gammas.length;
+        final long len = nbrOfVectors * (long) k;
+        if ((nbrOfVectors < 0) || (len > Integer.MAX_VALUE)) {
+            throw new IndexOutOfBoundsException("nbrOfVectors ["+nbrOfVectors+"] * dimension ["+k+"] not in [0,"+Integer.MAX_VALUE+"]");
+        }
+        RandomUtilz.checkRange(dst.length, off, (int) len);
+        for (int i=0;i<nbrOfVectors;i++) {
+            this.nextImpl(rng, dst, off + i * k);
+        }
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private void nextImpl(AbstractRNG rng, double[] dst, int off) {
+        final GammaSampler[] gammas = this.gammas;
+        final int k = gammas.length;
+        double sum = 0.0;
+        if (this.useLogs) {
+            double maxLog = Double.NEGATIVE_INFINITY;
+            for (int i=0;i<k;i++) {
+                final double logX = gammas[i].nextLogUnscaled(rng);
+                dst[off+i] = logX;
+                maxLog = Math.max(maxLog, logX);
+            }
+            // Largest component scaled to 1, so sum is in [1,k].
+            for (int i=0;i<k;i++) {
+                final double x = StrictMath.exp(dst[off+i] - maxLog);
+                dst[off+i] = x;
+                sum += x;
+            }
+        } else {
+            for (int i=0;i<k;i++) {
+                final double x = gammas[i].nextMT(rng);
+                dst[off+i] = x;
+                sum += x;
+            }
+        }
+        final double invSum = 1.0/sum;
+        for (int i=0;i<k;i++) {
+            dst[off+i] *= invSum;
+        }
+    }
+}
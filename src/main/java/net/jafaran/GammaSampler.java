@@ -0,0 +1,217 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples gamma distribution of a given shape and scale (density proportional
+ * to x^(shape-1) * exp(-x/scale), mean shape*scale), using Marsaglia and
+ * Tsang's method, on top of AbstractRNG.nextGaussian() (Ziggurat).
+ * 
+ * Parameters-dependent constants are computed on construction, so that
+ * an instance can be reused for any number of draws, which don't allocate.
+ * Instances are immutable, and thread-safe if the specified RNG is.
+ */
+public class GammaSampler {
+
+    /*
+     * "A Simple Method for Generating Gamma Variables",
+     * G. Marsaglia and W. W. Tsang, 2000.
+     * 
+     * For shape >= 1:
+     * d = shape - 1/3, c = 1/sqrt(9*d),
+     * x normal gaussian, v = (1+c*x)^3, retry if v <= 0,
+     * u uniform, return d*v if u < 1 - 0.0331*x^4 (squeeze, most of the time),
+     * or if log(u) < x^2/2 + d*(1-v+log(v)).
+     * 
+     * For shape < 1, we draw with shape+1 and multiply by u^(1/shape).
+     * This product underflows to 0 for tiny shapes, so we also provide
+     * its logarithm, for samplers built on ratios of gammas.
+     * 
+     * Using StrictMath, as Ziggurat, so that a same uniform randomness
+     * always yields a same sequence.
+     */
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Min shape, for u^(1/shape), with u in [1/2^53,1], and its logarithm,
+     * not to overflow: with smaller shapes, 1/shape can be infinite,
+     * and log(u)/shape too, which would make ratios of gammas NaN.
+     * Draws for shapes this small are almost always 0 (or a logarithm
+     * of huge magnitude).
+     */
+    public static final double MIN_SHAPE = 1e-300;
+    
+    private static final double ANTI_ZERO_EPS = 1.0/(1L<<53);
+    
+    private final double shape;
+    private final double scale;
+    
+    /**
+     * True if shape < 1.
+     */
+    private final boolean boosted;
+    
+    private final double d;
+    private final double c;
+    
+    /**
+     * 1/shape, used if boosted.
+     */
+    private final double invShape;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Creates a sampler of scale 1.
+     * 
+     * @param shape Shape (>= MIN_SHAPE, and finite).
+     * @throws IllegalArgumentException if shape is not >= MIN_SHAPE
+     *         and finite.
+     */
+    public GammaSampler(double shape) {
+        this(shape, 1.0);
+    }
+
+    /**
+     * @param shape Shape (>= MIN_SHAPE, and finite).
+     * @param scale Scale (> 0, and finite).
+     * @throws IllegalArgumentException if shape is not >= MIN_SHAPE
+     *         and finite, or if scale is not > 0 and finite.
+     */
+    public GammaSampler(
+            double shape,
+            double scale) {
+        checkMinFinite("shape", shape, MIN_SHAPE);
+        if (!((scale > 0.0) && (scale < Double.POSITIVE_INFINITY))) {
+            throw new IllegalArgumentException("scale ["+scale+"] must be > 0 and finite");
+        }
+        this.shape = shape;
+        this.scale = scale;
+        this.boosted = (shape < 1.0);
+        this.d = (this.boosted ? shape + 1.0 : shape) - 1.0/3;
+        this.c = 1.0/StrictMath.sqrt(9.0 * this.d);
+        this.invShape = 1.0/shape;
+    }
+    
+    @Override
+    public String toString() {
+        return "[shape = " + this.shape + ", scale = " + this.scale + "]";
+    }
+    
+    public double getShape() {
+        return this.shape;
+    }
+
+    public double getScale() {
+        return this.scale;
+    }
+
+    /**
+     * @param rng RNG to use.
+     * @return A gamma-distributed double, >= 0 (0 only possible by underflow,
+     *         for shapes < 1, and +Infinity by overflow, for huge shapes
+     *         or scales).
+     */
+    public double next(AbstractRNG rng) {
+        double x = this.nextMT(rng);
+        if (this.boosted) {
+            x *= StrictMath.pow(rng.nextDouble() + ANTI_ZERO_EPS, this.invShape);
+        }
+        return x * this.scale;
+    }
+
+    /**
+     * Equivalent to len successive calls to next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the gamma-distributed doubles.
+     * @param off Index where to put the first double.
+     * @param len Number of doubles to put.
+     * @throws IndexOutOfBoundsException if the specified range is out of dst.
+     */
+    public void next(AbstractRNG rng, double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        for (int i=0;i<len;i++) {
+            dst[off+i] = this.next(rng);
+        }
+    }
+    
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * @param name Name of the parameter, for exception message.
+     * @param min Min value, > 0.
+     * @throws IllegalArgumentException if value is not >= min and finite.
+     */
+    static void checkMinFinite(String name, double value, double min) {
+        if (!((value >= min) && (value < Double.POSITIVE_INFINITY))) {
+            throw new IllegalArgumentException(name+" ["+value+"] must be >= "+min+" and finite");
+        }
+    }
+    
+    boolean isBoosted() {
+        return this.boosted;
+    }
+    
+    /**
+     * Uses the same uniform randomness than next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @return Logarithm of a gamma-distributed double of this shape
+     *         and scale 1 (finite even when the double would underflow).
+     */
+    double nextLogUnscaled(AbstractRNG rng) {
+        double logX = StrictMath.log(this.nextMT(rng));
+        if (this.boosted) {
+            logX += StrictMath.log(rng.nextDouble() + ANTI_ZERO_EPS) * this.invShape;
+        }
+        return logX;
+    }
+    
+    /**
+     * @param rng RNG to use.
+     * @return A gamma-distributed double of shape shape, or shape+1 if shape < 1,
+     *         and scale 1, > 0.
+     */
+    double nextMT(AbstractRNG rng) {
+        final double d = this.d;
+        final double c = this.c;
+        while (true) {
+            final double x = rng.nextGaussian();
+            double v = 1.0 + c * x;
+            if (v <= 0.0) {
+                continue;
+            }
+            v = v * v * v;
+            final double u = rng.nextDouble();
+            final double x2 = x * x;
+            if (u < 1.0 - 0.0331 * (x2 * x2)) {
+                return d * v;
+            }
+            if (StrictMath.log(u) < 0.5 * x2 + d * (1.0 - v + StrictMath.log(v))) {
+                return d * v;
+            }
+        }
+    }
+}
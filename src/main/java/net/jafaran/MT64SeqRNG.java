@@ -0,0 +1,294 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Not thread-safe.
+ * 
+ * RNG based on 64 bits Mersenne-Twister algorithm (MT19937-64), which
+ * generates 64 bits per tempered word, i.e. twice as many as MTSeqRNG,
+ * and is therefore faster for nextLong() and similar methods.
+ * 
+ * nextInt() uses the 32 MSBits of nextLong().
+ */
+public class MT64SeqRNG extends AbstractSeqRNG {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int N = MT64Utils.N;
+
+    /**
+     * Generates exception if used prior to initialization,
+     * which allows us not to eventually ensure initialization
+     * when mti is 0.
+     */
+    private static final int INVALID_MTI = N+1;
+
+    /**
+     * Not final because constructed in construct().
+     */
+    private long[] mt;
+    private int mti;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Constructor using a random seed.
+     */
+    public MT64SeqRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     */
+    public MT64SeqRNG(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public MT64SeqRNG(long[] initKey, int keyLength) {
+        super((Void)null);
+        this.setSeed_noBitsClearing(initKey, keyLength);
+    }
+
+    /**
+     * Similar to SplittableRandom.split().
+     * 
+     * @return A new instance, seeded with random bits from this instance.
+     */
+    public MT64SeqRNG split() {
+        // 128 pseudo-random bits should be enough to produce
+        // a sufficiently different and likely enough unique
+        // new PRNG.
+        final int keyLength = 2;
+        final long[] initKey = new long[keyLength];
+        for (int i=0;i<keyLength;i++) {
+            initKey[i] = this.nextLong();
+        }
+        return new MT64SeqRNG(initKey, keyLength);
+    }
+    
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public void setSeed(long[] initKey, int keyLength) {
+        super.setSeedImpl(0L);
+        this.setSeed_noBitsClearing(initKey, keyLength);
+    }
+    
+    @Override
+    public int nextInt() {
+        return (int)(this.nextLong()>>>32);
+    }
+
+    @Override
+    public long nextLong() {
+        final long s;
+        if (this.mti != 0) {
+            s = this.mt[this.mti--];
+        } else {
+            this.mti = N-1;
+            s = MT64Utils.toNextState(this.mt);
+        }
+        return MT64Utils.tempered(s);
+    }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] mt = this.mt;
+        int mti = this.mti;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (mti == 0) {
+                mti = N-1;
+                dst[i++] = (int)(MT64Utils.tempered(MT64Utils.toNextState(mt))>>>32);
+                continue;
+            }
+            // Tempering as many words as we can before next state computation.
+            final int chunkEnd = i + Math.min(mti, end - i);
+            while (i < chunkEnd) {
+                dst[i++] = (int)(MT64Utils.tempered(mt[mti--])>>>32);
+            }
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] mt = this.mt;
+        int mti = this.mti;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (mti == 0) {
+                mti = N-1;
+                dst[i++] = MT64Utils.tempered(MT64Utils.toNextState(mt));
+                continue;
+            }
+            // Tempering as many words as we can before next state computation.
+            final int chunkEnd = i + Math.min(mti, end - i);
+            while (i < chunkEnd) {
+                dst[i++] = MT64Utils.tempered(mt[mti--]);
+            }
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] mt = this.mt;
+        int mti = this.mti;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (mti == 0) {
+                mti = N-1;
+                final int bits = (int)(MT64Utils.tempered(MT64Utils.toNextState(mt))>>>32);
+                dst[i++] = (bits & ((1<<24)-1)) * (1.0f/(1<<24));
+                continue;
+            }
+            // Tempering as many words as we can before next state computation.
+            final int chunkEnd = i + Math.min(mti, end - i);
+            while (i < chunkEnd) {
+                final int bits = (int)(MT64Utils.tempered(mt[mti--])>>>32);
+                dst[i++] = (bits & ((1<<24)-1)) * (1.0f/(1<<24));
+            }
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] mt = this.mt;
+        int mti = this.mti;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (mti == 0) {
+                mti = N-1;
+                final long bits = MT64Utils.tempered(MT64Utils.toNextState(mt));
+                dst[i++] = (bits & ((1L<<53)-1)) * (1.0/(1L<<53));
+                continue;
+            }
+            // Tempering as many words as we can before next state computation.
+            final int chunkEnd = i + Math.min(mti, end - i);
+            while (i < chunkEnd) {
+                final long bits = MT64Utils.tempered(mt[mti--]);
+                dst[i++] = (bits & ((1L<<53)-1)) * (1.0/(1L<<53));
+            }
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] mt = this.mt;
+        int mti = this.mti;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            final long s;
+            if (mti != 0) {
+                s = mt[mti--];
+            } else {
+                mti = N-1;
+                s = MT64Utils.toNextState(mt);
+            }
+            // Same as AbstractRNG.nextBytes(...).
+            RandomUtilz.putBytes(MT64Utils.tempered(s), dst, i, Math.min(8, end - i));
+        }
+        this.mti = mti;
+    }
+
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8*this.mt.length + 4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        // Putting mt in original order, for easier comparison
+        // with other implementations that would not reverse
+        // order as we do.
+        for (int i=this.mt.length;--i>=0;) {
+            bb.putLong(this.mt[i]);
+        }
+        bb.putInt(this.mti);
+        RandomUtilz.encodeNbrOfStoredBits(this.getCurrentNbrOfStoredBits(), bb);
+        RandomUtilz.encodeStoredBits(this.getCurrentStoredBits(), bb);
+        return tab;
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        for (int i=this.mt.length;--i>=0;) {
+            this.mt[i] = bb.getLong();
+        }
+        this.mti = bb.getInt();
+        this.setCurrentNbrOfStoredBits(RandomUtilz.decodeNbrOfStoredBits(bb));
+        this.setCurrentStoredBits(RandomUtilz.decodeStoredBits(bb));
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    protected MT64SeqRNG(Void dummy) {
+        super(dummy);
+    }
+
+    @Override
+    protected void construct() {
+        this.mt = new long[N+1];
+        this.mti = INVALID_MTI;
+    }
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        super.setSeedImpl(0L);
+        this.mti = MT64Utils.setSeed(this.mt, seed);
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private void setSeed_noBitsClearing(long[] initKey, int keyLength) {
+        this.mti = MT64Utils.setSeed(this.mt, initKey, keyLength);
+    }
+}
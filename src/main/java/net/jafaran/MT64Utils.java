@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * =============================================================================
+ * License of the C implementation this one is derived from:
+ *
+ * A C-program for MT19937-64 (2004/9/29 version).
+ * Coded by Takuji Nishimura and Makoto Matsumoto.
+ *
+ * Before using, initialize the state by using init_genrand64(seed)
+ * or init_by_array64(init_key, key_length).
+ *
+ * Copyright (C) 2004, Makoto Matsumoto and Takuji Nishimura,
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *   1. Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *
+ *   2. Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *
+ *   3. The names of its contributors may not be used to endorse or promote
+ *      products derived from this software without specific prior written
+ *      permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED.  IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * References:
+ * T. Nishimura, ``Tables of 64-bit Mersenne Twisters''
+ *   ACM Transactions on Modeling and
+ *   Computer Simulation 10. (2000) 348--357.
+ * M. Matsumoto and T. Nishimura,
+ *   ``Mersenne Twister: a 623-dimensionally equidistributed
+ *     uniform pseudorandom number generator''
+ *   ACM Transactions on Modeling and
+ *   Computer Simulation 8. (Jan. 1998) 3--30.
+ *
+ * Any feedback is very welcome.
+ * http://www.math.hiroshima-u.ac.jp/~m-mat/MT/emt.html
+ * email: m-mat @ math.sci.hiroshima-u.ac.jp (remove spaces)
+ */
+package net.jafaran;
+
+/**
+ * 64 bits Mersenne-Twister stuffs (MT19937-64)
+ * (http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/emt64.html).
+ * 
+ * Uses the same hacks than MTUtils (reversed state vector of size N+1,
+ * never using the long at index 0).
+ * 
+ * Also, we use signed longs, so >>> instead of >>.
+ */
+class MT64Utils {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    static final int N = 312; // Length (-1 for us) of state vector.
+    private static final int M = 156; // Period parameter.
+    private static final long MAGIC_NUMBER = 6364136223846793005L;
+    private static final long MATRIX_A = 0xB5026F5AA96619E9L;
+    /**
+     * Most significant 33 bits.
+     */
+    private static final long UPPER_MASK = 0xFFFFFFFF80000000L;
+    /**
+     * Least significant 31 bits.
+     */
+    private static final long LOWER_MASK = 0x000000007FFFFFFFL;
+    private static final long TEMPERING_MASK_D = 0x5555555555555555L;
+    private static final long TEMPERING_MASK_B = 0x71D67FFFEDA60000L;
+    private static final long TEMPERING_MASK_C = 0xFFF7EEE000000000L;
+    
+    private static final long BIG_SEED_LITTLE_SEED = 19650218L;
+    private static final long BIG_SEED_FACTOR_1 = 3935559000370003845L;
+    private static final long BIG_SEED_FACTOR_2 = 2862933555777941757L;
+
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * @return New mti.
+     */
+    static int setSeed(long[] mt, long seed) {
+        mt[N] = seed;
+        for (int i=N;--i>0;) {
+            mt[i] = (MAGIC_NUMBER * (mt[i+1] ^ (mt[i+1] >>> 62)) + (N-i));
+        }
+        return 0;
+    }
+
+    /**
+     * @return New mti.
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    static int setSeed(
+            long[] mt,
+            long[] initKey,
+            int keyLength) {
+        if (keyLength <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final int newCond = setSeed(mt, BIG_SEED_LITTLE_SEED);
+
+        int i = N-1;
+        int j = 0;
+        int k;
+        for (k=Math.max(keyLength,N);k>0;k--) {
+            mt[i] = (mt[i] ^ ((mt[i+1] ^ (mt[i+1] >>> 62)) * BIG_SEED_FACTOR_1)) + initKey[j] + j;
+            if (--i == 0) {
+                mt[N] = mt[1];
+                i = N-1;
+            }
+            if (++j == keyLength) {
+                j = 0;
+            }
+        }
+        for (k=N-1;k>0;k--) {
+            mt[i] = (mt[i] ^ ((mt[i+1] ^ (mt[i+1] >>> 62)) * BIG_SEED_FACTOR_2)) - (N-i);
+            if (--i == 0) {
+                mt[N] = mt[1];
+                i = N-1;
+            }
+        }
+        // Ensuring non-zero initial array.
+        mt[N] = 0x8000000000000000L;
+        
+        return newCond;
+    }
+
+    /**
+     * @return Value to temper, which is extracted from the new array content.
+     */
+    static long toNextState(long[] mt) {
+        long s;
+        int j;
+        for (j=N+1;--j>M;) { // N..M+1 : N-M rounds
+            s = (mt[j] & UPPER_MASK) | (mt[j-1] & LOWER_MASK);
+            mt[j] = (mt[j-M] ^ (s>>>1)) ^ ((s & 1L) * MATRIX_A);
+        }
+        for (j=M+1;--j>1;) { // M..2 : M-1 rounds
+            s = (mt[j] & UPPER_MASK) | (mt[j-1] & LOWER_MASK);
+            mt[j] = (mt[j+(N-M)] ^ (s>>>1)) ^ ((s & 1L) * MATRIX_A);
+        }
+        s = (mt[1] & UPPER_MASK) | (mt[N] & LOWER_MASK);
+        mt[1] = (mt[N-M+1] ^ (s>>>1)) ^ ((s & 1L) * MATRIX_A);
+        return mt[N];
+    }
+    
+    static long tempered(long s) {
+        s ^= ((s>>>29) & TEMPERING_MASK_D);
+        s ^= ((s<<17) & TEMPERING_MASK_B);
+        s ^= ((s<<37) & TEMPERING_MASK_C);
+        return s ^ (s>>>43);
+    }
+}
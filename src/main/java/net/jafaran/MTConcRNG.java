@@ -16,15 +16,40 @@
 package net.jafaran;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Concurrent RNG based on Mersenne-Twister algorithm.
  * 
  * When used sequentially, gives same output than MTSeqRNG.
  * 
- * State is stored in objects that are garbaged once exhausted.
- * For no garbage, a (thread-)local instance of MTSeqRNG
- * can be used instead (which should also be faster).
+ * State is stored in objects that are recycled once exhausted: each thread
+ * keeps a spare one, into which it computes next state, and which then
+ * replaces the exhausted one, that becomes its new spare. As a result,
+ * steady-state generation does not allocate (only seeding and state
+ * setting do). A (thread-)local instance of MTSeqRNG can also be used
+ * (which should also be faster).
+ * 
+ * Bulk methods reserve as many words as they can (up to the end of current
+ * state) with a single CAS, and then temper them without synchronization.
+ * 
+ * Optionally (see MTConcRNG(long,int)), each thread can also reserve words
+ * by blocks for its scalar calls (nextInt(), nextLong(), nextGaussian(),
+ * etc.), so that synchronization is done once per block instead of once
+ * per word. Each thread then has its own stored bits, and words and stored
+ * bits reserved by a thread are not part of the state returned by
+ * getState(), which for that reason discards those of the calling thread.
+ * When used by a single thread, still gives same output than MTSeqRNG.
+ * 
+ * Optionally (see MTConcRNG(long,int,boolean)), next state can be computed
+ * ahead of exhaustion, by the thread whose reservation makes the number
+ * of remaining words drop under a low-water mark, so that the thread
+ * hitting exhaustion usually just has to swap holders, instead of
+ * computing next state while others spin on it.
+ * 
+ * Also optionally (see MTConcRNG(long,int,boolean,BackoffPolicy,boolean)),
+ * a backoff policy can be used on contention, and contention can be counted
+ * (see getContentionStats()), to see whether this RNG is a bottleneck.
  */
 public class MTConcRNG extends AbstractRNG {
     
@@ -36,23 +61,63 @@ public class MTConcRNG extends AbstractRNG {
      * Atomic long contains:
      * - 10 LSBits: mti (unsigned in [0,1023])
      * - 6 next bits: number of stored bits (unsigned in [0,63])
-     * - 16 next bits: unused
+     * - 16 next bits: generation (unsigned in [0,65535])
      * - 32 MSBits: stored bits
      * 
-     * Could have a volatile (or not?) reference to next
-     * state holder, which could prevent useless next state
-     * computations by concurrent threads, but that might cause
-     * memory leak if a thread blocks with a reference to an old
-     * state holder.
+     * Generation is incremented when the holder is retired (i.e. replaced
+     * by a holder containing next state), after which it can be recycled,
+     * i.e. have its words modified. Since words are read before CASes on
+     * meta, this causes CASes of threads that read recycled words to fail.
+     * A holder whose generation reached its max value is not recycled,
+     * but dropped, so that generation never wraps, i.e. a holder never
+     * gets back a meta it had before being retired.
+     * 
+     * When computing next state ahead, holder containing it is referenced
+     * by nextRef, and is only valid if its source generation is the
+     * generation of this holder. The reference is cleared on retirement,
+     * else this holder, once reused, could take the holder that replaced
+     * it (possibly reused as well, with a matching source generation)
+     * for its next holder. Holders attached by late threads after that
+     * clearing are never reused.
      */
     private static class MyStateHolder extends PostPaddedAtomicLong {
         private static final long serialVersionUID = 1L;
         final int[] mt = new int[N+1];
         /**
-         * Creates an invalid state.
+         * Only used when computing next state ahead.
+         */
+        final AtomicReference<MyStateHolder> nextRef = new AtomicReference<MyStateHolder>();
+        /**
+         * When this holder contains next state of another holder,
+         * generation of the other holder when its words were copied.
+         * Written before publication through nextRef.
+         */
+        int sourceGeneration;
+        /**
+         * Creates an unusable state.
          */
         public MyStateHolder() {
-            super(meta(0,0,INVALID_MTI));
+            super(meta(0,0,UNUSABLE_MTI));
+        }
+    }
+    
+    /**
+     * Words (and stored bits) reserved by a thread, in block mode.
+     */
+    private static class MyBlock {
+        /**
+         * Tempered words, used from index 0.
+         */
+        final int[] words;
+        int index;
+        int storedBits;
+        int nbrOfStoredBits;
+        /**
+         * Version of the state words were reserved from.
+         */
+        int version;
+        public MyBlock(int blockSize) {
+            this.words = new int[blockSize];
         }
     }
     
@@ -65,20 +130,75 @@ public class MTConcRNG extends AbstractRNG {
     private static final int N = MTUtils.N;
 
     /**
-     * Generates exception if used prior to initialization,
-     * which allows us not to eventually ensure initialization
-     * when mti is 0.
+     * For holders not yet published, or retired: threads seeing it
+     * must retrieve current holder again.
      */
-    private static final int INVALID_MTI = N+1;
+    private static final int UNUSABLE_MTI = N+1;
 
     private static final int MTI_BIT_SIZE = 10;
     private static final int NBR_OF_STORED_BITS_BIT_SIZE = 6;
+    private static final int GENERATION_BIT_SIZE = 16;
+    private static final int GENERATION_SHIFT = MTI_BIT_SIZE + NBR_OF_STORED_BITS_BIT_SIZE;
+    private static final long GENERATION_MASK = ((1L<<GENERATION_BIT_SIZE)-1)<<GENERATION_SHIFT;
+    private static final int MAX_GENERATION = (1<<GENERATION_BIT_SIZE)-1;
+    
+    /**
+     * Max number of words reserved at once by bulk methods
+     * that need a temporary array.
+     */
+    private static final int MAX_BULK_CHUNK_SIZE = N;
+    
+    /**
+     * When computing next state ahead, it is done when the number
+     * of remaining words drops to this value or below.
+     * Large enough for the computation to usually be done in time,
+     * even if other threads keep on reserving words meanwhile.
+     */
+    private static final int AHEAD_TWIST_MTI = N/2;
     
     /**
      * Not final because constructed in construct().
      */
     private PostPaddedAtomicReference<MyStateHolder> holderRef;
     
+    /**
+     * 1 if not in block mode.
+     */
+    private final int blockSize;
+    
+    /**
+     * Incremented on each seeding or state setting, for threads to know
+     * that their reserved words are obsolete.
+     * Not incremented atomically, but concurrent seedings or state settings
+     * make no sense anyway.
+     */
+    private volatile int version;
+    
+    /**
+     * Only used in block mode.
+     * Transient because not serializable, and then lazily recreated.
+     */
+    private transient ThreadLocal<MyBlock> blockByThread;
+    
+    /**
+     * Spare holder of each thread, into which it computes next state.
+     * Per instance, not static: a holder retired by an instance must not
+     * be published by another one, since threads with a stale reference
+     * to it would then use it as if it was current holder of the first one.
+     * Not final because constructed in construct().
+     * Transient because not serializable, and then lazily recreated.
+     */
+    private transient ThreadLocal<MyStateHolder> spareHolderByThread;
+    
+    /**
+     * Null if not computing next state ahead.
+     * Else, contains a retired holder (if any), into which next state
+     * can be computed ahead.
+     */
+    private final AtomicReference<MyStateHolder> retiredHolderRef;
+    
+    private final ConcContention contention;
+    
     //--------------------------------------------------------------------------
     // PUBLIC METHODS
     //--------------------------------------------------------------------------
@@ -87,6 +207,9 @@ public class MTConcRNG extends AbstractRNG {
      * Constructor using a random seed.
      */
     public MTConcRNG() {
+        this.blockSize = 1;
+        this.retiredHolderRef = null;
+        this.contention = ConcContention.NONE;
     }
 
     /**
@@ -97,6 +220,80 @@ public class MTConcRNG extends AbstractRNG {
      */
     public MTConcRNG(long seed) {
         super(seed);
+        this.blockSize = 1;
+        this.retiredHolderRef = null;
+        this.contention = ConcContention.NONE;
+    }
+    
+    /**
+     * Constructor using a specified seed, and in which each thread reserves
+     * words by blocks of the specified size for its scalar calls.
+     * 
+     * Only the 32 LSBits of the specified seed are used (as in the original
+     * implementation).
+     * 
+     * @param blockSize Number of words reserved at once by each thread,
+     *        1 meaning no block mode.
+     * @throws IllegalArgumentException if blockSize < 1.
+     */
+    public MTConcRNG(long seed, int blockSize) {
+        this(seed, blockSize, false);
+    }
+    
+    /**
+     * Constructor using a specified seed, in which each thread reserves
+     * words by blocks of the specified size for its scalar calls, and
+     * which can compute next state ahead of exhaustion.
+     * 
+     * Only the 32 LSBits of the specified seed are used (as in the original
+     * implementation).
+     * 
+     * @param blockSize Number of words reserved at once by each thread,
+     *        1 meaning no block mode.
+     * @param twistAhead True if next state must be computed ahead of
+     *        exhaustion, to avoid latency spikes on exhaustion.
+     * @throws IllegalArgumentException if blockSize < 1.
+     */
+    public MTConcRNG(long seed, int blockSize, boolean twistAhead) {
+        this(seed, blockSize, twistAhead, BackoffPolicy.NONE, false);
+    }
+    
+    /**
+     * Constructor using a specified seed, in which each thread reserves
+     * words by blocks of the specified size for its scalar calls, which
+     * can compute next state ahead of exhaustion, and with specified
+     * backoff policy, and whether to count contention.
+     * 
+     * Only the 32 LSBits of the specified seed are used (as in the original
+     * implementation).
+     * 
+     * @param blockSize Number of words reserved at once by each thread,
+     *        1 meaning no block mode.
+     * @param twistAhead True if next state must be computed ahead of
+     *        exhaustion, to avoid latency spikes on exhaustion.
+     * @param backoffPolicy Policy applied after each failed CAS, or each
+     *        time state is found being replaced by another thread.
+     * @param withStats True if must count attempts, failed CASes
+     *        and holder swaps.
+     * @throws IllegalArgumentException if blockSize < 1.
+     * @throws NullPointerException if the specified policy is null.
+     */
+    public MTConcRNG(
+            long seed,
+            int blockSize,
+            boolean twistAhead,
+            BackoffPolicy backoffPolicy,
+            boolean withStats) {
+        super(seed);
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize ["+blockSize+"] must be >= 1");
+        }
+        this.blockSize = blockSize;
+        if (blockSize != 1) {
+            this.blockByThread = this.newBlockByThread();
+        }
+        this.retiredHolderRef = (twistAhead ? new AtomicReference<MyStateHolder>() : null);
+        this.contention = ConcContention.newInstance(backoffPolicy, withStats);
     }
     
     /**
@@ -104,6 +301,9 @@ public class MTConcRNG extends AbstractRNG {
      */
     public MTConcRNG(int[] initKey, int keyLength) {
         super((Void)null);
+        this.blockSize = 1;
+        this.retiredHolderRef = null;
+        this.contention = ConcContention.NONE;
         this.setSeed(initKey, keyLength);
     }
 
@@ -115,30 +315,41 @@ public class MTConcRNG extends AbstractRNG {
         final int mti = MTUtils.setSeed(holder.mt, initKey, keyLength);
         holder.set(meta(0,0,mti));
         this.holderRef.set(holder);
+        this.version++;
     }
 
     @Override
     public int nextInt() {
-        MyStateHolder newHolder = null;
+        if (this.blockSize != 1) {
+            return nextInt(this.getBlock());
+        }
+        final ConcContention contention = this.contention;
+        int nbrOfFailures = 0;
+        int nbrOfFailedCASes = 0;
         MyStateHolder holder = this.holderRef.get();
         do {
             final long meta = holder.get();
 
             // Getting random bits.
             final int mti = mti(meta);
+            if (mti == UNUSABLE_MTI) {
+                // Holder being replaced.
+                holder = this.holderRef.get();
+                contention.backoffPolicy.backoff(++nbrOfFailures);
+                continue;
+            }
+            final MyStateHolder newHolder;
             final int s;
             final int newMti;
             final boolean useOfNewHolder = (mti == 0);
             if (useOfNewHolder) {
                 // Can't generate more random bits from this holder.
-                // Creating a new holder, including current stored bits if any.
-                if (newHolder == null) {
-                    newHolder = new MyStateHolder();
-                }
-                System.arraycopy(holder.mt, 0, newHolder.mt, 0, N+1);
-                s = MTUtils.toNextState(newHolder.mt);
+                // Using a new holder, including current stored bits if any.
+                newHolder = this.nextHolder(holder, meta);
+                s = newHolder.mt[N];
                 newMti = N-1;
             } else {
+                newHolder = null;
                 s = holder.mt[mti];
                 newMti = mti-1;
             }
@@ -146,7 +357,8 @@ public class MTConcRNG extends AbstractRNG {
             final long newMeta = metaMtiUpdate(meta, newMti);
 
             if (useOfNewHolder) {
-                if (setNewMetaAndCompareAndSet(newMeta, this.holderRef, holder, newHolder)) {
+                if (this.retireAndReplace(holder, meta, newHolder, newMeta)) {
+                    contention.onDone(nbrOfFailures + 1, nbrOfFailedCASes, 1);
                     return MTUtils.tempered(s);
                 }
                 // Since holder get, someone else successfully used this holder:
@@ -154,37 +366,51 @@ public class MTConcRNG extends AbstractRNG {
                 holder = this.holderRef.get();
             } else {
                 if (holder.compareAndSet(meta, newMeta)) {
+                    contention.onDone(nbrOfFailures + 1, nbrOfFailedCASes, 0);
+                    this.onReservation(holder, mti, newMti);
                     return MTUtils.tempered(s);
                 }
                 // Since meta get, someone else successfully used this holder:
                 // will try to use it again.
             }
+            nbrOfFailedCASes++;
+            contention.backoffPolicy.backoff(++nbrOfFailures);
         } while (true);
     }
     
     @Override
     public long nextLong() {
+        if (this.blockSize != 1) {
+            final MyBlock block = this.getBlock();
+            return (((long)nextInt(block))<<32) + nextInt(block);
+        }
         // Overriding to avoid encountering concurrency overhead twice.
-        MyStateHolder newHolder = null;
+        final ConcContention contention = this.contention;
+        int nbrOfFailures = 0;
+        int nbrOfFailedCASes = 0;
         MyStateHolder holder = this.holderRef.get();
         do {
             final long meta = holder.get();
             final int mti = mti(meta);
+            if (mti == UNUSABLE_MTI) {
+                // Holder being replaced.
+                holder = this.holderRef.get();
+                contention.backoffPolicy.backoff(++nbrOfFailures);
+                continue;
+            }
             int newMti;
 
             // Getting some random bits.
+            final MyStateHolder newHolder;
             final int s1;
             final int s2;
             final boolean useOfNewHolder = (mti <= 1);
             if (useOfNewHolder) {
                 // Can't generate enough random bits from this holder.
-                // Creating a new holder, including current stored bits if
+                // Using a new holder, including current stored bits if
                 // any.
-                if (newHolder == null) {
-                    newHolder = new MyStateHolder();
-                }
-                System.arraycopy(holder.mt, 0, newHolder.mt, 0, N+1);
-                final int s = MTUtils.toNextState(newHolder.mt);
+                newHolder = this.nextHolder(holder, meta);
+                final int s = newHolder.mt[N];
                 newMti = N-1;
 
                 final boolean useOfBitsFromOld = (mti != 0);
@@ -198,6 +424,7 @@ public class MTConcRNG extends AbstractRNG {
                 }
             } else {
                 // General case.
+                newHolder = null;
                 s1 = holder.mt[mti];
                 s2 = holder.mt[mti-1];
                 newMti = mti - 2;
@@ -206,7 +433,8 @@ public class MTConcRNG extends AbstractRNG {
             final long newMeta = metaMtiUpdate(meta, newMti);
 
             if (useOfNewHolder) {
-                if (setNewMetaAndCompareAndSet(newMeta, this.holderRef, holder, newHolder)) {
+                if (this.retireAndReplace(holder, meta, newHolder, newMeta)) {
+                    contention.onDone(nbrOfFailures + 1, nbrOfFailedCASes, 1);
                     return (((long)MTUtils.tempered(s1))<<32) + MTUtils.tempered(s2);
                 }
                 // Since holder get, someone else successfully used this
@@ -214,31 +442,157 @@ public class MTConcRNG extends AbstractRNG {
                 holder = this.holderRef.get();
             } else {
                 if (holder.compareAndSet(meta, newMeta)) {
+                    contention.onDone(nbrOfFailures + 1, nbrOfFailedCASes, 0);
+                    this.onReservation(holder, mti, newMti);
                     return (((long)MTUtils.tempered(s1))<<32) + MTUtils.tempered(s2);
                 }
                 // Since meta get, someone else successfully used this holder:
                 // will try to use it again.
             }
+            nbrOfFailedCASes++;
+            contention.backoffPolicy.backoff(++nbrOfFailures);
         } while (true);
     }
     
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        this.nextTemperedWords(dst, off, len);
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] tmp = new int[Math.min(2 * len, MAX_BULK_CHUNK_SIZE)];
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            final int chunkSize = Math.min(tmp.length / 2, end - i);
+            this.nextTemperedWords(tmp, 0, 2 * chunkSize);
+            for (int j=0;j<chunkSize;j++) {
+                // Same as nextLong().
+                dst[i++] = (((long)tmp[2*j])<<32) + tmp[2*j+1];
+            }
+        }
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] tmp = new int[Math.min(len, MAX_BULK_CHUNK_SIZE)];
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            final int chunkSize = Math.min(tmp.length, end - i);
+            this.nextTemperedWords(tmp, 0, chunkSize);
+            for (int j=0;j<chunkSize;j++) {
+                // Same as AbstractRNG.nextFloat().
+                dst[i++] = (tmp[j] & ((1<<24)-1)) * (1.0f/(1<<24));
+            }
+        }
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] tmp = new int[Math.min(2 * len, MAX_BULK_CHUNK_SIZE)];
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            final int chunkSize = Math.min(tmp.length / 2, end - i);
+            this.nextTemperedWords(tmp, 0, 2 * chunkSize);
+            for (int j=0;j<chunkSize;j++) {
+                // Same as nextLong() and AbstractRNG.nextDouble().
+                final long bits = (((long)tmp[2*j])<<32) + tmp[2*j+1];
+                dst[i++] = (bits & ((1L<<53)-1)) * (1.0/(1L<<53));
+            }
+        }
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int nbrOfLongs = (len + 7) / 8;
+        final int[] tmp = new int[Math.min(2 * nbrOfLongs, MAX_BULK_CHUNK_SIZE)];
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            final int chunkSize = Math.min(tmp.length / 2, (end - i + 7) / 8);
+            this.nextTemperedWords(tmp, 0, 2 * chunkSize);
+            for (int j=0;j<chunkSize;j++) {
+                // Same as nextLong() and AbstractRNG.nextBytes(...).
+                final long bits = (((long)tmp[2*j])<<32) + tmp[2*j+1];
+                RandomUtilz.putBytes(bits, dst, i, Math.min(8, end - i));
+                i += 8;
+            }
+        }
+    }
+
+    /*
+     * 
+     */
+    
+    public BackoffPolicy getBackoffPolicy() {
+        return this.contention.backoffPolicy;
+    }
+    
+    /**
+     * In block mode, attempts are only done by reservations of blocks.
+     * 
+     * @return Counts of attempts, failed CASes and holder swaps since
+     *         construction, or null if this RNG was not created with stats.
+     */
+    public ContentionStats getContentionStats() {
+        return this.contention.getStats();
+    }
+    
     /*
      * 
      */
     
+    /**
+     * In block mode, discards words and stored bits reserved by
+     * the calling thread, so that it then continues from the returned
+     * state.
+     */
     @Override
     public byte[] getState() {
-        final MyStateHolder holder = this.holderRef.get();
-        byte[] tab = new byte[4*holder.mt.length + 4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        if (this.blockSize != 1) {
+            // Version mismatch causes new reservation on next use.
+            this.getBlockByThread().get().version = this.version - 1;
+        }
+        final int[] mt = new int[N+1];
+        long meta;
+        while (true) {
+            final MyStateHolder holder = this.holderRef.get();
+            final long meta1 = holder.get();
+            if (mti(meta1) == UNUSABLE_MTI) {
+                // Holder being replaced.
+                continue;
+            }
+            System.arraycopy(holder.mt, 0, mt, 0, N+1);
+            // Checking that holder was not recycled while we copied its words,
+            // with a CAS for words reads not to be reordered after it.
+            meta = holder.get();
+            if (((meta & GENERATION_MASK) == (meta1 & GENERATION_MASK))
+                    && (mti(meta) != UNUSABLE_MTI)
+                    && holder.compareAndSet(meta, meta)) {
+                break;
+            }
+        }
+        byte[] tab = new byte[4*mt.length + 4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
         // Big endian.
         ByteBuffer bb = ByteBuffer.wrap(tab);
         // Putting mt in original order, for easier comparison
         // with other implementations that would not reverse
         // order as we do.
-        for (int i=holder.mt.length;--i>=0;) {
-            bb.putInt(holder.mt[i]);
+        for (int i=mt.length;--i>=0;) {
+            bb.putInt(mt[i]);
         }
-        long meta = holder.get();
         bb.putInt(mti(meta));
         RandomUtilz.encodeNbrOfStoredBits(nbrOfStoredBits(meta), bb);
         RandomUtilz.encodeStoredBits(storedBits(meta), bb);
@@ -257,6 +611,7 @@ public class MTConcRNG extends AbstractRNG {
         int currentStoredBits = RandomUtilz.decodeStoredBits(bb);
         holder.set(meta(currentStoredBits,currentNbrOfStoredBits,mti));
         this.holderRef.set(holder);
+        this.version++;
     }
 
     //--------------------------------------------------------------------------
@@ -268,6 +623,7 @@ public class MTConcRNG extends AbstractRNG {
         // Can have null holder here, since must be initialized in any public
         // constructor, i.e. before use.
         this.holderRef = new PostPaddedAtomicReference<MyStateHolder>(null);
+        this.spareHolderByThread = new ThreadLocal<MyStateHolder>();
     }
 
     @Override
@@ -276,14 +632,27 @@ public class MTConcRNG extends AbstractRNG {
         final int mti = MTUtils.setSeed(holder.mt, seed);
         holder.set(meta(0,0,mti));
         this.holderRef.set(holder);
+        this.version++;
     }
 
     @Override
     protected int next(int nbrOfBits) {
-        MyStateHolder newHolder = null;
+        if (this.blockSize != 1) {
+            return next(this.getBlock(), nbrOfBits);
+        }
+        final ConcContention contention = this.contention;
+        int nbrOfFailures = 0;
+        int nbrOfFailedCASes = 0;
         MyStateHolder holder = this.holderRef.get();
         do {
             final long meta = holder.get();
+            if (mti(meta) == UNUSABLE_MTI) {
+                // Holder being replaced (must check before using stored bits,
+                // which have been copied into its replacement).
+                holder = this.holderRef.get();
+                contention.backoffPolicy.backoff(++nbrOfFailures);
+                continue;
+            }
             
             final int storedBits = storedBits(meta);
             final int nbrOfStoredBits = nbrOfStoredBits(meta);
@@ -295,6 +664,7 @@ public class MTConcRNG extends AbstractRNG {
                 final int newStoredBits = ((storedBits & ((1<<newNbrOfStoredBits)-1)));
                 final long newMeta = metaStoredBitsUpdate(meta, newStoredBits, newNbrOfStoredBits);
                 if (holder.compareAndSet(meta, newMeta)) {
+                    contention.onDone(nbrOfFailures + 1, nbrOfFailedCASes, 0);
                     return result;
                 }
                 // Since meta get, someone else successfully used this holder:
@@ -302,20 +672,19 @@ public class MTConcRNG extends AbstractRNG {
             } else {
                 // Not enough stored bits: getting more random bits.
                 final int mti = mti(meta);
+                final MyStateHolder newHolder;
                 int s;
                 final int newMti;
                 final boolean useOfNewHolder = (mti == 0);
                 if (useOfNewHolder) {
                     // Can't generate more random bits from this holder.
-                    // Creating a new holder, including current stored bits if
+                    // Using a new holder, including current stored bits if
                     // any.
-                    if (newHolder == null) {
-                        newHolder = new MyStateHolder();
-                    }
-                    System.arraycopy(holder.mt, 0, newHolder.mt, 0, N+1);
-                    s = MTUtils.toNextState(newHolder.mt);
+                    newHolder = this.nextHolder(holder, meta);
+                    s = newHolder.mt[N];
                     newMti = N-1;
                 } else {
+                    newHolder = null;
                     s = holder.mt[mti];
                     newMti = mti-1;
                 }
@@ -330,10 +699,11 @@ public class MTConcRNG extends AbstractRNG {
                 final int result = (storedBits<<nbrOfNewBitsUsed) | (s>>>newNbrOfStoredBits);
 
                 final int newStoredBits = ((s & ((1<<newNbrOfStoredBits)-1)));
-                final long newMeta = meta(newStoredBits, newNbrOfStoredBits, newMti);
+                final long newMeta = metaStoredBitsUpdate(metaMtiUpdate(meta, newMti), newStoredBits, newNbrOfStoredBits);
                 
                 if (useOfNewHolder) {
-                    if (setNewMetaAndCompareAndSet(newMeta, this.holderRef, holder, newHolder)) {
+                    if (this.retireAndReplace(holder, meta, newHolder, newMeta)) {
+                        contention.onDone(nbrOfFailures + 1, nbrOfFailedCASes, 1);
                         return result;
                     }
                     // Since holder get, someone else successfully used this
@@ -341,12 +711,16 @@ public class MTConcRNG extends AbstractRNG {
                     holder = this.holderRef.get();
                 } else {
                     if (holder.compareAndSet(meta, newMeta)) {
+                        contention.onDone(nbrOfFailures + 1, nbrOfFailedCASes, 0);
+                        this.onReservation(holder, mti, newMti);
                         return result;
                     }
                     // Since meta get, someone else successfully used this
                     // holder: will try to use it again.
                 }
             }
+            nbrOfFailedCASes++;
+            contention.backoffPolicy.backoff(++nbrOfFailures);
         } while (true);
     }
 
@@ -354,30 +728,408 @@ public class MTConcRNG extends AbstractRNG {
     // PRIVATE METHODS
     //--------------------------------------------------------------------------
     
-    private static boolean setNewMetaAndCompareAndSet(
-            long newMeta,
-            PostPaddedAtomicReference<MyStateHolder> holderRef,
+    /**
+     * Puts tempered words into the specified range, as if by successive
+     * calls to nextInt(), using (in block mode) the words reserved by the
+     * calling thread first.
+     */
+    private void nextTemperedWords(int[] dst, int off, int len) {
+        if (this.blockSize != 1) {
+            final MyBlock block = this.getBlock();
+            final int n = Math.min(len, block.words.length - block.index);
+            System.arraycopy(block.words, block.index, dst, off, n);
+            block.index += n;
+            off += n;
+            len -= n;
+        }
+        this.reserveTemperedWords(dst, off, len, null);
+    }
+    
+    /**
+     * Reserves words from shared state, as many as possible per CAS,
+     * and puts them tempered into the specified range.
+     * 
+     * @param storedBitsTaker If not null, block into which stored bits
+     *        from shared state are moved.
+     */
+    private void reserveTemperedWords(int[] dst, int off, int len, MyBlock storedBitsTaker) {
+        int i = off;
+        final int end = off + len;
+        final ConcContention contention = this.contention;
+        // Failures since last reservation, for backoff.
+        int nbrOfFailures = 0;
+        int nbrOfAttempts = 0;
+        int nbrOfFailedCASes = 0;
+        int nbrOfHolderSwaps = 0;
+        MyStateHolder holder = this.holderRef.get();
+        while (i < end) {
+            nbrOfAttempts++;
+            final long meta = holder.get();
+            final int mti = mti(meta);
+            if (mti == UNUSABLE_MTI) {
+                // Holder being replaced.
+                holder = this.holderRef.get();
+                contention.backoffPolicy.backoff(++nbrOfFailures);
+                continue;
+            }
+            final boolean useOfNewHolder = (mti == 0);
+            final MyStateHolder usedHolder;
+            final int firstMti;
+            if (useOfNewHolder) {
+                // Can't reserve more words from this holder.
+                // Using a new holder, including current stored bits if any.
+                // First word of next state is mt[N], so N words are available.
+                usedHolder = this.nextHolder(holder, meta);
+                firstMti = N;
+            } else {
+                usedHolder = holder;
+                firstMti = mti;
+            }
+            
+            final int n = Math.min(firstMti, end - i);
+            long newMeta = metaMtiUpdate(meta, firstMti - n);
+            if (storedBitsTaker != null) {
+                newMeta = metaStoredBitsUpdate(newMeta, 0, 0);
+            }
+            
+            // Copying raw words before the CAS, since once it's done,
+            // the holder could be retired and recycled.
+            final int[] mt = usedHolder.mt;
+            for (int k=0;k<n;k++) {
+                dst[i+k] = mt[firstMti-k];
+            }
+            
+            final boolean reserved;
+            if (useOfNewHolder) {
+                reserved = this.retireAndReplace(holder, meta, usedHolder, newMeta);
+                if (reserved) {
+                    holder = usedHolder;
+                } else {
+                    // Since holder get, someone else successfully used this
+                    // holder: will try to use current one.
+                    holder = this.holderRef.get();
+                }
+            } else {
+                // If fails, someone else successfully used this holder
+                // since meta get: will try to use it again.
+                reserved = holder.compareAndSet(meta, newMeta);
+            }
+            
+            if (reserved) {
+                nbrOfFailures = 0;
+                if (useOfNewHolder) {
+                    nbrOfHolderSwaps++;
+                }
+                this.onReservation(usedHolder, firstMti, firstMti - n);
+                if (storedBitsTaker != null) {
+                    storedBitsTaker.storedBits = storedBits(meta);
+                    storedBitsTaker.nbrOfStoredBits = nbrOfStoredBits(meta);
+                    storedBitsTaker = null;
+                }
+                for (int k=0;k<n;k++) {
+                    dst[i] = MTUtils.tempered(dst[i]);
+                    i++;
+                }
+            } else {
+                nbrOfFailedCASes++;
+                contention.backoffPolicy.backoff(++nbrOfFailures);
+            }
+        }
+        if (nbrOfAttempts != 0) {
+            contention.onDone(nbrOfAttempts, nbrOfFailedCASes, nbrOfHolderSwaps);
+        }
+    }
+    
+    /*
+     * block mode
+     */
+    
+    private ThreadLocal<MyBlock> newBlockByThread() {
+        final int blockSize = this.blockSize;
+        return new ThreadLocal<MyBlock>() {
+            @Override
+            protected MyBlock initialValue() {
+                final MyBlock block = new MyBlock(blockSize);
+                // Version mismatch causes reservation on first use.
+                block.version = MTConcRNG.this.version - 1;
+                return block;
+            }
+        };
+    }
+    
+    private ThreadLocal<MyBlock> getBlockByThread() {
+        ThreadLocal<MyBlock> blockByThread = this.blockByThread;
+        if (blockByThread == null) {
+            // Only happens after deserialization. Racy, but concurrent
+            // creations would only cause some reserved words to be skipped.
+            blockByThread = this.newBlockByThread();
+            this.blockByThread = blockByThread;
+        }
+        return blockByThread;
+    }
+    
+    /**
+     * @return The block of the calling thread, with words and stored bits
+     *         reserved from current state.
+     */
+    private MyBlock getBlock() {
+        final MyBlock block = this.getBlockByThread().get();
+        final int version = this.version;
+        if (block.version != version) {
+            // Words and stored bits obsolete (or block new):
+            // reserving new ones, also taking stored bits of shared state.
+            block.version = version;
+            this.reserveTemperedWords(block.words, 0, block.words.length, block);
+            block.index = 0;
+        }
+        return block;
+    }
+    
+    private int nextInt(MyBlock block) {
+        final int[] words = block.words;
+        if (block.index == words.length) {
+            this.reserveTemperedWords(words, 0, words.length, null);
+            block.index = 0;
+        }
+        return words[block.index++];
+    }
+    
+    /**
+     * Same as AbstractSeqRNG.next(int), but with block's stored bits.
+     */
+    private int next(MyBlock block, int nbrOfBits) {
+        final int result;
+        final int tmpBits;
+        final int nbrOfTmpBitsNotUsed;
+        final int nbrOfStoredBits = block.nbrOfStoredBits;
+        if (nbrOfBits <= nbrOfStoredBits) {
+            // Enough stored bits.
+            tmpBits = block.storedBits;
+            nbrOfTmpBitsNotUsed = (nbrOfStoredBits-nbrOfBits);
+            // Using MSBits of current bits.
+            result = (tmpBits>>>nbrOfTmpBitsNotUsed);
+        } else {
+            // Not enough stored bits: getting more random bits.
+            tmpBits = this.nextInt(block);
+            // Number of new random bits to add to the value.
+            final int nbrOfNewBitsUsed = nbrOfBits - nbrOfStoredBits;
+            nbrOfTmpBitsNotUsed = (32-nbrOfNewBitsUsed);
+            // Using stored bits as MSBits, and MSBits of new bits as LSBits.
+            result = (block.storedBits<<nbrOfNewBitsUsed) | (tmpBits>>>nbrOfTmpBitsNotUsed);
+        }
+        block.storedBits = ((tmpBits & ((1<<nbrOfTmpBitsNotUsed)-1)));
+        block.nbrOfStoredBits = nbrOfTmpBitsNotUsed;
+        return result;
+    }
+    
+    /*
+     * 
+     */
+    
+    /**
+     * @param meta Meta read from holder, before its words are read.
+     * @return A holder containing next state of the specified holder:
+     *         the one computed ahead if any, else the spare holder of
+     *         current thread, into which it is computed.
+     */
+    private MyStateHolder nextHolder(MyStateHolder holder, long meta) {
+        if (this.retiredHolderRef != null) {
+            final MyStateHolder next = holder.nextRef.get();
+            if ((next != null) && (next.sourceGeneration == generation(meta))) {
+                return next;
+            }
+        }
+        final MyStateHolder spare = this.spareHolder();
+        System.arraycopy(holder.mt, 0, spare.mt, 0, N+1);
+        MTUtils.toNextState(spare.mt);
+        return spare;
+    }
+    
+    /**
+     * To be called after words from mti (exclusive) down to newMti (inclusive)
+     * have been successfully reserved from the specified holder.
+     */
+    private void onReservation(MyStateHolder holder, int mti, int newMti) {
+        // Only one reservation can cross the mark for a given holder
+        // generation, so next state is usually only computed once.
+        if ((this.retiredHolderRef != null)
+                && (mti > AHEAD_TWIST_MTI)
+                && (newMti <= AHEAD_TWIST_MTI)) {
+            this.twistAhead(holder);
+        }
+    }
+    
+    /**
+     * Computes next state of the specified holder, into a retired holder
+     * (or a new one if none is available), and makes it the next holder
+     * of the specified holder.
+     */
+    private void twistAhead(MyStateHolder holder) {
+        final long meta = holder.get();
+        if (mti(meta) == UNUSABLE_MTI) {
+            // Already retired.
+            return;
+        }
+        final int generation = generation(meta);
+        
+        MyStateHolder next = this.retiredHolderRef.getAndSet(null);
+        if (next == null) {
+            next = new MyStateHolder();
+        } else {
+            // Dropping stale reference, not to retain holders.
+            next.nextRef.set(null);
+        }
+        System.arraycopy(holder.mt, 0, next.mt, 0, N+1);
+        MTUtils.toNextState(next.mt);
+        next.sourceGeneration = generation;
+        
+        // Checking that holder was not recycled while we copied its words,
+        // with a CAS for words reads not to be reordered after it.
+        while (true) {
+            final long meta2 = holder.get();
+            if ((generation(meta2) != generation)
+                    || (mti(meta2) == UNUSABLE_MTI)) {
+                // Too late.
+                this.retiredHolderRef.set(next);
+                return;
+            }
+            if (holder.compareAndSet(meta2, meta2)) {
+                break;
+            }
+        }
+        
+        final MyStateHolder previous = holder.nextRef.get();
+        if (((previous != null) && (previous.sourceGeneration == generation))
+                || (!holder.nextRef.compareAndSet(previous, next))) {
+            // Someone else already did it.
+            this.retiredHolderRef.set(next);
+        }
+    }
+    
+    /**
+     * @return The spare holder of current thread.
+     */
+    private MyStateHolder spareHolder() {
+        final ThreadLocal<MyStateHolder> spareHolderByThread = this.getSpareHolderByThread();
+        MyStateHolder spare = spareHolderByThread.get();
+        if (spare == null) {
+            spare = new MyStateHolder();
+            spareHolderByThread.set(spare);
+        }
+        return spare;
+    }
+    
+    private ThreadLocal<MyStateHolder> getSpareHolderByThread() {
+        ThreadLocal<MyStateHolder> spareHolderByThread = this.spareHolderByThread;
+        if (spareHolderByThread == null) {
+            // Only happens after deserialization. Racy, but concurrent
+            // creations would only cause some spare holders to be dropped.
+            spareHolderByThread = new ThreadLocal<MyStateHolder>();
+            this.spareHolderByThread = spareHolderByThread;
+        }
+        return spareHolderByThread;
+    }
+    
+    /**
+     * Retires the specified holder, if it is the current one and has not
+     * been used since its meta was read (which also ensures that words
+     * copied from it were not modified by a recycling), and replaces it
+     * with the specified new holder. On success, the retired holder becomes
+     * the spare holder of current thread if new holder was it, or else is
+     * made available for next state computation ahead (unless it is not
+     * recyclable, in which case it is dropped).
+     * 
+     * @param meta Meta read from holder, before its words were copied.
+     * @param newMeta Meta to set into newHolder (except generation).
+     * @return True if newHolder has been published, false otherwise.
+     */
+    private boolean retireAndReplace(
             MyStateHolder holder,
-            MyStateHolder newHolder) {
-        // Lazy ok for this holder is only known by current thread
-        // in calling method, and a CAS follows.
-        newHolder.set(newMeta); // TODO Java6 lazySet
-        return holderRef.compareAndSet(holder, newHolder);
+            long meta,
+            MyStateHolder newHolder,
+            long newMeta) {
+        // Only one thread can retire a holder, so only it can then replace it.
+        // New holder is either our spare, or the one computed ahead for
+        // this holder, which can't be used by anyone else (but read).
+        if (this.holderRef.get() != holder) {
+            // Holder reached through a stale reference, and made usable
+            // by a thread that didn't publish it yet: it must not be
+            // retired before being published, else it would be
+            // published retired, i.e. unusable forever.
+            return false;
+        }
+        if (!holder.compareAndSet(meta, retiredMeta(meta))) {
+            return false;
+        }
+        // Making new holder usable only now, and not before retiring the
+        // old one, else its stored bits could be used twice, by threads
+        // with a stale reference to new holder (from its previous life).
+        newHolder.set((newMeta & ~GENERATION_MASK) | (newHolder.get() & GENERATION_MASK));
+        if (!this.holderRef.compareAndSet(holder, newHolder)) {
+            // Concurrent seeding or state setting: retired holder is just
+            // dropped, and new holder made unusable again, since it stays
+            // our spare (or is dropped, if computed ahead).
+            newHolder.set(retiredMeta(newHolder.get()));
+            if (!isRecyclable(newHolder)) {
+                final ThreadLocal<MyStateHolder> spareHolderByThread = this.getSpareHolderByThread();
+                if (newHolder == spareHolderByThread.get()) {
+                    spareHolderByThread.set(null);
+                }
+            }
+            return false;
+        }
+        if (this.retiredHolderRef != null) {
+            holder.nextRef.set(null);
+        }
+        final boolean recyclable = isRecyclable(holder);
+        final ThreadLocal<MyStateHolder> spareHolderByThread = this.getSpareHolderByThread();
+        if (newHolder == spareHolderByThread.get()) {
+            // If not recyclable, a new spare is created on next need.
+            spareHolderByThread.set(recyclable ? holder : null);
+        } else if (this.retiredHolderRef != null) {
+            if (recyclable) {
+                this.retiredHolderRef.set(holder);
+            }
+        } else {
+            // New holder was a spare from spare holders lost
+            // by a racy recreation: retired holder is just dropped.
+        }
+        return true;
+    }
+    
+    /**
+     * @param holder A retired holder.
+     * @return True if the specified holder can be published again,
+     *         i.e. retired again without its generation wrapping.
+     */
+    private static boolean isRecyclable(MyStateHolder holder) {
+        return generation(holder.get()) != MAX_GENERATION;
     }
     
     /*
      * 
      */
     
+    /**
+     * @return Meta with generation 0.
+     */
     private static long meta(int storedBits, int nbrOfStoredBits, int mti) {
         return (((long)storedBits)<<32) | (nbrOfStoredBits<<MTI_BIT_SIZE) | mti;
     }
     
     /**
-     * To avoid having to retrieve mti to compute new meta.
+     * To avoid having to retrieve mti and generation to compute new meta.
      */
     private static long metaStoredBitsUpdate(long meta, int storedBits, int nbrOfStoredBits) {
-        return (meta & (-1L>>>(64-MTI_BIT_SIZE))) | (((long)storedBits)<<32) | (nbrOfStoredBits<<MTI_BIT_SIZE);
+        return (meta & (GENERATION_MASK | ((1L<<MTI_BIT_SIZE)-1))) | (((long)storedBits)<<32) | (nbrOfStoredBits<<MTI_BIT_SIZE);
+    }
+
+    /**
+     * @return Meta with unusable mti and incremented generation.
+     */
+    private static long retiredMeta(long meta) {
+        final long generationBits = (meta + (1L<<GENERATION_SHIFT)) & GENERATION_MASK;
+        return (metaMtiUpdate(meta, UNUSABLE_MTI) & ~GENERATION_MASK) | generationBits;
     }
 
     /**
@@ -387,6 +1139,10 @@ public class MTConcRNG extends AbstractRNG {
         return (meta & (-1L<<MTI_BIT_SIZE)) | mti;
     }
 
+    private static int generation(long meta) {
+        return (int)((meta & GENERATION_MASK)>>>GENERATION_SHIFT);
+    }
+
     private static int storedBits(long meta) {
         return (int)(meta>>32);
     }
@@ -110,6 +110,137 @@ public class MTSeqRNG extends AbstractSeqRNG {
         return MTUtils.tempered(s);
     }
 
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] mt = this.mt;
+        int mti = this.mti;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (mti == 0) {
+                mti = N-1;
+                dst[i++] = MTUtils.tempered(MTUtils.toNextState(mt));
+                continue;
+            }
+            // Tempering as many words as we can before next state computation.
+            final int chunkEnd = i + Math.min(mti, end - i);
+            while (i < chunkEnd) {
+                dst[i++] = MTUtils.tempered(mt[mti--]);
+            }
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] mt = this.mt;
+        int mti = this.mti;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final int s1;
+            if (mti != 0) {
+                s1 = mt[mti--];
+            } else {
+                mti = N-1;
+                s1 = MTUtils.toNextState(mt);
+            }
+            final int s2;
+            if (mti != 0) {
+                s2 = mt[mti--];
+            } else {
+                mti = N-1;
+                s2 = MTUtils.toNextState(mt);
+            }
+            // Same as AbstractRNG.nextLong().
+            dst[i] = ((long)MTUtils.tempered(s1) << 32) + MTUtils.tempered(s2);
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] mt = this.mt;
+        int mti = this.mti;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (mti == 0) {
+                mti = N-1;
+                dst[i++] = (MTUtils.tempered(MTUtils.toNextState(mt)) & ((1<<24)-1)) * (1.0f/(1<<24));
+                continue;
+            }
+            // Tempering as many words as we can before next state computation.
+            final int chunkEnd = i + Math.min(mti, end - i);
+            while (i < chunkEnd) {
+                dst[i++] = (MTUtils.tempered(mt[mti--]) & ((1<<24)-1)) * (1.0f/(1<<24));
+            }
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] mt = this.mt;
+        int mti = this.mti;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final int s1;
+            if (mti != 0) {
+                s1 = mt[mti--];
+            } else {
+                mti = N-1;
+                s1 = MTUtils.toNextState(mt);
+            }
+            final int s2;
+            if (mti != 0) {
+                s2 = mt[mti--];
+            } else {
+                mti = N-1;
+                s2 = MTUtils.toNextState(mt);
+            }
+            // Same as AbstractRNG.nextLong() and AbstractRNG.nextDouble().
+            final long bits = ((long)MTUtils.tempered(s1) << 32) + MTUtils.tempered(s2);
+            dst[i] = (bits & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+        this.mti = mti;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final int[] mt = this.mt;
+        int mti = this.mti;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            final int s1;
+            if (mti != 0) {
+                s1 = mt[mti--];
+            } else {
+                mti = N-1;
+                s1 = MTUtils.toNextState(mt);
+            }
+            final int s2;
+            if (mti != 0) {
+                s2 = mt[mti--];
+            } else {
+                mti = N-1;
+                s2 = MTUtils.toNextState(mt);
+            }
+            // Same as AbstractRNG.nextLong() and AbstractRNG.nextBytes(...).
+            final long bits = ((long)MTUtils.tempered(s1) << 32) + MTUtils.tempered(s2);
+            RandomUtilz.putBytes(bits, dst, i, Math.min(8, end - i));
+        }
+        this.mti = mti;
+    }
+
     /*
      * 
      */
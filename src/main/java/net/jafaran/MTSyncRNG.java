@@ -15,12 +15,17 @@
  */
 package net.jafaran;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Thread-safe and blocking.
  * 
  * Can be more efficient than MTConcRNG (no garbage, no CAS-retries, low
  * synchronization overhead).
  * 
+ * Can use a lock instead of the monitor of the backing RNG
+ * (see SyncRNG.LockMode).
+ * 
  * RNG based on Mersenne-Twister algorithm.
  */
 public class MTSyncRNG extends SyncRNG {
@@ -52,6 +57,19 @@ public class MTSyncRNG extends SyncRNG {
         super(new MTSeqRNG(seed));
     }
 
+    /**
+     * Constructor using a specified seed and lock mode.
+     * 
+     * Only the 32 LSBits of the specified seed are used (as in the original
+     * implementation).
+     * 
+     * @param lockMode How accesses to the backing RNG are synchronized.
+     * @throws NullPointerException if the specified lock mode is null.
+     */
+    public MTSyncRNG(long seed, LockMode lockMode) {
+        super(new MTSeqRNG(seed), lockMode);
+    }
+
     /**
      * @throws IllegalArgumentException if keyLength <= 0.
      */
@@ -62,15 +80,26 @@ public class MTSyncRNG extends SyncRNG {
     /**
      * Similar to SplittableRandom.split().
      * 
-     * @return A new instance, seeded with random bits from this instance.
+     * @return A new instance, seeded with random bits from this instance,
+     *         and using the same lock mode.
      */
     public MTSyncRNG split() {
         final MTSeqRNG rng = (MTSeqRNG)this.getBackingRNG();
         final MTSeqRNG newRng;
-        synchronized (rng) {
-            newRng = rng.split();
+        final ReentrantLock lock = this.getLock();
+        if (lock == null) {
+            synchronized (rng) {
+                newRng = rng.split();
+            }
+        } else {
+            this.lock(lock);
+            try {
+                newRng = rng.split();
+            } finally {
+                lock.unlock();
+            }
         }
-        return new MTSyncRNG(newRng);
+        return new MTSyncRNG(newRng, this.getLockMode());
     }
     
     /**
@@ -78,8 +107,18 @@ public class MTSyncRNG extends SyncRNG {
      */
     public void setSeed(int[] initKey, int keyLength) {
         final MTSeqRNG rng = (MTSeqRNG)this.getBackingRNG();
-        synchronized (rng) {
-            rng.setSeed(initKey, keyLength);
+        final ReentrantLock lock = this.getLock();
+        if (lock == null) {
+            synchronized (rng) {
+                rng.setSeed(initKey, keyLength);
+            }
+        } else {
+            this.lock(lock);
+            try {
+                rng.setSeed(initKey, keyLength);
+            } finally {
+                lock.unlock();
+            }
         }
     }
     
@@ -90,7 +129,7 @@ public class MTSyncRNG extends SyncRNG {
     /**
      * Creates an instance backed by the specified RNG.
      */
-    private MTSyncRNG(MTSeqRNG rng) {
-        super(rng);
+    private MTSyncRNG(MTSeqRNG rng, LockMode lockMode) {
+        super(rng, lockMode);
     }
 }
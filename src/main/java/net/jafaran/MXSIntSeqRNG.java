@@ -60,6 +60,38 @@ public class MXSIntSeqRNG extends AbstractSeqRNG {
         this.state = tmp;
         return tmp;
     }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        int tmp = this.state;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            tmp ^= (tmp << 13);
+            tmp ^= (tmp >>> 17);
+            tmp ^= (tmp << 5);
+            dst[i] = tmp;
+        }
+        this.state = tmp;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        int tmp = this.state;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            tmp ^= (tmp << 13);
+            tmp ^= (tmp >>> 17);
+            tmp ^= (tmp << 5);
+            dst[i] = (tmp & ((1<<24)-1)) * (1.0f/(1<<24));
+        }
+        this.state = tmp;
+    }
     
     /*
      * 
@@ -63,6 +63,82 @@ public class MXSLongSeqRNG extends AbstractSeqRNG {
         return tmp;
     }
 
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long tmp = this.state;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            tmp ^= (tmp << 21);
+            tmp ^= (tmp >>> 35);
+            tmp ^= (tmp << 4);
+            // Same as AbstractRNG.nextInt().
+            dst[i] = (int)tmp;
+        }
+        this.state = tmp;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long tmp = this.state;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            tmp ^= (tmp << 21);
+            tmp ^= (tmp >>> 35);
+            tmp ^= (tmp << 4);
+            dst[i] = tmp;
+        }
+        this.state = tmp;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long tmp = this.state;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            tmp ^= (tmp << 21);
+            tmp ^= (tmp >>> 35);
+            tmp ^= (tmp << 4);
+            // Same as AbstractRNG.nextInt() and AbstractRNG.nextFloat().
+            dst[i] = (((int)tmp) & ((1<<24)-1)) * (1.0f/(1<<24));
+        }
+        this.state = tmp;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long tmp = this.state;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            tmp ^= (tmp << 21);
+            tmp ^= (tmp >>> 35);
+            tmp ^= (tmp << 4);
+            dst[i] = (tmp & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+        this.state = tmp;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long tmp = this.state;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            tmp ^= (tmp << 21);
+            tmp ^= (tmp >>> 35);
+            tmp ^= (tmp << 4);
+            RandomUtilz.putBytes(tmp, dst, i, Math.min(8, end - i));
+        }
+        this.state = tmp;
+    }
+
     /*
      * 
      */
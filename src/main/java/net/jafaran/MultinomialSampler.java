@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples multinomial distribution of given number of trials (n) and
+ * probabilities of categories, using conditional binomials: the count of
+ * category i is binomial with the trials not yet assigned to previous
+ * categories, and probability of category i among categories [i,k[.
+ * 
+ * Draw cost is O(k) (each binomial taking constant expected time for large
+ * counts, see BinomialSampler), and stops as soon as all trials are assigned.
+ * Draws don't allocate.
+ * 
+ * Not thread-safe (uses a BinomialSampler), but can use any RNG.
+ */
+public class MultinomialSampler {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private final int n;
+    
+    /**
+     * Normalized probabilities.
+     */
+    private final double[] probs;
+    
+    /**
+     * Probability of category i among categories [i,k[.
+     */
+    private final double[] condProbs;
+    
+    private final BinomialSampler binomial = new BinomialSampler();
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param n Number of trials (>= 0).
+     * @param weights Weights of categories (each >= 0 and finite, with
+     *        a sum > 0 and finite), divided by their sum to obtain
+     *        probabilities. Not retained.
+     * @throws IllegalArgumentException if n < 0, if weights is empty,
+     *         or if weights are not as specified.
+     */
+    public MultinomialSampler(
+            int n,
+            double[] weights) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n ["+n+"] must be >= 0");
+        }
+        final int k = weights.length;
+        if (k == 0) {
+            throw new IllegalArgumentException("weights must not be empty");
+        }
+        final double[] suffixSums = new double[k+1];
+        for (int i=k;--i>=0;) {
+            final double weight = weights[i];
+            if (!((weight >= 0.0) && (weight < Double.POSITIVE_INFINITY))) {
+                throw new IllegalArgumentException("weights["+i+"] ["+weight+"] must be >= 0 and finite");
+            }
+            suffixSums[i] = suffixSums[i+1] + weight;
+        }
+        final double sum = suffixSums[0];
+        if (!((sum > 0.0) && (sum < Double.POSITIVE_INFINITY))) {
+            throw new IllegalArgumentException("sum of weights ["+sum+"] must be > 0 and finite");
+        }
+        final double[] probs = new double[k];
+        final double[] condProbs = new double[k];
+        for (int i=0;i<k;i++) {
+            probs[i] = weights[i] / sum;
+            // Using sums of remaining weights, to avoid cancellation
+            // from computing 1 - sum of previous probabilities.
+            condProbs[i] = (suffixSums[i] == 0.0) ? 0.0 : Math.min(1.0, weights[i] / suffixSums[i]);
+        }
+        this.n = n;
+        this.probs = probs;
+        this.condProbs = condProbs;
+    }
+    
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("[n = ");
+        sb.append(this.n);
+        sb.append(", probs = [");
+        for (int i=0;i<this.probs.length;i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(this.probs[i]);
+        }
+        return sb.append("]]").toString();
+    }
+    
+    public int getN() {
+        return this.n;
+    }
+
+    /**
+     * @return The number of categories (k).
+     */
+    public int getDimension() {
+        return this.probs.length;
+    }
+    
+    /**
+     * @param i Index of a category, in [0,getDimension()[.
+     * @return The (normalized) probability of the specified category.
+     */
+    public double getProb(int i) {
+        return this.probs[i];
+    }
+
+    /**
+     * Puts getDimension() counts, summing to n, into the specified array.
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the counts.
+     * @param off Index where to put the count of the first category.
+     * @throws IndexOutOfBoundsException if the range [off,off+getDimension()[
+     *         is out of dst.
+     */
+    public void next(AbstractRNG rng, int[] dst, int off) {
+        RandomUtilz.checkRange(dst.length, off, this.probs.length);
+        this.nextImpl(rng, dst, off);
+    }
+
+    /**
+     * Equivalent to nbrOfVectors successive calls to
+     * next(AbstractRNG,int[],int), each vector being put
+     * right after the previous one.
+     * Not an overload of next(...), since for other samplers the last int
+     * of next(AbstractRNG,int[],int,int) is a number of values.
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the vectors.
+     * @param off Index where to put the first count of the first vector.
+     * @param nbrOfVectors Number of vectors to put.
+     * @throws IndexOutOfBoundsException if the range
+     *         [off,off+nbrOfVectors*getDimension()[ is out of dst,
+     *         or if nbrOfVectors < 0.
+     */
+    public void nextVectors(AbstractRNG rng, int[] dst, int off, int nbrOfVectors) {
+        final int k = this.probs.length;
+        final long len = nbrOfVectors * (long) k;
+        if ((nbrOfVectors < 0) || (len > Integer.MAX_VALUE)) {
+            throw new IndexOutOfBoundsException("nbrOfVectors ["+nbrOfVectors+"] * dimension ["+k+"] not in [0,"+Integer.MAX_VALUE+"]");
+        }
+        RandomUtilz.checkRange(dst.length, off, (int) len);
+        for (int i=0;i<nbrOfVectors;i++) {
+            this.nextImpl(rng, dst, off + i * k);
+        }
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private void nextImpl(AbstractRNG rng, int[] dst, int off) {
+        final double[] condProbs = this.condProbs;
+        final int k = condProbs.length;
+        final BinomialSampler binomial = this.binomial;
+        int remaining = this.n;
+        int i = 0;
+        for (;(i < k-1) && (remaining != 0);i++) {
+            final int count = binomial.next(rng, remaining, condProbs[i]);
+            dst[off+i] = count;
+            remaining -= count;
+        }
+        // Last category, if reached, gets remaining trials.
+        dst[off+i] = remaining;
+        while (++i < k) {
+            dst[off+i] = 0;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Not thread-safe.
+ * 
+ * RNG based on PCG64 DXSM algorithm (Melissa O'Neill, http://www.pcg-random.org,
+ * in the variant used by NumPy's PCG64DXSM): a 128 bits LCG, with a 64 bits
+ * ("cheap") multiplier, and a "double xorshift multiply" output function
+ * applied to the pre-iterated state.
+ * 
+ * Period is 2^128, and the LCG structure allows for advance(long) and
+ * distance(PCG64SeqRNG) to be computed in O(log(n)) instead of O(n),
+ * for example to quickly restart a sequence from an arbitrary offset.
+ * 
+ * nextInt() uses the 32 MSBits of nextLong().
+ */
+public class PCG64SeqRNG extends AbstractSeqRNG {
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final long CHEAP_MULTIPLIER = 0xDA942042E4DD58B5L;
+    
+    private long stateHi;
+    private long stateLo;
+    
+    /**
+     * Increment, always odd.
+     */
+    private long incHi;
+    private long incLo;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed.
+     */
+    public PCG64SeqRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     * 
+     * Initial state and increment are computed from successive outputs
+     * of a SplitMix64 generator seeded with the specified seed,
+     * and then used as pcg_setseq_128_srandom_r(...) does.
+     */
+    public PCG64SeqRNG(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Moves forward (or backward if the specified delta is negative)
+     * of the specified number of nextLong() calls, in O(log(|delta|)).
+     * 
+     * Stored bits are not modified.
+     * 
+     * @param delta Number of nextLong() calls to skip (or to undo if negative).
+     */
+    public void advance(long delta) {
+        /*
+         * Brown's algorithm ("Random Number Generation with Arbitrary
+         * Strides", 1994), with delta sign-extended to 128 bits, since
+         * moving backward of n is moving forward of 2^128-n.
+         */
+        long accMulHi = 0L;
+        long accMulLo = 1L;
+        long accPlusHi = 0L;
+        long accPlusLo = 0L;
+        long curMulHi = 0L;
+        long curMulLo = CHEAP_MULTIPLIER;
+        long curPlusHi = this.incHi;
+        long curPlusLo = this.incLo;
+        long dHi = (delta >> 63);
+        long dLo = delta;
+        while ((dHi | dLo) != 0L) {
+            if ((dLo & 1L) != 0L) {
+                // accMul *= curMul
+                final long amHi = mulHi(accMulHi, accMulLo, curMulHi, curMulLo);
+                accMulLo *= curMulLo;
+                accMulHi = amHi;
+                // accPlus = accPlus * curMul + curPlus
+                final long apLo = accPlusLo * curMulLo;
+                final long apHi = mulHi(accPlusHi, accPlusLo, curMulHi, curMulLo);
+                accPlusLo = apLo + curPlusLo;
+                accPlusHi = apHi + curPlusHi + carry(apLo, accPlusLo);
+            }
+            // curPlus = (curMul + 1) * curPlus
+            final long cm1Lo = curMulLo + 1L;
+            final long cm1Hi = curMulHi + carry(curMulLo, cm1Lo);
+            final long cpHi = mulHi(cm1Hi, cm1Lo, curPlusHi, curPlusLo);
+            curPlusLo *= cm1Lo;
+            curPlusHi = cpHi;
+            // curMul *= curMul
+            final long cmHi = mulHi(curMulHi, curMulLo, curMulHi, curMulLo);
+            curMulLo *= curMulLo;
+            curMulHi = cmHi;
+            // delta >>>= 1 (128 bits)
+            dLo = (dLo >>> 1) | (dHi << 63);
+            dHi >>>= 1;
+        }
+        // state = accMul * state + accPlus
+        final long sLo = accMulLo * this.stateLo;
+        final long sHi = mulHi(accMulHi, accMulLo, this.stateHi, this.stateLo);
+        this.stateLo = sLo + accPlusLo;
+        this.stateHi = sHi + accPlusHi + carry(sLo, this.stateLo);
+    }
+
+    /**
+     * Stored bits are ignored.
+     * 
+     * @param other An instance with the same increment than this one
+     *        (for example a copy of it, done with getState()
+     *        and setState(byte[])).
+     * @return The delta such as advance(delta) on this instance would
+     *         make it have the same state than the specified one,
+     *         in [-2^63,2^63-1].
+     * @throws IllegalArgumentException if the specified instance does not
+     *         have the same increment than this one.
+     * @throws ArithmeticException if the delta is not in long range.
+     */
+    public long distance(PCG64SeqRNG other) {
+        if ((other.incHi != this.incHi) || (other.incLo != this.incLo)) {
+            throw new IllegalArgumentException("different increments");
+        }
+        final long targetHi = other.stateHi;
+        final long targetLo = other.stateLo;
+        long curMulHi = 0L;
+        long curMulLo = CHEAP_MULTIPLIER;
+        long curPlusHi = this.incHi;
+        long curPlusLo = this.incLo;
+        long curHi = this.stateHi;
+        long curLo = this.stateLo;
+        long bitHi = 0L;
+        long bitLo = 1L;
+        long dHi = 0L;
+        long dLo = 0L;
+        // Computing distance from LSBit to MSBit: bit k of current state
+        // being different from bit k of target state, while lower bits
+        // are equal, means we need to move by 2^k.
+        while ((curHi != targetHi) || (curLo != targetLo)) {
+            if ((((curHi ^ targetHi) & bitHi) | ((curLo ^ targetLo) & bitLo)) != 0L) {
+                // cur = cur * curMul + curPlus
+                final long tLo = curLo * curMulLo;
+                final long tHi = mulHi(curHi, curLo, curMulHi, curMulLo);
+                curLo = tLo + curPlusLo;
+                curHi = tHi + curPlusHi + carry(tLo, curLo);
+                dHi |= bitHi;
+                dLo |= bitLo;
+            }
+            // bit <<= 1 (128 bits)
+            bitHi = (bitHi << 1) | (bitLo >>> 63);
+            bitLo <<= 1;
+            // curPlus = (curMul + 1) * curPlus
+            final long cm1Lo = curMulLo + 1L;
+            final long cm1Hi = curMulHi + carry(curMulLo, cm1Lo);
+            final long cpHi = mulHi(cm1Hi, cm1Lo, curPlusHi, curPlusLo);
+            curPlusLo *= cm1Lo;
+            curPlusHi = cpHi;
+            // curMul *= curMul
+            final long cmHi = mulHi(curMulHi, curMulLo, curMulHi, curMulLo);
+            curMulLo *= curMulLo;
+            curMulHi = cmHi;
+        }
+        // Distance being modulo 2^128, considering it as a signed 128 bits
+        // value, which must fit in a long.
+        if (dHi != (dLo >> 63)) {
+            throw new ArithmeticException("distance not in long range");
+        }
+        return dLo;
+    }
+
+    /**
+     * Uses the 32 MSBits of nextLong().
+     */
+    @Override
+    public int nextInt() {
+        return (int)(this.nextLong()>>>32);
+    }
+
+    @Override
+    public long nextLong() {
+        final long incHi = this.incHi;
+        final long incLo = this.incLo;
+        long sHi = this.stateHi;
+        long sLo = this.stateLo;
+        // DXSM output function, on pre-iterated state.
+        long hash = sHi;
+        hash ^= (hash >>> 32);
+        hash *= CHEAP_MULTIPLIER;
+        hash ^= (hash >>> 48);
+        hash *= (sLo | 1L);
+        // LCG step: s = s * CHEAP_MULTIPLIER + inc.
+        final long mLo = sLo * CHEAP_MULTIPLIER;
+        final long mHi = sHi * CHEAP_MULTIPLIER + RandomUtilz.unsignedMultiplyHigh(sLo, CHEAP_MULTIPLIER);
+        sLo = mLo + incLo;
+        sHi = mHi + incHi + carry(mLo, sLo);
+        this.stateHi = sHi;
+        this.stateLo = sLo;
+        return hash;
+    }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long incHi = this.incHi;
+        final long incLo = this.incLo;
+        long sHi = this.stateHi;
+        long sLo = this.stateLo;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            // DXSM output function, on pre-iterated state.
+            long hash = sHi;
+            hash ^= (hash >>> 32);
+            hash *= CHEAP_MULTIPLIER;
+            hash ^= (hash >>> 48);
+            hash *= (sLo | 1L);
+            // LCG step: s = s * CHEAP_MULTIPLIER + inc.
+            final long mLo = sLo * CHEAP_MULTIPLIER;
+            final long mHi = sHi * CHEAP_MULTIPLIER + RandomUtilz.unsignedMultiplyHigh(sLo, CHEAP_MULTIPLIER);
+            sLo = mLo + incLo;
+            sHi = mHi + incHi + carry(mLo, sLo);
+            // Same as nextInt().
+            dst[i] = (int)(hash>>>32);
+        }
+        this.stateHi = sHi;
+        this.stateLo = sLo;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long incHi = this.incHi;
+        final long incLo = this.incLo;
+        long sHi = this.stateHi;
+        long sLo = this.stateLo;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            // DXSM output function, on pre-iterated state.
+            long hash = sHi;
+            hash ^= (hash >>> 32);
+            hash *= CHEAP_MULTIPLIER;
+            hash ^= (hash >>> 48);
+            hash *= (sLo | 1L);
+            // LCG step: s = s * CHEAP_MULTIPLIER + inc.
+            final long mLo = sLo * CHEAP_MULTIPLIER;
+            final long mHi = sHi * CHEAP_MULTIPLIER + RandomUtilz.unsignedMultiplyHigh(sLo, CHEAP_MULTIPLIER);
+            sLo = mLo + incLo;
+            sHi = mHi + incHi + carry(mLo, sLo);
+            dst[i] = hash;
+        }
+        this.stateHi = sHi;
+        this.stateLo = sLo;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long incHi = this.incHi;
+        final long incLo = this.incLo;
+        long sHi = this.stateHi;
+        long sLo = this.stateLo;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            // DXSM output function, on pre-iterated state.
+            long hash = sHi;
+            hash ^= (hash >>> 32);
+            hash *= CHEAP_MULTIPLIER;
+            hash ^= (hash >>> 48);
+            hash *= (sLo | 1L);
+            // LCG step: s = s * CHEAP_MULTIPLIER + inc.
+            final long mLo = sLo * CHEAP_MULTIPLIER;
+            final long mHi = sHi * CHEAP_MULTIPLIER + RandomUtilz.unsignedMultiplyHigh(sLo, CHEAP_MULTIPLIER);
+            sLo = mLo + incLo;
+            sHi = mHi + incHi + carry(mLo, sLo);
+            // Same as nextInt() and AbstractRNG.nextFloat().
+            dst[i] = (((int)(hash>>>32)) & ((1<<24)-1)) * (1.0f/(1<<24));
+        }
+        this.stateHi = sHi;
+        this.stateLo = sLo;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long incHi = this.incHi;
+        final long incLo = this.incLo;
+        long sHi = this.stateHi;
+        long sLo = this.stateLo;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            // DXSM output function, on pre-iterated state.
+            long hash = sHi;
+            hash ^= (hash >>> 32);
+            hash *= CHEAP_MULTIPLIER;
+            hash ^= (hash >>> 48);
+            hash *= (sLo | 1L);
+            // LCG step: s = s * CHEAP_MULTIPLIER + inc.
+            final long mLo = sLo * CHEAP_MULTIPLIER;
+            final long mHi = sHi * CHEAP_MULTIPLIER + RandomUtilz.unsignedMultiplyHigh(sLo, CHEAP_MULTIPLIER);
+            sLo = mLo + incLo;
+            sHi = mHi + incHi + carry(mLo, sLo);
+            // Same as AbstractRNG.nextDouble().
+            dst[i] = (hash & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+        this.stateHi = sHi;
+        this.stateLo = sLo;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long incHi = this.incHi;
+        final long incLo = this.incLo;
+        long sHi = this.stateHi;
+        long sLo = this.stateLo;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            // DXSM output function, on pre-iterated state.
+            long hash = sHi;
+            hash ^= (hash >>> 32);
+            hash *= CHEAP_MULTIPLIER;
+            hash ^= (hash >>> 48);
+            hash *= (sLo | 1L);
+            // LCG step: s = s * CHEAP_MULTIPLIER + inc.
+            final long mLo = sLo * CHEAP_MULTIPLIER;
+            final long mHi = sHi * CHEAP_MULTIPLIER + RandomUtilz.unsignedMultiplyHigh(sLo, CHEAP_MULTIPLIER);
+            sLo = mLo + incLo;
+            sHi = mHi + incHi + carry(mLo, sLo);
+            // Same as AbstractRNG.nextBytes(...).
+            RandomUtilz.putBytes(hash, dst, i, Math.min(8, end - i));
+        }
+        this.stateHi = sHi;
+        this.stateLo = sLo;
+    }
+
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8*4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        bb.putLong(this.stateHi);
+        bb.putLong(this.stateLo);
+        bb.putLong(this.incHi);
+        bb.putLong(this.incLo);
+        RandomUtilz.encodeNbrOfStoredBits(this.getCurrentNbrOfStoredBits(), bb);
+        RandomUtilz.encodeStoredBits(this.getCurrentStoredBits(), bb);
+        return tab;
+    }
+
+    /**
+     * Increment LSBit is forced to 1.
+     */
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        this.stateHi = bb.getLong();
+        this.stateLo = bb.getLong();
+        this.incHi = bb.getLong();
+        this.incLo = bb.getLong() | 1L;
+        this.setCurrentNbrOfStoredBits(RandomUtilz.decodeNbrOfStoredBits(bb));
+        this.setCurrentStoredBits(RandomUtilz.decodeStoredBits(bb));
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        super.setSeedImpl(0L);
+        final long initStateHi = RandomUtilz.splitMix64(seed, 0);
+        final long initStateLo = RandomUtilz.splitMix64(seed, 1);
+        final long initSeqHi = RandomUtilz.splitMix64(seed, 2);
+        final long initSeqLo = RandomUtilz.splitMix64(seed, 3);
+        // inc = (initSeq << 1) | 1
+        this.incHi = (initSeqHi << 1) | (initSeqLo >>> 63);
+        this.incLo = (initSeqLo << 1) | 1L;
+        // state = 0, step, state += initState, step
+        this.stateHi = 0L;
+        this.stateLo = 0L;
+        this.advance(1L);
+        final long sLo = this.stateLo + initStateLo;
+        this.stateHi += initStateHi + carry(this.stateLo, sLo);
+        this.stateLo = sLo;
+        this.advance(1L);
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * @param a Some value.
+     * @param sum a + some other value.
+     * @return 1 if the unsigned addition overflowed, 0 otherwise.
+     */
+    private static long carry(long a, long sum) {
+        return ((sum + Long.MIN_VALUE) < (a + Long.MIN_VALUE)) ? 1L : 0L;
+    }
+
+    /**
+     * @return The 64 MSBits of the 128 bits product (modulo 2^128)
+     *         of the specified 128 bits values.
+     */
+    private static long mulHi(long aHi, long aLo, long bHi, long bLo) {
+        return RandomUtilz.unsignedMultiplyHigh(aLo, bLo) + aLo * bHi + aHi * bLo;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples Poisson distribution of a given mean (lambda).
+ * 
+ * For lambda < 10, uses inversion, by sequential search in a cumulative
+ * distribution table computed on construction (about lambda+1 comparisons
+ * per draw, and a single nextDouble()).
+ * For lambda >= 10, uses W. Hormann's PTRS transformed rejection, with
+ * constants computed on construction, which accepts about 90 percents
+ * of candidates, each using a single nextLong().
+ * 
+ * Draws don't allocate, and take a constant expected time
+ * for large lambdas, unlike the naive multiplication loop.
+ * Instances are immutable, and thread-safe if the specified RNG is.
+ */
+public class PoissonSampler {
+
+    /*
+     * "The transformed rejection method for generating Poisson random
+     * variables", W. Hormann, 1993.
+     * 
+     * PTRS: with U uniform in ]-1/2,1/2[ and V uniform in ]0,1[,
+     * us = 1/2-|U|, k = floor((2*a/us+b)*U + lambda + 0.43),
+     * accept k if us >= 0.07 and V <= vr (squeeze, most of the time),
+     * reject it if k < 0 or (us < 0.013 and V > us),
+     * else accept it if
+     * log(V*invAlpha/(a/us^2+b)) <= -lambda + k*log(lambda) - log(k!).
+     * 
+     * U and V are computed from the 32 MSBits and 32 LSBits of a same
+     * nextLong(), as in the paper which used 32 bits uniforms, adding 1/2^33
+     * so that neither us nor V can be 0.
+     * 
+     * Using StrictMath, as Ziggurat, so that a same uniform randomness
+     * always yields a same sequence.
+     */
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Max lambda, for counts to fit in an int.
+     */
+    public static final double MAX_LAMBDA = (double)(1<<30);
+    
+    /**
+     * Lambdas below this use inversion, others PTRS.
+     */
+    static final double PTRS_MIN_LAMBDA = 10.0;
+    
+    private static final double TWO_POW_M32 = 1.0/(1L<<32);
+    
+    /**
+     * log(k!) for k in [0,LOG_FACTORIAL_TAB.length[,
+     * beyond which we use Stirling series.
+     */
+    private static final double[] LOG_FACTORIAL_TAB = new double[16];
+    static {
+        double sum = 0.0;
+        for (int k=1;k<LOG_FACTORIAL_TAB.length;k++) {
+            sum += StrictMath.log(k);
+            LOG_FACTORIAL_TAB[k] = sum;
+        }
+    }
+    
+    private static final double HALF_LOG_TWO_PI = 0.5 * StrictMath.log(2.0 * Math.PI);
+    
+    private final double lambda;
+    
+    /**
+     * For inversion (null if using PTRS): cdfTab[k] = P(X <= k),
+     * last value being 1.
+     */
+    private final double[] cdfTab;
+    
+    /*
+     * For PTRS.
+     */
+    
+    private final double a;
+    private final double b;
+    private final double vr;
+    private final double logInvAlpha;
+    private final double logLambda;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param lambda Mean (in [0,MAX_LAMBDA]).
+     * @throws IllegalArgumentException if lambda is not in [0,MAX_LAMBDA].
+     */
+    public PoissonSampler(double lambda) {
+        if (!((lambda >= 0.0) && (lambda <= MAX_LAMBDA))) {
+            throw new IllegalArgumentException("lambda ["+lambda+"] must be in [0,"+MAX_LAMBDA+"]");
+        }
+        this.lambda = lambda;
+        if (lambda < PTRS_MIN_LAMBDA) {
+            this.cdfTab = newCdfTab(lambda);
+            this.a = 0.0;
+            this.b = 0.0;
+            this.vr = 0.0;
+            this.logInvAlpha = 0.0;
+            this.logLambda = 0.0;
+        } else {
+            this.cdfTab = null;
+            final double sqrtLambda = StrictMath.sqrt(lambda);
+            final double b = 0.931 + 2.53 * sqrtLambda;
+            this.b = b;
+            this.a = -0.059 + 0.02483 * b;
+            this.vr = 0.9277 - 3.6224/(b - 2.0);
+            this.logInvAlpha = StrictMath.log(1.1239 + 1.1328/(b - 3.4));
+            this.logLambda = StrictMath.log(lambda);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "[lambda = " + this.lambda + "]";
+    }
+    
+    public double getLambda() {
+        return this.lambda;
+    }
+    
+    /**
+     * @param rng RNG to use.
+     * @return A Poisson-distributed int, >= 0.
+     */
+    public int next(AbstractRNG rng) {
+        final double[] cdfTab = this.cdfTab;
+        if (cdfTab != null) {
+            final double u = rng.nextDouble();
+            int k = 0;
+            // Terminates since last value is 1.
+            while (u >= cdfTab[k]) {
+                k++;
+            }
+            return k;
+        } else {
+            return this.nextPTRS(rng);
+        }
+    }
+
+    /**
+     * Equivalent to len successive calls to next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the Poisson-distributed ints.
+     * @param off Index where to put the first int.
+     * @param len Number of ints to put.
+     * @throws IndexOutOfBoundsException if the specified range is out of dst.
+     */
+    public void next(AbstractRNG rng, int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        for (int i=0;i<len;i++) {
+            dst[off+i] = this.next(rng);
+        }
+    }
+    
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param k A value >= 0.
+     * @return log(k!), accurate to about 1e-14 (relative).
+     */
+    static double logFactorial(double k) {
+        if (k < LOG_FACTORIAL_TAB.length) {
+            return LOG_FACTORIAL_TAB[(int)k];
+        }
+        // Stirling series for log(gamma(x)), x = k+1 >= 17.
+        final double x = k + 1.0;
+        final double invX = 1.0/x;
+        final double invX2 = invX * invX;
+        return (x - 0.5) * StrictMath.log(x) - x + HALF_LOG_TWO_PI
+                + invX * (1.0/12 - invX2 * (1.0/360 - invX2 * (1.0/1260 - invX2 * (1.0/1680))));
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static double[] newCdfTab(double lambda) {
+        // Enough for the tail beyond to be below 1/2^53 for lambda < 10.
+        final double[] tmp = new double[64];
+        double p = StrictMath.exp(-lambda);
+        double cdf = p;
+        int k = 0;
+        tmp[0] = cdf;
+        while ((cdf < 1.0) && (k < tmp.length - 1)) {
+            k++;
+            p *= lambda / k;
+            final double newCdf = cdf + p;
+            if (newCdf == cdf) {
+                // Converged.
+                break;
+            }
+            cdf = newCdf;
+            tmp[k] = cdf;
+        }
+        // Last value set to 1, for search to terminate
+        // even if (rounded) sum of probabilities is < 1.
+        tmp[k] = 1.0;
+        final double[] cdfTab = new double[k+1];
+        System.arraycopy(tmp, 0, cdfTab, 0, k+1);
+        return cdfTab;
+    }
+    
+    private int nextPTRS(AbstractRNG rng) {
+        final double lambda = this.lambda;
+        final double a = this.a;
+        final double b = this.b;
+        while (true) {
+            final long bits = rng.nextLong();
+            final double u = ((bits>>>32) * TWO_POW_M32 + 0.5 * TWO_POW_M32) - 0.5;
+            final double v = (bits & 0xFFFFFFFFL) * TWO_POW_M32 + 0.5 * TWO_POW_M32;
+            final double us = 0.5 - Math.abs(u);
+            final double k = Math.floor((2.0 * a / us + b) * u + lambda + 0.43);
+            if ((us >= 0.07) && (v <= this.vr)) {
+                return (int)k;
+            }
+            if ((k < 0.0) || ((us < 0.013) && (v > us))) {
+                continue;
+            }
+            final double lhs = StrictMath.log(v) + this.logInvAlpha - StrictMath.log(a / (us * us) + b);
+            final double rhs = -lambda + k * this.logLambda - logFactorial(k);
+            if (lhs <= rhs) {
+                return (int)k;
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Concurrent RNG backed by a ring of pre-generated longs, filled (by chunks,
+ * using bulk nextLongs(...)) by a dedicated daemon producer thread from
+ * a sequential RNG, and from which consumers claim longs with
+ * a fetch-and-add, so that a call typically only costs an increment,
+ * a couple of reads, and a write to release the slot.
+ * 
+ * Consumers never wait for each other, but wait for the producer if the ring
+ * is empty. As a result, this RNG is worth it only if the producer can run
+ * on an otherwise idle core, and if consumers don't need more longs than it
+ * can generate.
+ * 
+ * nextLong() returns successive longs of the backing RNG, in order of claims
+ * (when used by a single thread, gives the same longs than the backing RNG),
+ * other methods using the usual AbstractRNG conversions from nextLong()
+ * (for example, nextInt() uses its 32 LSBits).
+ * 
+ * setSeed(long) stops the producer, seeds the backing RNG, and starts a new
+ * producer with an empty ring (concurrent calls to setSeed(long) and
+ * shutdown() are serialized). Once shutdown() has been called, generation
+ * methods that can't be served from longs already in the ring throw
+ * IllegalStateException.
+ * 
+ * The producer thread only weakly references this RNG, and terminates
+ * once it has been garbage collected (or has been shut down).
+ * 
+ * State get/set is not supported (state of the backing RNG doesn't
+ * correspond to the next long to be returned), nor serialization.
+ */
+public class PrefetchConcRNG extends AbstractRNG {
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE CLASSES
+    //--------------------------------------------------------------------------
+
+    /**
+     * Ring of pre-generated longs, and its producer (as in D. Vyukov's bounded
+     * queue, with a sequence number per slot).
+     * 
+     * For slot i, slots contains the sequence number at index 2*i, and the
+     * value at index 2*i+1 (for both to usually be in the same cache line).
+     * The slot for the value of a position is free for the producer if the
+     * sequence number is the position, and contains the value for its consumer
+     * if the sequence number is the position + 1. Once the value is read,
+     * the consumer sets the sequence number to the position + capacity,
+     * i.e. the next position for this slot.
+     */
+    private static class MyRing implements Runnable {
+        final AbstractSeqRNG rng;
+        final int capacity;
+        final AtomicLongArray slots;
+        /**
+         * Next position to claim.
+         */
+        final PostPaddedAtomicLong consumerPosition = new PostPaddedAtomicLong();
+        final WeakReference<PrefetchConcRNG> ownerRef;
+        /**
+         * Set before the producer is started.
+         */
+        Thread producer;
+        volatile boolean stopped;
+        public MyRing(
+                AbstractSeqRNG rng,
+                int capacity,
+                PrefetchConcRNG owner) {
+            this.rng = rng;
+            this.capacity = capacity;
+            final AtomicLongArray slots = new AtomicLongArray(2 * capacity);
+            for (int i=0;i<capacity;i++) {
+                slots.set(2*i, i);
+            }
+            this.slots = slots;
+            this.ownerRef = new WeakReference<PrefetchConcRNG>(owner);
+        }
+        //@Override
+        public void run() {
+            final int capacity = this.capacity;
+            final AtomicLongArray slots = this.slots;
+            final long[] chunk = new long[Math.min(capacity, MAX_CHUNK_SIZE)];
+            long position = 0;
+            while (true) {
+                this.rng.nextLongs(chunk, 0, chunk.length);
+                for (int k=0;k<chunk.length;k++) {
+                    if (this.stopped) {
+                        // Checked for each value, else consumers could keep
+                        // getting values as long as they free slots.
+                        return;
+                    }
+                    final int i = slotIndex(position, capacity);
+                    if ((slots.get(i) != position)
+                            && (!this.awaitFreeSlot(i, position))) {
+                        return;
+                    }
+                    slots.set(i+1, chunk[k]);
+                    slots.set(i, position + 1);
+                    position++;
+                }
+            }
+        }
+        /**
+         * @param n Number of positions to claim.
+         * @return The first claimed position.
+         */
+        long claim(int n) {
+            return this.consumerPosition.getAndAdd(n);
+        }
+        /**
+         * @return True if the value for the specified position is available,
+         *         false if the ring has been stopped before.
+         */
+        boolean awaitValue(long position) {
+            final int i = slotIndex(position, this.capacity);
+            final AtomicLongArray slots = this.slots;
+            if (slots.get(i) == position + 1) {
+                return true;
+            }
+            // Empty ring: waking up the producer in case it's parked.
+            LockSupport.unpark(this.producer);
+            while (slots.get(i) != position + 1) {
+                if (this.stopped) {
+                    // Value could have been produced just before stop.
+                    return (slots.get(i) == position + 1);
+                }
+                Thread.yield();
+            }
+            return true;
+        }
+        /**
+         * Must only be called for an available value.
+         * 
+         * @return The value for the specified position,
+         *         after having released its slot.
+         */
+        long take(long position) {
+            final int capacity = this.capacity;
+            final int i = slotIndex(position, capacity);
+            final long value = this.slots.get(i+1);
+            this.slots.set(i, position + capacity);
+            if ((position & ((capacity>>1)-1)) == 0) {
+                // Half of the ring consumed since last wake up:
+                // waking up the producer in case it's parked.
+                LockSupport.unpark(this.producer);
+            }
+            return value;
+        }
+        /**
+         * Stops the producer, and waits for its termination,
+         * after which the backing RNG is no longer used by it.
+         */
+        void stopAndJoin() {
+            this.stopped = true;
+            final Thread producer = this.producer;
+            LockSupport.unpark(producer);
+            boolean interrupted = false;
+            while (producer.isAlive()) {
+                try {
+                    producer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                // Restoring interrupt status.
+                Thread.currentThread().interrupt();
+            }
+        }
+        /**
+         * @return True if the slot is free, false if the producer must
+         *         terminate.
+         */
+        private boolean awaitFreeSlot(int i, long position) {
+            int nbrOfYields = 0;
+            while (this.slots.get(i) != position) {
+                if (this.stopped) {
+                    return false;
+                }
+                if (nbrOfYields < PRODUCER_MAX_NBR_OF_YIELDS) {
+                    nbrOfYields++;
+                    Thread.yield();
+                } else {
+                    if (this.ownerRef.get() == null) {
+                        // Nobody can consume anymore.
+                        return false;
+                    }
+                    // Woken up by consumers (or timeout, for owner check).
+                    LockSupport.parkNanos(PRODUCER_MAX_PARK_NS);
+                }
+            }
+            return true;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int DEFAULT_CAPACITY = 4096;
+    
+    /**
+     * Max number of longs generated at once by the producer.
+     */
+    private static final int MAX_CHUNK_SIZE = 256;
+    
+    /**
+     * Number of times the producer yields, when the ring is full,
+     * before parking.
+     */
+    private static final int PRODUCER_MAX_NBR_OF_YIELDS = 16;
+    
+    /**
+     * Consumers wake up the producer each time half of the ring has
+     * been consumed, so the timeout is only for the producer to eventually
+     * notice that this RNG has been garbage collected.
+     */
+    private static final long PRODUCER_MAX_PARK_NS = 100L * 1000L * 1000L;
+    
+    private final AbstractSeqRNG rng;
+    
+    private final int capacity;
+    
+    /**
+     * Guards ring replacement and shutdown, else a ring replaced concurrently
+     * would not be stopped, and its producer would be orphaned.
+     */
+    private final Object ringMutex = new Object();
+    
+    /**
+     * Replaced on each seeding.
+     */
+    private volatile MyRing ring;
+    
+    private volatile boolean shutdown;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed, and a MTSeqRNG.
+     */
+    public PrefetchConcRNG() {
+        this(new MTSeqRNG());
+    }
+
+    /**
+     * Constructor using a specified seed, and a MTSeqRNG.
+     * 
+     * Only the 32 LSBits of the specified seed are used.
+     */
+    public PrefetchConcRNG(long seed) {
+        this(new MTSeqRNG(seed));
+    }
+
+    /**
+     * Uses the specified RNG as it is, i.e. without seeding it.
+     * 
+     * @param rng Sequential RNG to prefetch longs from (not to be used
+     *        anymore outside of this instance).
+     * @throws NullPointerException if the specified RNG is null.
+     */
+    public PrefetchConcRNG(AbstractSeqRNG rng) {
+        this(rng, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Uses the specified RNG as it is, i.e. without seeding it.
+     * 
+     * @param rng Sequential RNG to prefetch longs from (not to be used
+     *        anymore outside of this instance).
+     * @param capacity Number of longs the ring can contain. Must be a power
+     *        of two, >= 2.
+     * @throws NullPointerException if the specified RNG is null.
+     * @throws IllegalArgumentException if capacity is not a power of two,
+     *         or is < 2.
+     */
+    public PrefetchConcRNG(AbstractSeqRNG rng, int capacity) {
+        super((Void)null);
+        if (rng == null) {
+            throw new NullPointerException();
+        }
+        if ((capacity < 2) || ((capacity & (capacity-1)) != 0)) {
+            throw new IllegalArgumentException("capacity ["+capacity+"] must be a power of two, >= 2");
+        }
+        this.rng = rng;
+        this.capacity = capacity;
+        this.ring = this.startNewRing();
+    }
+    
+    /**
+     * @return The number of longs the ring can contain.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+    
+    /**
+     * Stops the producer thread, without waiting for its termination.
+     * Longs already in the ring can still be used, after which generation
+     * methods throw IllegalStateException.
+     */
+    public void shutdown() {
+        synchronized (this.ringMutex) {
+            this.shutdown = true;
+            final MyRing ring = this.ring;
+            ring.stopped = true;
+            LockSupport.unpark(ring.producer);
+        }
+    }
+    
+    /*
+     * uniform
+     */
+    
+    @Override
+    public long nextLong() {
+        while (true) {
+            final MyRing ring = this.ring;
+            final long position = ring.claim(1);
+            if (ring.awaitValue(position)) {
+                return ring.take(position);
+            }
+            this.onStoppedRing(ring);
+        }
+    }
+    
+    /*
+     * bulk
+     */
+    
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            final MyRing ring = this.ring;
+            long position = ring.claim(end - i);
+            while ((i < end) && ring.awaitValue(position)) {
+                dst[i++] = ring.take(position++);
+            }
+            if (i < end) {
+                this.onStoppedRing(ring);
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Stops the producer and waits for its termination, seeds the backing RNG,
+     * and starts a new producer.
+     * 
+     * @throws IllegalStateException if this RNG has been shut down.
+     */
+    @Override
+    protected void setSeedImpl(long seed) {
+        // No need to handle case where this.ring is null,
+        // since the constructor we use doesn't cause
+        // current method to be called.
+        synchronized (this.ringMutex) {
+            this.ring.stopAndJoin();
+            if (this.shutdown) {
+                throw new IllegalStateException("shut down");
+            }
+            this.rng.setSeed(seed);
+            this.ring = this.startNewRing();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static int slotIndex(long position, int capacity) {
+        return 2 * (((int)position) & (capacity-1));
+    }
+    
+    private MyRing startNewRing() {
+        final MyRing ring = new MyRing(this.rng, this.capacity, this);
+        final Thread producer = new Thread(ring, "PrefetchConcRNG-producer");
+        producer.setDaemon(true);
+        ring.producer = producer;
+        producer.start();
+        return ring;
+    }
+    
+    /**
+     * Called when the specified ring has been stopped before
+     * a claimed value could be produced.
+     * 
+     * @throws IllegalStateException if this RNG has been shut down.
+     */
+    private void onStoppedRing(MyRing ring) {
+        if (this.shutdown) {
+            throw new IllegalStateException("shut down");
+        }
+        // Else, ring replaced by seeding: will use the new one,
+        // which might not be set yet.
+        while (this.ring == ring) {
+            Thread.yield();
+        }
+    }
+}
@@ -23,6 +23,10 @@ import java.nio.ByteBuffer;
  * 
  * Useful if you need a concurrent RNG, but need speed or low memory usage
  * over the good randomness of MTConcRNG.
+ * 
+ * A backoff policy can be specified for failed CASes, as well as whether
+ * to count attempts and failed CASes (see getContentionStats()), to see
+ * whether this RNG is a bottleneck.
  */
 public class RandomConcRNG extends AbstractRNG {
     
@@ -37,6 +41,8 @@ public class RandomConcRNG extends AbstractRNG {
     private static final long MASK = (1L<<48)-1;
     
     private PostPaddedAtomicLong subSeed;
+    
+    private final ConcContention contention;
 
     //--------------------------------------------------------------------------
     // PUBLIC METHODS
@@ -46,6 +52,7 @@ public class RandomConcRNG extends AbstractRNG {
      * Constructor using a random seed.
      */
     public RandomConcRNG() {
+        this.contention = ConcContention.NONE;
     }
 
     /**
@@ -53,6 +60,23 @@ public class RandomConcRNG extends AbstractRNG {
      */
     public RandomConcRNG(long seed) {
         super(seed);
+        this.contention = ConcContention.NONE;
+    }
+
+    /**
+     * Constructor using a specified seed, backoff policy, and
+     * whether to count contention.
+     * 
+     * @param backoffPolicy Policy applied after each failed CAS.
+     * @param withStats True if must count attempts and failed CASes.
+     * @throws NullPointerException if the specified policy is null.
+     */
+    public RandomConcRNG(
+            long seed,
+            BackoffPolicy backoffPolicy,
+            boolean withStats) {
+        super(seed);
+        this.contention = ConcContention.newInstance(backoffPolicy, withStats);
     }
     
     /*
@@ -64,10 +88,17 @@ public class RandomConcRNG extends AbstractRNG {
         long oldseed;
         long nextseed;
         final PostPaddedAtomicLong seed = this.subSeed;
-        do {
+        final ConcContention contention = this.contention;
+        int nbrOfFailures = 0;
+        while (true) {
             oldseed = seed.get();
             nextseed = (oldseed * MULTIPLIER + ADDEND) & MASK;
-        } while (!seed.compareAndSet(oldseed, nextseed));
+            if (seed.compareAndSet(oldseed, nextseed)) {
+                break;
+            }
+            contention.backoffPolicy.backoff(++nbrOfFailures);
+        }
+        contention.onDone(nbrOfFailures + 1, nbrOfFailures, 0);
         return (int)(nextseed >>> 16);
     }
 
@@ -78,14 +109,37 @@ public class RandomConcRNG extends AbstractRNG {
         long seed1;
         long seed2;
         final PostPaddedAtomicLong seed = this.subSeed;
-        do {
+        final ConcContention contention = this.contention;
+        int nbrOfFailures = 0;
+        while (true) {
             seed0 = seed.get();
             seed1 = (seed0 * MULTIPLIER + ADDEND) & MASK;
             seed2 = (seed1 * MULTIPLIER + ADDEND) & MASK;
-        } while (!seed.compareAndSet(seed0, seed2));
+            if (seed.compareAndSet(seed0, seed2)) {
+                break;
+            }
+            contention.backoffPolicy.backoff(++nbrOfFailures);
+        }
+        contention.onDone(nbrOfFailures + 1, nbrOfFailures, 0);
         return ((seed1 >>> 16) << 32) + (int)(seed2 >>> 16);
     }
     
+    /*
+     * 
+     */
+    
+    public BackoffPolicy getBackoffPolicy() {
+        return this.contention.backoffPolicy;
+    }
+    
+    /**
+     * @return Counts of attempts and failed CASes since construction,
+     *         or null if this RNG was not created with stats.
+     */
+    public ContentionStats getContentionStats() {
+        return this.contention.getStats();
+    }
+    
     /*
      * 
      */
@@ -125,10 +179,17 @@ public class RandomConcRNG extends AbstractRNG {
         long oldseed;
         long nextseed;
         final PostPaddedAtomicLong seed = this.subSeed;
-        do {
+        final ConcContention contention = this.contention;
+        int nbrOfFailures = 0;
+        while (true) {
             oldseed = seed.get();
             nextseed = (oldseed * MULTIPLIER + ADDEND) & MASK;
-        } while (!seed.compareAndSet(oldseed, nextseed));
+            if (seed.compareAndSet(oldseed, nextseed)) {
+                break;
+            }
+            contention.backoffPolicy.backoff(++nbrOfFailures);
+        }
+        contention.onDone(nbrOfFailures + 1, nbrOfFailures, 0);
         return (int)(nextseed >>> (48 - bits));
     }
     
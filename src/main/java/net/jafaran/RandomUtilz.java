@@ -40,6 +40,75 @@ class RandomUtilz {
         return (a>>63)-(a^(a>>63));
     }
     
+    /**
+     * Same as Math.multiplyHigh(long,long) (Java 9).
+     * 
+     * @return The 64 MSBits of the 128 bits signed product of a and b.
+     */
+    static long multiplyHigh(long a, long b) {
+        final long a1 = a >> 32;
+        final long a2 = a & 0xFFFFFFFFL;
+        final long b1 = b >> 32;
+        final long b2 = b & 0xFFFFFFFFL;
+        
+        final long a2b2 = a2 * b2;
+        final long t = a1 * b2 + (a2b2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        final long z0 = t >> 32;
+        z1 += a2 * b1;
+        return a1 * b1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * @return The 64 MSBits of the 128 bits product of a and b,
+     *         a and b being considered as unsigned.
+     */
+    static long unsignedMultiplyHigh(long a, long b) {
+        return multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+    
+    /**
+     * @param n A value > 0.
+     * @return 2^64 % n.
+     */
+    static long twoPow64Remainder(long n) {
+        // 2^64 % n = (2^64 - n) % n, and (2^64 - n) is -n as unsigned,
+        // for which we compute unsigned remainder as in
+        // Long.remainderUnsigned(long,long) (Java 8), i.e. using
+        // a quotient which is either exact or one too small.
+        final long u = -n;
+        final long q = ((u >>> 1) / n) << 1;
+        final long r = u - q * n;
+        return (r + Long.MIN_VALUE >= n + Long.MIN_VALUE) ? r - n : r;
+    }
+
+    /**
+     * Odd approximation of 2^64/phi, used as increment by SplitMix64.
+     */
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * SplitMix64 output function (Stafford's "Mix13"), as used in
+     * SplittableRandom. Is a bijection, so only 0 is mapped to 0.
+     * 
+     * @return A well mixed 64 bits value.
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Useful to seed multi-longs states from a single long seed.
+     * 
+     * @return The value of the specified index in SplitMix64 sequence
+     *         starting at the specified seed.
+     */
+    static long splitMix64(long seed, int index) {
+        return mix64(seed + (index+1) * GOLDEN_GAMMA);
+    }
+
     /**
      * If the specified value is in int range, the returned value is identical.
      * 
@@ -61,6 +130,34 @@ class RandomUtilz {
         return hash;
     }
 
+    /**
+     * @param length Length of an array.
+     * @param off Index of the first element of the range.
+     * @param len Number of elements in the range.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in [0,length[.
+     */
+    static void checkRange(int length, int off, int len) {
+        // Written not to overflow.
+        if ((off < 0) || (len < 0) || (off > length - len)) {
+            throw new IndexOutOfBoundsException("range ["+off+","+off+"+"+len+"[ not in [0,"+length+"[");
+        }
+    }
+
+    /**
+     * @param bits Bits to put.
+     * @param dst Array to put bytes into.
+     * @param off Index where to put the first byte.
+     * @param n Number of bytes to put, in [0,8].
+     */
+    static void putBytes(long bits, byte[] dst, int off, int n) {
+        // LSByte first.
+        for (int i=0;i<n;i++) {
+            dst[off+i] = (byte)bits;
+            bits >>= 8;
+        }
+    }
+
     /*
      * 
      */
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wait-free concurrent RNG using Random's algorithm, and providing
+ * identical outputs for nextInt() and nextLong() (and for next(int), i.e.
+ * nextBoolean(), etc.).
+ * 
+ * Unlike RandomConcRNG, which retries a CAS on contention, each call just
+ * increments a step counter (with a fetch-and-add), and computes the LCG
+ * state for its step in closed form, from the state at step 0, using jump
+ * tables (six multiply-adds). This is slower than a single LCG step when
+ * uncontended, but doesn't degrade into CAS-retries storms under contention.
+ * 
+ * Bulk methods reserve all the steps they need at once, and then step
+ * sequentially from the first one.
+ */
+public class RandomWaitFreeConcRNG extends AbstractRNG {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L<<48)-1;
+    
+    /**
+     * Steps are decomposed into (48/8 =) 6 digits of 8 bits.
+     */
+    private static final int DIGIT_BIT_SIZE = 8;
+    private static final int NBR_OF_DIGITS = 48/DIGIT_BIT_SIZE;
+    private static final int DIGIT_MASK = (1<<DIGIT_BIT_SIZE)-1;
+    
+    /**
+     * For digit position i and digit value d, at index i*256+d, multiplier
+     * and addend of the affine function corresponding to d*256^i LCG steps.
+     */
+    private static final long[] JUMP_MULTIPLIERS = new long[NBR_OF_DIGITS<<DIGIT_BIT_SIZE];
+    private static final long[] JUMP_ADDENDS = new long[NBR_OF_DIGITS<<DIGIT_BIT_SIZE];
+    static {
+        // Function for 256^i steps.
+        long mul = MULTIPLIER;
+        long add = ADDEND;
+        for (int i=0;i<NBR_OF_DIGITS;i++) {
+            final int offset = (i<<DIGIT_BIT_SIZE);
+            // Identity for d = 0.
+            long dMul = 1L;
+            long dAdd = 0L;
+            for (int d=0;d<=DIGIT_MASK;d++) {
+                JUMP_MULTIPLIERS[offset+d] = dMul;
+                JUMP_ADDENDS[offset+d] = dAdd;
+                // Composing with function for 256^i steps.
+                dAdd = (mul * dAdd + add) & MASK;
+                dMul = (mul * dMul) & MASK;
+            }
+            // Here, function for 256^(i+1) steps.
+            mul = dMul;
+            add = dAdd;
+        }
+    }
+    
+    /**
+     * LCG state (scrambled seed) at step 0.
+     */
+    private volatile long baseSubSeed;
+    
+    /**
+     * Number of steps done from base sub seed.
+     * Not final because constructed in construct().
+     */
+    private PostPaddedAtomicLong step;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed.
+     */
+    public RandomWaitFreeConcRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     */
+    public RandomWaitFreeConcRNG(long seed) {
+        super(seed);
+    }
+    
+    /*
+     * 
+     */
+
+    @Override
+    public int nextInt() {
+        final long seed = this.subSeedAt(this.step.getAndIncrement() + 1);
+        return (int)(seed >>> 16);
+    }
+
+    @Override
+    public long nextLong() {
+        // Overriding to only reserve steps once.
+        final long seed1 = this.subSeedAt(this.step.getAndAdd(2) + 1);
+        final long seed2 = (seed1 * MULTIPLIER + ADDEND) & MASK;
+        return ((seed1 >>> 16) << 32) + (int)(seed2 >>> 16);
+    }
+    
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (len == 0) {
+            return;
+        }
+        long seed = this.subSeedAt(this.step.getAndAdd(len) + 1);
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            dst[i] = (int)(seed >>> 16);
+            seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        }
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        if (len == 0) {
+            return;
+        }
+        long seed = this.subSeedAt(this.step.getAndAdd(2L * len) + 1);
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long seed1 = seed;
+            final long seed2 = (seed1 * MULTIPLIER + ADDEND) & MASK;
+            dst[i] = ((seed1 >>> 16) << 32) + (int)(seed2 >>> 16);
+            seed = (seed2 * MULTIPLIER + ADDEND) & MASK;
+        }
+    }
+    
+    /*
+     * 
+     */
+    
+    /**
+     * State is the same than for RandomConcRNG.
+     */
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        bb.putLong(this.subSeedAt(this.step.get()));
+        return tab;
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        this.setBase(bb.getLong());
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void construct() {
+        this.step = new PostPaddedAtomicLong();
+    }
+    
+    @Override
+    protected void setSeedImpl(long seed) {
+        this.setBase(initialScramble(seed));
+    }
+
+    @Override
+    protected int next(int bits) {
+        // Overriding for performances, to avoid call to nextInt().
+        final long seed = this.subSeedAt(this.step.getAndIncrement() + 1);
+        return (int)(seed >>> (48 - bits));
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static long initialScramble(long seed) {
+        return (seed ^ MULTIPLIER) & MASK;
+    }
+    
+    /**
+     * Not atomic, but concurrent seedings or state settings
+     * make no sense anyway.
+     */
+    private void setBase(long baseSubSeed) {
+        this.baseSubSeed = baseSubSeed;
+        this.step.set(0L);
+    }
+    
+    /**
+     * @param step A number of steps (only its 48 LSBits are used,
+     *        LCG period being 2^48).
+     * @return LCG state after the specified number of steps
+     *         from base sub seed.
+     */
+    private long subSeedAt(long step) {
+        long seed = this.baseSubSeed;
+        for (int i=0;i<NBR_OF_DIGITS;i++) {
+            final int index = (i<<DIGIT_BIT_SIZE) + (((int)(step >>> (i*DIGIT_BIT_SIZE))) & DIGIT_MASK);
+            seed = (JUMP_MULTIPLIERS[index] * seed + JUMP_ADDENDS[index]) & MASK;
+        }
+        return seed;
+    }
+}
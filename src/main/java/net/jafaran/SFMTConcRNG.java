@@ -0,0 +1,398 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Concurrent RNG based on SIMD-oriented Fast Mersenne Twister algorithm
+ * (SFMT19937).
+ * 
+ * When used sequentially, gives same output than SFMTSeqRNG.
+ * 
+ * State is stored in objects that are garbaged once exhausted.
+ * For no garbage, a (thread-)local instance of SFMTSeqRNG
+ * can be used instead (which should also be faster).
+ */
+public class SFMTConcRNG extends AbstractRNG {
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE CLASSES
+    //--------------------------------------------------------------------------
+
+    /**
+     * Atomic long contains:
+     * - 10 LSBits: idx (unsigned in [0,1023])
+     * - 6 next bits: number of stored bits (unsigned in [0,63])
+     * - 16 next bits: unused
+     * - 32 MSBits: stored bits
+     */
+    private static class MyStateHolder extends PostPaddedAtomicLong {
+        private static final long serialVersionUID = 1L;
+        final long[] sfmt = new long[SFMTUtils.N64];
+        /**
+         * Creates an invalid state.
+         */
+        public MyStateHolder() {
+            super(meta(0,0,INVALID_IDX));
+        }
+    }
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int N32 = SFMTUtils.N32;
+
+    /**
+     * Generates exception if used prior to initialization,
+     * which allows us not to eventually ensure initialization
+     * when idx is N32.
+     */
+    private static final int INVALID_IDX = N32+1;
+
+    private static final int IDX_BIT_SIZE = 10;
+    private static final int NBR_OF_STORED_BITS_BIT_SIZE = 6;
+    
+    /**
+     * Not final because constructed in construct().
+     */
+    private PostPaddedAtomicReference<MyStateHolder> holderRef;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Constructor using a random seed.
+     */
+    public SFMTConcRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     * 
+     * Only the 32 LSBits of the specified seed are used (as in the original
+     * implementation).
+     */
+    public SFMTConcRNG(long seed) {
+        super(seed);
+    }
+    
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public SFMTConcRNG(int[] initKey, int keyLength) {
+        super((Void)null);
+        this.setSeed(initKey, keyLength);
+    }
+
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public void setSeed(int[] initKey, int keyLength) {
+        final MyStateHolder holder = new MyStateHolder();
+        final int idx = SFMTUtils.setSeed(holder.sfmt, initKey, keyLength);
+        holder.set(meta(0,0,idx));
+        this.holderRef.set(holder);
+    }
+
+    @Override
+    public int nextInt() {
+        MyStateHolder newHolder = null;
+        MyStateHolder holder = this.holderRef.get();
+        do {
+            final long meta = holder.get();
+
+            // Getting random bits.
+            final int idx = idx(meta);
+            final int s;
+            final int newIdx;
+            final boolean useOfNewHolder = (idx == N32);
+            if (useOfNewHolder) {
+                // Can't generate more random bits from this holder.
+                // Creating a new holder, including current stored bits if any.
+                if (newHolder == null) {
+                    newHolder = new MyStateHolder();
+                }
+                System.arraycopy(holder.sfmt, 0, newHolder.sfmt, 0, SFMTUtils.N64);
+                SFMTUtils.toNextState(newHolder.sfmt);
+                s = SFMTUtils.word(newHolder.sfmt, 0);
+                newIdx = 1;
+            } else {
+                s = SFMTUtils.word(holder.sfmt, idx);
+                newIdx = idx+1;
+            }
+
+            final long newMeta = metaIdxUpdate(meta, newIdx);
+
+            if (useOfNewHolder) {
+                if (setNewMetaAndCompareAndSet(newMeta, this.holderRef, holder, newHolder)) {
+                    return s;
+                }
+                // Since holder get, someone else successfully used this holder:
+                // will try to use current one.
+                holder = this.holderRef.get();
+            } else {
+                if (holder.compareAndSet(meta, newMeta)) {
+                    return s;
+                }
+                // Since meta get, someone else successfully used this holder:
+                // will try to use it again.
+            }
+        } while (true);
+    }
+    
+    @Override
+    public long nextLong() {
+        // Overriding to avoid encountering concurrency overhead twice.
+        MyStateHolder newHolder = null;
+        MyStateHolder holder = this.holderRef.get();
+        do {
+            final long meta = holder.get();
+            final int idx = idx(meta);
+            final int newIdx;
+
+            // Getting some random bits.
+            final int lo;
+            final int hi;
+            final boolean useOfNewHolder = (idx >= N32-1);
+            if (useOfNewHolder) {
+                // Can't generate enough random bits from this holder.
+                // Creating a new holder, including current stored bits if
+                // any.
+                if (newHolder == null) {
+                    newHolder = new MyStateHolder();
+                }
+                System.arraycopy(holder.sfmt, 0, newHolder.sfmt, 0, SFMTUtils.N64);
+                SFMTUtils.toNextState(newHolder.sfmt);
+
+                final boolean useOfBitsFromOld = (idx != N32);
+                if (useOfBitsFromOld) {
+                    lo = SFMTUtils.word(holder.sfmt, idx);
+                    hi = SFMTUtils.word(newHolder.sfmt, 0);
+                    newIdx = 1;
+                } else {
+                    lo = SFMTUtils.word(newHolder.sfmt, 0);
+                    hi = SFMTUtils.word(newHolder.sfmt, 1);
+                    newIdx = 2;
+                }
+            } else {
+                // General case.
+                lo = SFMTUtils.word(holder.sfmt, idx);
+                hi = SFMTUtils.word(holder.sfmt, idx+1);
+                newIdx = idx + 2;
+            }
+
+            final long newMeta = metaIdxUpdate(meta, newIdx);
+
+            if (useOfNewHolder) {
+                if (setNewMetaAndCompareAndSet(newMeta, this.holderRef, holder, newHolder)) {
+                    return (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+                }
+                // Since holder get, someone else successfully used this
+                // holder: will try to use current one.
+                holder = this.holderRef.get();
+            } else {
+                if (holder.compareAndSet(meta, newMeta)) {
+                    return (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+                }
+                // Since meta get, someone else successfully used this holder:
+                // will try to use it again.
+            }
+        } while (true);
+    }
+    
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        final MyStateHolder holder = this.holderRef.get();
+        byte[] tab = new byte[4*N32 + 4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        // Putting 32 bits words in original order, for easier comparison
+        // with other implementations.
+        for (int i=0;i<N32;i++) {
+            bb.putInt(SFMTUtils.word(holder.sfmt, i));
+        }
+        long meta = holder.get();
+        bb.putInt(idx(meta));
+        RandomUtilz.encodeNbrOfStoredBits(nbrOfStoredBits(meta), bb);
+        RandomUtilz.encodeStoredBits(storedBits(meta), bb);
+        return tab;
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        final MyStateHolder holder = new MyStateHolder();
+        for (int i=0;i<holder.sfmt.length;i++) {
+            final int lo = bb.getInt();
+            final int hi = bb.getInt();
+            holder.sfmt[i] = (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+        }
+        int idx = bb.getInt();
+        int currentNbrOfStoredBits = RandomUtilz.decodeNbrOfStoredBits(bb);
+        int currentStoredBits = RandomUtilz.decodeStoredBits(bb);
+        holder.set(meta(currentStoredBits,currentNbrOfStoredBits,idx));
+        this.holderRef.set(holder);
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void construct() {
+        // Can have null holder here, since must be initialized in any public
+        // constructor, i.e. before use.
+        this.holderRef = new PostPaddedAtomicReference<MyStateHolder>(null);
+    }
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        final MyStateHolder holder = new MyStateHolder();
+        final int idx = SFMTUtils.setSeed(holder.sfmt, (int)seed);
+        holder.set(meta(0,0,idx));
+        this.holderRef.set(holder);
+    }
+
+    @Override
+    protected int next(int nbrOfBits) {
+        MyStateHolder newHolder = null;
+        MyStateHolder holder = this.holderRef.get();
+        do {
+            final long meta = holder.get();
+            
+            final int storedBits = storedBits(meta);
+            final int nbrOfStoredBits = nbrOfStoredBits(meta);
+            
+            if (nbrOfBits <= nbrOfStoredBits) {
+                // Enough stored bits, and worth it.
+                final int newNbrOfStoredBits = (nbrOfStoredBits-nbrOfBits);
+                final int result = (storedBits>>>newNbrOfStoredBits);
+                final int newStoredBits = ((storedBits & ((1<<newNbrOfStoredBits)-1)));
+                final long newMeta = metaStoredBitsUpdate(meta, newStoredBits, newNbrOfStoredBits);
+                if (holder.compareAndSet(meta, newMeta)) {
+                    return result;
+                }
+                // Since meta get, someone else successfully used this holder:
+                // will try to use it again.
+            } else {
+                // Not enough stored bits: getting more random bits.
+                final int idx = idx(meta);
+                final int s;
+                final int newIdx;
+                final boolean useOfNewHolder = (idx == N32);
+                if (useOfNewHolder) {
+                    // Can't generate more random bits from this holder.
+                    // Creating a new holder, including current stored bits if
+                    // any.
+                    if (newHolder == null) {
+                        newHolder = new MyStateHolder();
+                    }
+                    System.arraycopy(holder.sfmt, 0, newHolder.sfmt, 0, SFMTUtils.N64);
+                    SFMTUtils.toNextState(newHolder.sfmt);
+                    s = SFMTUtils.word(newHolder.sfmt, 0);
+                    newIdx = 1;
+                } else {
+                    s = SFMTUtils.word(holder.sfmt, idx);
+                    newIdx = idx+1;
+                }
+                
+                // number of new random bits to add to the value
+                final int nbrOfNewBitsUsed = nbrOfBits - nbrOfStoredBits;
+                final int newNbrOfStoredBits = (32-nbrOfNewBitsUsed);
+                // Using stored bits as MSBits, and MSBits of new bits as
+                // LSBits.
+                final int result = (storedBits<<nbrOfNewBitsUsed) | (s>>>newNbrOfStoredBits);
+
+                final int newStoredBits = ((s & ((1<<newNbrOfStoredBits)-1)));
+                final long newMeta = meta(newStoredBits, newNbrOfStoredBits, newIdx);
+                
+                if (useOfNewHolder) {
+                    if (setNewMetaAndCompareAndSet(newMeta, this.holderRef, holder, newHolder)) {
+                        return result;
+                    }
+                    // Since holder get, someone else successfully used this
+                    // holder: will try to use current one.
+                    holder = this.holderRef.get();
+                } else {
+                    if (holder.compareAndSet(meta, newMeta)) {
+                        return result;
+                    }
+                    // Since meta get, someone else successfully used this
+                    // holder: will try to use it again.
+                }
+            }
+        } while (true);
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static boolean setNewMetaAndCompareAndSet(
+            long newMeta,
+            PostPaddedAtomicReference<MyStateHolder> holderRef,
+            MyStateHolder holder,
+            MyStateHolder newHolder) {
+        // A lazy set would be enough, since this holder is only known
+        // by current thread in calling method, and a CAS follows,
+        // but lazySet(long) requires Java 6.
+        newHolder.set(newMeta);
+        return holderRef.compareAndSet(holder, newHolder);
+    }
+    
+    /*
+     * 
+     */
+    
+    private static long meta(int storedBits, int nbrOfStoredBits, int idx) {
+        return (((long)storedBits)<<32) | (nbrOfStoredBits<<IDX_BIT_SIZE) | idx;
+    }
+    
+    /**
+     * To avoid having to retrieve idx to compute new meta.
+     */
+    private static long metaStoredBitsUpdate(long meta, int storedBits, int nbrOfStoredBits) {
+        return (meta & (-1L>>>(64-IDX_BIT_SIZE))) | (((long)storedBits)<<32) | (nbrOfStoredBits<<IDX_BIT_SIZE);
+    }
+
+    /**
+     * To avoid having to retrieve stored bits to compute new meta.
+     */
+    private static long metaIdxUpdate(long meta, int idx) {
+        return (meta & (-1L<<IDX_BIT_SIZE)) | idx;
+    }
+
+    private static int storedBits(long meta) {
+        return (int)(meta>>32);
+    }
+    
+    private static int nbrOfStoredBits(long meta) {
+        return (((int)meta)>>IDX_BIT_SIZE) & ((1<<NBR_OF_STORED_BITS_BIT_SIZE)-1);
+    }
+    
+    private static int idx(long meta) {
+        return (((int)meta) & ((1<<IDX_BIT_SIZE)-1));
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Not thread-safe.
+ * 
+ * RNG based on SIMD-oriented Fast Mersenne Twister algorithm (SFMT19937),
+ * which has the same period than Mersenne-Twister, and better
+ * equidistribution properties, but a state recurrence on 128 bits lanes
+ * (computed here as pairs of longs), which makes state regeneration faster,
+ * and no tempering.
+ * 
+ * nextInt() gives the same output than the original implementation's
+ * gen_rand32(), and nextLong() uses two successive 32 bits words,
+ * the first one as LSBits, as the original implementation's gen_rand64()
+ * does on little-endian architectures.
+ */
+public class SFMTSeqRNG extends AbstractSeqRNG {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final int N32 = SFMTUtils.N32;
+
+    /**
+     * Generates exception if used prior to initialization,
+     * which allows us not to eventually ensure initialization
+     * when idx is N32.
+     */
+    private static final int INVALID_IDX = N32+1;
+
+    /**
+     * Not final because constructed in construct().
+     */
+    private long[] sfmt;
+    private int idx;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Constructor using a random seed.
+     */
+    public SFMTSeqRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     * 
+     * Only the 32 LSBits of the specified seed are used (as in the original
+     * implementation).
+     */
+    public SFMTSeqRNG(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public SFMTSeqRNG(int[] initKey, int keyLength) {
+        super((Void)null);
+        this.setSeed_noBitsClearing(initKey, keyLength);
+    }
+
+    /**
+     * Similar to SplittableRandom.split().
+     * 
+     * @return A new instance, seeded with random bits from this instance.
+     */
+    public SFMTSeqRNG split() {
+        final int keyLength = 4;
+        final int[] initKey = new int[keyLength];
+        for (int i=0;i<keyLength;i++) {
+            initKey[i] = this.nextInt();
+        }
+        return new SFMTSeqRNG(initKey, keyLength);
+    }
+    
+    /**
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    public void setSeed(int[] initKey, int keyLength) {
+        super.setSeedImpl(0L);
+        this.setSeed_noBitsClearing(initKey, keyLength);
+    }
+    
+    @Override
+    public int nextInt() {
+        int idx = this.idx;
+        if (idx == N32) {
+            SFMTUtils.toNextState(this.sfmt);
+            idx = 0;
+        }
+        final int result = SFMTUtils.word(this.sfmt, idx);
+        this.idx = idx+1;
+        return result;
+    }
+
+    @Override
+    public long nextLong() {
+        final long[] sfmt = this.sfmt;
+        int idx = this.idx;
+        final long bits;
+        if (((idx & 1) == 0) && (idx < N32)) {
+            // Aligned: 64 bits word as is.
+            bits = sfmt[idx>>1];
+            idx += 2;
+        } else {
+            if (idx == N32) {
+                SFMTUtils.toNextState(sfmt);
+                idx = 0;
+            }
+            final int lo = SFMTUtils.word(sfmt, idx++);
+            if (idx == N32) {
+                SFMTUtils.toNextState(sfmt);
+                idx = 0;
+            }
+            final int hi = SFMTUtils.word(sfmt, idx++);
+            bits = (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+        }
+        this.idx = idx;
+        return bits;
+    }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] sfmt = this.sfmt;
+        int idx = this.idx;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (idx == N32) {
+                SFMTUtils.toNextState(sfmt);
+                idx = 0;
+            }
+            // Using as many words as we can before next state computation.
+            // (Do-while for exception if invalid idx.)
+            final int chunkEnd = i + Math.min(N32 - idx, end - i);
+            do {
+                dst[i++] = SFMTUtils.word(sfmt, idx++);
+            } while (i < chunkEnd);
+        }
+        this.idx = idx;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] sfmt = this.sfmt;
+        int idx = this.idx;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long bits;
+            if (((idx & 1) == 0) && (idx < N32)) {
+                // Aligned: 64 bits word as is.
+                bits = sfmt[idx>>1];
+                idx += 2;
+            } else {
+                if (idx == N32) {
+                    SFMTUtils.toNextState(sfmt);
+                    idx = 0;
+                }
+                final int lo = SFMTUtils.word(sfmt, idx++);
+                if (idx == N32) {
+                    SFMTUtils.toNextState(sfmt);
+                    idx = 0;
+                }
+                final int hi = SFMTUtils.word(sfmt, idx++);
+                bits = (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+            }
+            dst[i] = bits;
+        }
+        this.idx = idx;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] sfmt = this.sfmt;
+        int idx = this.idx;
+        int i = off;
+        final int end = off + len;
+        while (i < end) {
+            if (idx == N32) {
+                SFMTUtils.toNextState(sfmt);
+                idx = 0;
+            }
+            // Using as many words as we can before next state computation.
+            // (Do-while for exception if invalid idx.)
+            final int chunkEnd = i + Math.min(N32 - idx, end - i);
+            do {
+                dst[i++] = (SFMTUtils.word(sfmt, idx++) & ((1<<24)-1)) * (1.0f/(1<<24));
+            } while (i < chunkEnd);
+        }
+        this.idx = idx;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] sfmt = this.sfmt;
+        int idx = this.idx;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long bits;
+            if (((idx & 1) == 0) && (idx < N32)) {
+                // Aligned: 64 bits word as is.
+                bits = sfmt[idx>>1];
+                idx += 2;
+            } else {
+                if (idx == N32) {
+                    SFMTUtils.toNextState(sfmt);
+                    idx = 0;
+                }
+                final int lo = SFMTUtils.word(sfmt, idx++);
+                if (idx == N32) {
+                    SFMTUtils.toNextState(sfmt);
+                    idx = 0;
+                }
+                final int hi = SFMTUtils.word(sfmt, idx++);
+                bits = (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+            }
+            // Same as AbstractRNG.nextDouble().
+            dst[i] = (bits & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+        this.idx = idx;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long[] sfmt = this.sfmt;
+        int idx = this.idx;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            final long bits;
+            if (((idx & 1) == 0) && (idx < N32)) {
+                // Aligned: 64 bits word as is.
+                bits = sfmt[idx>>1];
+                idx += 2;
+            } else {
+                if (idx == N32) {
+                    SFMTUtils.toNextState(sfmt);
+                    idx = 0;
+                }
+                final int lo = SFMTUtils.word(sfmt, idx++);
+                if (idx == N32) {
+                    SFMTUtils.toNextState(sfmt);
+                    idx = 0;
+                }
+                final int hi = SFMTUtils.word(sfmt, idx++);
+                bits = (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+            }
+            // Same as AbstractRNG.nextBytes(...).
+            RandomUtilz.putBytes(bits, dst, i, Math.min(8, end - i));
+        }
+        this.idx = idx;
+    }
+
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[4*N32 + 4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        // Putting 32 bits words in original order, for easier comparison
+        // with other implementations.
+        for (int i=0;i<N32;i++) {
+            bb.putInt(SFMTUtils.word(this.sfmt, i));
+        }
+        bb.putInt(this.idx);
+        RandomUtilz.encodeNbrOfStoredBits(this.getCurrentNbrOfStoredBits(), bb);
+        RandomUtilz.encodeStoredBits(this.getCurrentStoredBits(), bb);
+        return tab;
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        for (int i=0;i<this.sfmt.length;i++) {
+            final int lo = bb.getInt();
+            final int hi = bb.getInt();
+            this.sfmt[i] = (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+        }
+        this.idx = bb.getInt();
+        this.setCurrentNbrOfStoredBits(RandomUtilz.decodeNbrOfStoredBits(bb));
+        this.setCurrentStoredBits(RandomUtilz.decodeStoredBits(bb));
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    protected SFMTSeqRNG(Void dummy) {
+        super(dummy);
+    }
+
+    @Override
+    protected void construct() {
+        this.sfmt = new long[SFMTUtils.N64];
+        this.idx = INVALID_IDX;
+    }
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        super.setSeedImpl(0L);
+        this.idx = SFMTUtils.setSeed(this.sfmt, (int)seed);
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private void setSeed_noBitsClearing(int[] initKey, int keyLength) {
+        this.idx = SFMTUtils.setSeed(this.sfmt, initKey, keyLength);
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * =============================================================================
+ * License of the C implementation this one is derived from:
+ *
+ * Copyright (c) 2006,2007 Mutsuo Saito, Makoto Matsumoto and Hiroshima
+ * University.
+ * Copyright (c) 2012 Mutsuo Saito, Makoto Matsumoto, Hiroshima University
+ * and The University of Tokyo.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above
+ *       copyright notice, this list of conditions and the following
+ *       disclaimer in the documentation and/or other materials provided
+ *       with the distribution.
+ *     * Neither the names of Hiroshima University, The University of
+ *       Tokyo nor the names of its contributors may be used to endorse
+ *       or promote products derived from this software without specific
+ *       prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+ * OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+ * LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.jafaran;
+
+/**
+ * SIMD-oriented Fast Mersenne Twister stuffs, for SFMT19937
+ * (http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/SFMT/index.html).
+ * 
+ * State is stored as 64 bits words, each 128 bits lane being made of 2
+ * consecutive words, LSWord first, and each 64 bits word being made of
+ * two 32 bits words of the original implementation, LSWord first (as on
+ * little-endian architectures, for which reference outputs are given).
+ * Using longs instead of ints halves the number of operations for
+ * lanes computations, which makes state regeneration faster than
+ * for Mersenne-Twister.
+ * 
+ * Indexes used by RNGs are in 32 bits words, in [0,N32], N32 meaning
+ * that state must be regenerated before use.
+ * 
+ * Also, we use signed ints and longs, so >>> instead of >>.
+ */
+class SFMTUtils {
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+
+    /**
+     * Number of 128 bits lanes in state vector.
+     */
+    private static final int N = 156;
+
+    /**
+     * Number of 64 bits words in state vector.
+     */
+    static final int N64 = 2*N;
+
+    /**
+     * Number of 32 bits words in state vector.
+     */
+    static final int N32 = 4*N;
+
+    private static final int POS1 = 122;
+    private static final int SL1 = 18;
+    /**
+     * In bytes.
+     */
+    private static final int SL2 = 1;
+    private static final int SR1 = 11;
+    /**
+     * In bytes.
+     */
+    private static final int SR2 = 1;
+    private static final int MSK1 = 0xDFFFFFEF;
+    private static final int MSK2 = 0xDDFECB7F;
+    private static final int MSK3 = 0xBFFAFFFF;
+    private static final int MSK4 = 0xBFFFFFF6;
+    private static final int[] PARITY = new int[]{0x00000001, 0x00000000, 0x00000000, 0x13C9E684};
+
+    /*
+     * Masks for shifts of 32 bits words done on 64 bits words:
+     * also clearing bits that pass from a 32 bits word to the other.
+     */
+
+    private static final long MSK_LO = pack(MSK1 & (-1>>>SR1), MSK2 & (-1>>>SR1));
+    private static final long MSK_HI = pack(MSK3 & (-1>>>SR1), MSK4 & (-1>>>SR1));
+    private static final long SL1_MSK = pack(-1<<SL1, -1<<SL1);
+
+    private static final int MAGIC_NUMBER = 1812433253;
+    private static final int BIG_SEED_FACTOR_1 = 1664525;
+    private static final int BIG_SEED_FACTOR_2 = 1566083941;
+
+    //--------------------------------------------------------------------------
+    // PACKAGE-PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * @return The 32 bits word of the specified index.
+     */
+    static int word(long[] sfmt, int idx) {
+        return (int)(sfmt[idx>>1] >>> ((idx & 1)<<5));
+    }
+
+    /**
+     * @return New index, i.e. N32 (state must be regenerated before use).
+     */
+    static int setSeed(long[] sfmt, int seed) {
+        final int[] sfmt32 = new int[N32];
+        initGenRand(sfmt32, seed);
+        certifyPeriod(sfmt32);
+        pack(sfmt32, sfmt);
+        return N32;
+    }
+
+    /**
+     * @return New index, i.e. N32 (state must be regenerated before use).
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    static int setSeed(
+            long[] sfmt,
+            int[] initKey,
+            int keyLength) {
+        final int[] sfmt32 = new int[N32];
+        initByArray(sfmt32, initKey, keyLength);
+        certifyPeriod(sfmt32);
+        pack(sfmt32, sfmt);
+        return N32;
+    }
+
+    /*
+     * Also used for dSFMT, which uses the same initializations,
+     * on its own number of 32 bits words.
+     */
+
+    /**
+     * init_gen_rand() in C code, without period certification.
+     */
+    static void initGenRand(int[] sfmt32, int seed) {
+        sfmt32[0] = seed;
+        for (int i=1;i<sfmt32.length;i++) {
+            sfmt32[i] = MAGIC_NUMBER * (sfmt32[i-1] ^ (sfmt32[i-1] >>> 30)) + i;
+        }
+    }
+
+    /**
+     * init_by_array() in C code, without period certification.
+     * 
+     * @throws IllegalArgumentException if keyLength <= 0.
+     */
+    static void initByArray(
+            int[] sfmt32,
+            int[] initKey,
+            int keyLength) {
+        if (keyLength <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final int size = sfmt32.length;
+        final int lag = 11; // For size >= 623.
+        final int mid = (size - lag) / 2;
+
+        for (int i=0;i<size;i++) {
+            sfmt32[i] = 0x8B8B8B8B;
+        }
+
+        final int count = Math.max(keyLength + 1, size);
+        int r = func1(sfmt32[0] ^ sfmt32[mid] ^ sfmt32[size-1]);
+        sfmt32[mid] += r;
+        r += keyLength;
+        sfmt32[mid + lag] += r;
+        sfmt32[0] = r;
+
+        int i = 1;
+        int j = 0;
+        for (;(j < count-1) && (j < keyLength);j++) {
+            r = func1(sfmt32[i] ^ sfmt32[(i + mid) % size] ^ sfmt32[(i + size - 1) % size]);
+            sfmt32[(i + mid) % size] += r;
+            r += initKey[j] + i;
+            sfmt32[(i + mid + lag) % size] += r;
+            sfmt32[i] = r;
+            i = (i + 1) % size;
+        }
+        for (;j < count-1;j++) {
+            r = func1(sfmt32[i] ^ sfmt32[(i + mid) % size] ^ sfmt32[(i + size - 1) % size]);
+            sfmt32[(i + mid) % size] += r;
+            r += i;
+            sfmt32[(i + mid + lag) % size] += r;
+            sfmt32[i] = r;
+            i = (i + 1) % size;
+        }
+        for (j=0;j<size;j++) {
+            r = func2(sfmt32[i] + sfmt32[(i + mid) % size] + sfmt32[(i + size - 1) % size]);
+            sfmt32[(i + mid) % size] ^= r;
+            r -= i;
+            sfmt32[(i + mid + lag) % size] ^= r;
+            sfmt32[i] = r;
+            i = (i + 1) % size;
+        }
+    }
+
+    /**
+     * Packs 32 bits words into 64 bits words, LSWord first.
+     */
+    static void pack(int[] src32, long[] dst) {
+        for (int i=src32.length/2;--i>=0;) {
+            dst[i] = pack(src32[2*i], src32[2*i+1]);
+        }
+    }
+
+    /**
+     * Regenerates the whole state vector (gen_rand_all() in C code).
+     */
+    static void toNextState(long[] sfmt) {
+        // r1 and r2 lanes, kept in locals.
+        long cLo = sfmt[2*(N-2)];
+        long cHi = sfmt[2*(N-2)+1];
+        long dLo = sfmt[2*(N-1)];
+        long dHi = sfmt[2*(N-1)+1];
+        int i = 0;
+        // Two loops, to avoid modulo or test for b.
+        for (;i<N-POS1;i++) {
+            final int a = 2*i;
+            final int b = a + 2*POS1;
+            final long aLo = sfmt[a];
+            final long aHi = sfmt[a+1];
+            final long rLo = aLo ^ (aLo << (SL2*8))
+                    ^ ((sfmt[b] >>> SR1) & MSK_LO)
+                    ^ ((cLo >>> (SR2*8)) | (cHi << (64-SR2*8)))
+                    ^ ((dLo << SL1) & SL1_MSK);
+            final long rHi = aHi ^ ((aHi << (SL2*8)) | (aLo >>> (64-SL2*8)))
+                    ^ ((sfmt[b+1] >>> SR1) & MSK_HI)
+                    ^ (cHi >>> (SR2*8))
+                    ^ ((dHi << SL1) & SL1_MSK);
+            sfmt[a] = rLo;
+            sfmt[a+1] = rHi;
+            cLo = dLo;
+            cHi = dHi;
+            dLo = rLo;
+            dHi = rHi;
+        }
+        for (;i<N;i++) {
+            final int a = 2*i;
+            final int b = a + 2*(POS1-N);
+            final long aLo = sfmt[a];
+            final long aHi = sfmt[a+1];
+            final long rLo = aLo ^ (aLo << (SL2*8))
+                    ^ ((sfmt[b] >>> SR1) & MSK_LO)
+                    ^ ((cLo >>> (SR2*8)) | (cHi << (64-SR2*8)))
+                    ^ ((dLo << SL1) & SL1_MSK);
+            final long rHi = aHi ^ ((aHi << (SL2*8)) | (aLo >>> (64-SL2*8)))
+                    ^ ((sfmt[b+1] >>> SR1) & MSK_HI)
+                    ^ (cHi >>> (SR2*8))
+                    ^ ((dHi << SL1) & SL1_MSK);
+            sfmt[a] = rLo;
+            sfmt[a+1] = rHi;
+            cLo = dLo;
+            cHi = dHi;
+            dLo = rLo;
+            dHi = rHi;
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    private static long pack(int lo, int hi) {
+        return (((long)hi)<<32) | (lo & 0xFFFFFFFFL);
+    }
+
+    private static int func1(int x) {
+        return (x ^ (x >>> 27)) * BIG_SEED_FACTOR_1;
+    }
+
+    private static int func2(int x) {
+        return (x ^ (x >>> 27)) * BIG_SEED_FACTOR_2;
+    }
+
+    /**
+     * Modifies the state if needed, for the period to be 2^19937-1.
+     */
+    private static void certifyPeriod(int[] sfmt32) {
+        int inner = 0;
+        for (int i=0;i<4;i++) {
+            inner ^= sfmt32[i] & PARITY[i];
+        }
+        for (int i=16;i>0;i>>=1) {
+            inner ^= inner >>> i;
+        }
+        if ((inner & 1) == 1) {
+            return;
+        }
+        for (int i=0;i<4;i++) {
+            int work = 1;
+            for (int j=0;j<32;j++) {
+                if ((work & PARITY[i]) != 0) {
+                    sfmt32[i] ^= work;
+                    return;
+                }
+                work <<= 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Not thread-safe.
+ * 
+ * RNG based on SplitMix64 algorithm (Steele, Lea and Flood, 2014), as used
+ * by SplittableRandom (Java 8): a 64 bits Weyl sequence (seed incremented
+ * by an odd gamma), which values are mixed to compute outputs.
+ * 
+ * For a same seed, nextInt(), nextLong(), nextInts(...), nextLongs(...)
+ * and split() give the same outputs than SplittableRandom's nextInt(),
+ * nextLong() and split(), but other methods use AbstractRNG's ones, and
+ * differ from SplittableRandom's (for example, nextDouble() uses the 53
+ * LSBits of nextLong(), not its 53 MSBits, and nextInt(int) uses Lemire's
+ * method, unlike SplittableRandom's).
+ * 
+ * split() only takes a few arithmetic operations, and creates an instance
+ * using a different gamma, which generated values are statistically
+ * independent from those of the original instance, which makes it suited
+ * for creating one RNG per task in fork/join computations.
+ */
+public class SplittableSeqRNG extends AbstractSeqRNG {
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private long seed;
+    
+    /**
+     * Always odd.
+     */
+    private long gamma;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed.
+     */
+    public SplittableSeqRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     */
+    public SplittableSeqRNG(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Same as SplittableRandom.split().
+     * 
+     * @return A new instance, which seed and gamma are computed from
+     *         values generated by this instance.
+     */
+    public SplittableSeqRNG split() {
+        return new SplittableSeqRNG(this.nextLong(), mixGamma(this.nextSeed()));
+    }
+
+    @Override
+    public int nextInt() {
+        return mix32(this.nextSeed());
+    }
+
+    @Override
+    public long nextLong() {
+        return RandomUtilz.mix64(this.nextSeed());
+    }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long gamma = this.gamma;
+        long seed = this.seed;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            seed += gamma;
+            dst[i] = mix32(seed);
+        }
+        this.seed = seed;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long gamma = this.gamma;
+        long seed = this.seed;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            seed += gamma;
+            dst[i] = RandomUtilz.mix64(seed);
+        }
+        this.seed = seed;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long gamma = this.gamma;
+        long seed = this.seed;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            seed += gamma;
+            // Same as AbstractRNG.nextFloat().
+            dst[i] = (mix32(seed) & ((1<<24)-1)) * (1.0f/(1<<24));
+        }
+        this.seed = seed;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long gamma = this.gamma;
+        long seed = this.seed;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            seed += gamma;
+            // Same as AbstractRNG.nextDouble().
+            dst[i] = (RandomUtilz.mix64(seed) & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+        this.seed = seed;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        final long gamma = this.gamma;
+        long seed = this.seed;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            seed += gamma;
+            // Same as AbstractRNG.nextBytes(...).
+            RandomUtilz.putBytes(RandomUtilz.mix64(seed), dst, i, Math.min(8, end - i));
+        }
+        this.seed = seed;
+    }
+
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8*2 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        bb.putLong(this.seed);
+        bb.putLong(this.gamma);
+        RandomUtilz.encodeNbrOfStoredBits(this.getCurrentNbrOfStoredBits(), bb);
+        RandomUtilz.encodeStoredBits(this.getCurrentStoredBits(), bb);
+        return tab;
+    }
+
+    /**
+     * Gamma LSBit is forced to 1.
+     */
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        this.seed = bb.getLong();
+        this.gamma = bb.getLong() | 1L;
+        this.setCurrentNbrOfStoredBits(RandomUtilz.decodeNbrOfStoredBits(bb));
+        this.setCurrentStoredBits(RandomUtilz.decodeStoredBits(bb));
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        super.setSeedImpl(0L);
+        this.seed = seed;
+        this.gamma = RandomUtilz.GOLDEN_GAMMA;
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    /**
+     * For split().
+     */
+    private SplittableSeqRNG(long seed, long gamma) {
+        super((Void)null);
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    private long nextSeed() {
+        return (this.seed += this.gamma);
+    }
+
+    /**
+     * Same as SplittableRandom.mix32(long).
+     */
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+        return (int)(((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+    }
+
+    /**
+     * Same as SplittableRandom.mixGamma(long).
+     * 
+     * @return An odd gamma, with enough bits transitions.
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL; // MurmurHash3 mix constants
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        z = (z ^ (z >>> 33)) | 1L; // force to be odd
+        final int n = Long.bitCount(z ^ (z >>> 1)); // ensure enough transitions
+        return (n < 24) ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+    }
+}
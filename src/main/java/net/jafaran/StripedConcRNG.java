@@ -0,0 +1,628 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent RNG, as a set of stripes each made of a sequential RNG
+ * guarded by a try-lock, each call using the stripe picked by a per-thread
+ * probe, which is re-hashed on contention (as LongAdder does with its cells),
+ * so that threads end up using different stripes, and scale well.
+ * 
+ * A thread never waits for a particular stripe: if the stripe it tries
+ * is busy, it tries another one (and yields after having failed on as many
+ * stripes as there are), so it only blocks if all stripes are busy.
+ * 
+ * When used by a single thread, outputs the sequence of a single stripe,
+ * but which one depends on the thread.
+ * 
+ * By default, stripes are instances of Xoshiro256StarStarSeqRNG, each one
+ * starting 2^128 values after the previous one (using jump()), so that their
+ * sequences don't overlap.
+ */
+public class StripedConcRNG extends AbstractRNG {
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE CLASSES
+    //--------------------------------------------------------------------------
+
+    /**
+     * Atomic long contains 1 if the stripe is in use, 0 otherwise.
+     * 
+     * The backing RNG being created just before its stripe, and the
+     * stripe being post-padded, allocation order should prevent
+     * backing RNGs of different stripes from sharing a cache line.
+     */
+    private static class MyStripe extends PostPaddedAtomicLong {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Guarded by the lock.
+         */
+        final AbstractSeqRNG rng;
+        public MyStripe(AbstractSeqRNG rng) {
+            this.rng = rng;
+        }
+        boolean tryLock() {
+            // Reading first, to avoid useless CASes (and cache line
+            // invalidations) on busy stripes.
+            return (this.get() == 0L) && this.compareAndSet(0L, 1L);
+        }
+        void lock() {
+            while (!this.tryLock()) {
+                Thread.yield();
+            }
+        }
+        void unlock() {
+            this.set(0L);
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Golden ratio increment, to spread initial probes of successive threads.
+     */
+    private static final int PROBE_INCREMENT = 0x9E3779B9;
+    
+    private static final AtomicInteger PROBE_SEEDER = new AtomicInteger();
+    
+    /**
+     * Shared by all instances, as for LongAdder, since a thread that had
+     * contention on a stripe of an instance is likely to be concurrent with
+     * the same threads on other instances.
+     * 
+     * Holding an array of one int, not to have to set the thread local
+     * on re-hash.
+     */
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            int probe = PROBE_SEEDER.addAndGet(PROBE_INCREMENT);
+            if (probe == 0) {
+                // Xor-shift would stay stuck at 0.
+                probe = 1;
+            }
+            return new int[]{probe};
+        }
+    };
+    
+    private final MyStripe[] stripes;
+    
+    /**
+     * True if stripes are instances of Xoshiro256StarStarSeqRNG,
+     * seeded by jumping from one to the next.
+     */
+    private final boolean jumpSeeded;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed,
+     * and twice as many stripes as available processors.
+     */
+    public StripedConcRNG() {
+        this(RandomUtilz.longPseudoEntropy());
+    }
+
+    /**
+     * Constructor using a specified seed,
+     * and twice as many stripes as available processors.
+     */
+    public StripedConcRNG(long seed) {
+        this(seed, defaultNbrOfStripes());
+    }
+
+    /**
+     * Constructor using a specified seed and number of stripes.
+     * 
+     * @param nbrOfStripes Must be >= 1.
+     * @throws IllegalArgumentException if nbrOfStripes < 1.
+     */
+    public StripedConcRNG(long seed, int nbrOfStripes) {
+        super((Void)null);
+        if (nbrOfStripes < 1) {
+            throw new IllegalArgumentException("nbrOfStripes ["+nbrOfStripes+"] must be >= 1");
+        }
+        final MyStripe[] stripes = new MyStripe[nbrOfStripes];
+        for (int i=0;i<nbrOfStripes;i++) {
+            // Actually seeded below.
+            stripes[i] = new MyStripe(new Xoshiro256StarStarSeqRNG(0L));
+        }
+        this.stripes = stripes;
+        this.jumpSeeded = true;
+        this.setSeedImpl(seed);
+    }
+
+    /**
+     * Uses the specified RNGs as they are, i.e. without seeding them.
+     * setSeed(long) then seeds the specified RNGs each with a different
+     * seed, derived from the specified one.
+     * 
+     * @param rngs Sequential RNGs to use for stripes (not to be used
+     *        anymore outside of this instance). The array is not retained.
+     * @throws NullPointerException if the specified array or any of its
+     *         elements is null.
+     * @throws IllegalArgumentException if the specified array is empty,
+     *         or contains a same instance multiple times.
+     */
+    public StripedConcRNG(AbstractSeqRNG[] rngs) {
+        super((Void)null);
+        final int nbrOfStripes = rngs.length;
+        if (nbrOfStripes == 0) {
+            throw new IllegalArgumentException("no RNG");
+        }
+        final MyStripe[] stripes = new MyStripe[nbrOfStripes];
+        for (int i=0;i<nbrOfStripes;i++) {
+            final AbstractSeqRNG rng = rngs[i];
+            if (rng == null) {
+                throw new NullPointerException();
+            }
+            for (int j=0;j<i;j++) {
+                if (rngs[j] == rng) {
+                    throw new IllegalArgumentException("RNG at index "+j+" also at index "+i);
+                }
+            }
+            stripes[i] = new MyStripe(rng);
+        }
+        this.stripes = stripes;
+        this.jumpSeeded = false;
+    }
+    
+    /**
+     * @return The number of stripes.
+     */
+    public int getNbrOfStripes() {
+        return this.stripes.length;
+    }
+    
+    /*
+     * uniform
+     */
+    
+    @Override
+    public int nextBit() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextBit();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public byte nextByte() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextByte();
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public short nextShort() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextShort();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public int nextInt() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextInt();
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public long nextLong() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextLong();
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public float nextFloat() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextFloat();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public double nextDouble() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextDouble();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public double nextDoubleFast() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextDoubleFast();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public int nextInt(int n) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextInt(n);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public long nextLong(long n) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextLong(n);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    /*
+     * bulk
+     */
+    
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextInts(dst, off, len);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextInts(int[] dst, int off, int len, int n) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextInts(dst, off, len, n);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextLongs(dst, off, len);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextLongs(long[] dst, int off, int len, long n) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextLongs(dst, off, len, n);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextBytes(bytes);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextBytes(dst, off, len);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextBytes(ByteBuffer dst) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextBytes(dst);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextFloats(dst, off, len);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextFloats(FloatBuffer dst) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextFloats(dst);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextDoubles(dst, off, len);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    @Override
+    public void nextDoubles(DoubleBuffer dst) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextDoubles(dst);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    /*
+     * gaussian
+     */
+
+    @Override
+    public double nextGaussian() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextGaussian();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public double nextGaussianFast() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextGaussianFast();
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    /*
+     * exponential
+     */
+
+    @Override
+    public double nextExponential() {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.nextExponential();
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    @Override
+    public void nextExponentials(double[] dst, int off, int len) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            stripe.rng.nextExponentials(dst, off, len);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    /*
+     * state get/set
+     */
+    
+    /**
+     * Locks all stripes, so the returned state is consistent.
+     * 
+     * @throws UnsupportedOperationException if state retrieval is not
+     *         available for a stripe's RNG.
+     */
+    @Override
+    public byte[] getState() {
+        final MyStripe[] stripes = this.stripes;
+        final byte[][] states = new byte[stripes.length][];
+        int size = 4;
+        this.lockAll();
+        try {
+            for (int i=0;i<stripes.length;i++) {
+                states[i] = stripes[i].rng.getState();
+                size += 4 + states[i].length;
+            }
+        } finally {
+            this.unlockAll();
+        }
+        byte[] tab = new byte[size];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        bb.putInt(states.length);
+        for (byte[] state : states) {
+            bb.putInt(state.length);
+            bb.put(state);
+        }
+        return tab;
+    }
+
+    /**
+     * Locks all stripes, so the state is set consistently.
+     * 
+     * @throws IllegalArgumentException if the specified state is not for
+     *         the same number of stripes.
+     * @throws UnsupportedOperationException if state setting is not
+     *         available for a stripe's RNG.
+     */
+    @Override
+    public void setState(byte[] state) {
+        final MyStripe[] stripes = this.stripes;
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        final int nbrOfStates = bb.getInt();
+        if (nbrOfStates != stripes.length) {
+            throw new IllegalArgumentException("state is for "+nbrOfStates+" stripes, not "+stripes.length);
+        }
+        final byte[][] states = new byte[nbrOfStates][];
+        for (int i=0;i<nbrOfStates;i++) {
+            states[i] = new byte[bb.getInt()];
+            bb.get(states[i]);
+        }
+        this.lockAll();
+        try {
+            for (int i=0;i<nbrOfStates;i++) {
+                stripes[i].rng.setState(states[i]);
+            }
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        final MyStripe[] stripes = this.stripes;
+        this.lockAll();
+        try {
+            if (this.jumpSeeded) {
+                final Xoshiro256StarStarSeqRNG first = (Xoshiro256StarStarSeqRNG)stripes[0].rng;
+                first.setSeed(seed);
+                byte[] state = first.getState();
+                for (int i=1;i<stripes.length;i++) {
+                    final Xoshiro256StarStarSeqRNG rng = (Xoshiro256StarStarSeqRNG)stripes[i].rng;
+                    rng.setState(state);
+                    rng.jump();
+                    state = rng.getState();
+                }
+            } else {
+                for (int i=0;i<stripes.length;i++) {
+                    stripes[i].rng.setSeed(RandomUtilz.splitMix64(seed, i));
+                }
+            }
+        } finally {
+            this.unlockAll();
+        }
+    }
+
+    /**
+     * Overriding to use stripes' stored bits.
+     */
+    @Override
+    protected int next(int bits) {
+        final MyStripe stripe = this.acquireStripe();
+        try {
+            return stripe.rng.next(bits);
+        } finally {
+            stripe.unlock();
+        }
+    }
+    
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static int defaultNbrOfStripes() {
+        // More stripes than processors, for less chance of collision.
+        return 2 * Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * @return The locked stripe to use.
+     */
+    private MyStripe acquireStripe() {
+        final MyStripe[] stripes = this.stripes;
+        final int nbrOfStripes = stripes.length;
+        final int[] probeHolder = PROBE.get();
+        int probe = probeHolder[0];
+        int nbrOfFailures = 0;
+        while (true) {
+            // Using the 32 bits of the probe, through multiply-shift
+            // instead of modulo (stripes count not being a power of two).
+            final MyStripe stripe = stripes[(int)(((probe & 0xFFFFFFFFL) * nbrOfStripes) >>> 32)];
+            if (stripe.tryLock()) {
+                if (nbrOfFailures != 0) {
+                    probeHolder[0] = probe;
+                }
+                return stripe;
+            }
+            // Contention: moving to another stripe (Marsaglia Xor-Shift).
+            probe ^= (probe << 13);
+            probe ^= (probe >>> 17);
+            probe ^= (probe << 5);
+            if (++nbrOfFailures % nbrOfStripes == 0) {
+                // Stripes likely all busy.
+                Thread.yield();
+            }
+        }
+    }
+    
+    /**
+     * Locks stripes in index order, so that concurrent calls can't deadlock.
+     */
+    private void lockAll() {
+        for (MyStripe stripe : this.stripes) {
+            stripe.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (MyStripe stripe : this.stripes) {
+            stripe.unlock();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.jafaran;
+
+/**
+ * Samples Student's t-distribution of a given number of degrees of freedom
+ * (nu), as Z/sqrt(V/nu), with Z normal gaussian and V chi-squared-distributed
+ * with nu degrees of freedom (i.e. V/nu gamma-distributed of shape nu/2
+ * and scale 2/nu).
+ * 
+ * If nu < 2, V/nu is used through its logarithm, which doesn't underflow,
+ * to avoid divisions by zero for tiny nu.
+ * 
+ * Reusable, and draws don't allocate (see GammaSampler).
+ */
+public class StudentTSampler {
+    
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private final double degreesOfFreedom;
+    
+    /**
+     * Shape nu/2 and scale 2/nu.
+     */
+    private final GammaSampler gamma;
+    
+    /**
+     * log(2/nu), to scale logarithms of gamma draws.
+     */
+    private final double logScale;
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * @param degreesOfFreedom Number of degrees of freedom
+     *        (>= 2*GammaSampler.MIN_SHAPE, and finite, not necessarily
+     *        integer).
+     * @throws IllegalArgumentException if degreesOfFreedom is not
+     *         >= 2*GammaSampler.MIN_SHAPE and finite.
+     */
+    public StudentTSampler(double degreesOfFreedom) {
+        // Also ensures that 2/nu doesn't overflow.
+        GammaSampler.checkMinFinite("degreesOfFreedom", degreesOfFreedom, 2 * GammaSampler.MIN_SHAPE);
+        this.degreesOfFreedom = degreesOfFreedom;
+        this.gamma = new GammaSampler(0.5 * degreesOfFreedom, 2.0/degreesOfFreedom);
+        this.logScale = StrictMath.log(this.gamma.getScale());
+    }
+    
+    @Override
+    public String toString() {
+        return "[degreesOfFreedom = " + this.degreesOfFreedom + "]";
+    }
+    
+    public double getDegreesOfFreedom() {
+        return this.degreesOfFreedom;
+    }
+    
+    /**
+     * @param rng RNG to use.
+     * @return A Student's t-distributed double.
+     */
+    public double next(AbstractRNG rng) {
+        final double z = rng.nextGaussian();
+        if (this.gamma.isBoosted()) {
+            final double logG = this.gamma.nextLogUnscaled(rng) + this.logScale;
+            // Exponential can overflow, so not multiplying it with 0.
+            return (z == 0.0) ? z : z * StrictMath.exp(-0.5 * logG);
+        } else {
+            return z / StrictMath.sqrt(this.gamma.next(rng));
+        }
+    }
+
+    /**
+     * Equivalent to len successive calls to next(AbstractRNG).
+     * 
+     * @param rng RNG to use.
+     * @param dst Array where to put the Student's t-distributed doubles.
+     * @param off Index where to put the first double.
+     * @param len Number of doubles to put.
+     * @throws IndexOutOfBoundsException if the specified range is out of dst.
+     */
+    public void next(AbstractRNG rng, double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        for (int i=0;i<len;i++) {
+            dst[off+i] = this.next(rng);
+        }
+    }
+}
@@ -15,15 +15,50 @@
  */
 package net.jafaran;
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
  * Thread-safe RNG, as a wrapper synchronizing on a backing (and typically
  * sequential) RNG.
  * 
  * Can be more efficient than concurrent RNGs using CAS and such (no garbage,
  * no CAS-retries, low synchronization overhead).
+ * 
+ * By default, synchronization is done with the monitor of the backing RNG,
+ * but a lock can be used instead (see LockMode), for example not to pin
+ * virtual threads (Java 21+) to their carrier thread while they wait.
  */
 public class SyncRNG extends AbstractRNG {
     
+    //--------------------------------------------------------------------------
+    // PUBLIC CLASSES
+    //--------------------------------------------------------------------------
+    
+    /**
+     * How accesses to the backing RNG are synchronized.
+     */
+    public enum LockMode {
+        /**
+         * Synchronizing on the backing RNG (fastest when uncontended,
+         * but pins virtual threads).
+         */
+        MONITOR,
+        /**
+         * Using a (non-fair) ReentrantLock, which doesn't pin
+         * virtual threads.
+         */
+        REENTRANT_LOCK,
+        /**
+         * Using a (non-fair) ReentrantLock, but trying to acquire it
+         * a few times before blocking, since it's only held for
+         * short durations.
+         */
+        SPIN_THEN_PARK;
+    }
+    
     //--------------------------------------------------------------------------
     // MEMBERS
     //--------------------------------------------------------------------------
@@ -31,23 +66,56 @@ public class SyncRNG extends AbstractRNG {
     private static final long serialVersionUID = 1L;
     
     /**
-     * Guarded by synchronization on itself.
+     * Number of lock acquisition attempts before blocking,
+     * in SPIN_THEN_PARK mode.
+     */
+    private static final int MAX_NBR_OF_SPINS = 64;
+    
+    /**
+     * Guarded by synchronization on itself, or by lock if any.
      */
     private final AbstractRNG rng;
     
+    private final LockMode lockMode;
+    
+    /**
+     * Null in MONITOR mode.
+     */
+    private final ReentrantLock lock;
+    
     //--------------------------------------------------------------------------
     // PUBLIC METHODS
     //--------------------------------------------------------------------------
 
     /**
+     * Uses LockMode.MONITOR.
+     * 
      * @param rng The backing (and typically sequential) RNG instance.
      */
     public SyncRNG(AbstractRNG rng) {
+        this(rng, LockMode.MONITOR);
+    }
+
+    /**
+     * @param rng The backing (and typically sequential) RNG instance.
+     * @param lockMode How accesses to the backing RNG are synchronized.
+     * @throws NullPointerException if the specified RNG or lock mode is null.
+     */
+    public SyncRNG(AbstractRNG rng, LockMode lockMode) {
         super(0L); // Avoiding seed generation.
-        if (rng == null) {
+        if ((rng == null) || (lockMode == null)) {
             throw new NullPointerException();
         }
         this.rng = rng;
+        this.lockMode = lockMode;
+        this.lock = (lockMode == LockMode.MONITOR) ? null : new ReentrantLock();
+    }
+    
+    /**
+     * @return How accesses to the backing RNG are synchronized.
+     */
+    public LockMode getLockMode() {
+        return this.lockMode;
     }
 
     /*
@@ -56,71 +124,352 @@ public class SyncRNG extends AbstractRNG {
     
     @Override
     public int nextBit() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextBit();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextBit();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public byte nextByte() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextByte();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextByte();
+        } finally {
+            lock.unlock();
         }
     }
     
     @Override
     public short nextShort() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextShort();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextShort();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public int nextInt() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextInt();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextInt();
+        } finally {
+            lock.unlock();
         }
     }
     
     @Override
     public long nextLong() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextLong();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextLong();
+        } finally {
+            lock.unlock();
         }
     }
     
     @Override
     public float nextFloat() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextFloat();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextFloat();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public double nextDouble() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextDouble();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextDouble();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public double nextDoubleFast() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextDoubleFast();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextDoubleFast();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public int nextInt(int n) {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextInt(n);
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextInt(n);
+        } finally {
+            lock.unlock();
         }
     }
     
     @Override
     public long nextLong(long n) {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextLong(n);
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextLong(n);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /*
+     * bulk
+     */
+    
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextInts(dst, off, len);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextInts(dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextInts(int[] dst, int off, int len, int n) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextInts(dst, off, len, n);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextInts(dst, off, len, n);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextLongs(dst, off, len);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextLongs(dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextLongs(long[] dst, int off, int len, long n) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextLongs(dst, off, len, n);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextLongs(dst, off, len, n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextBytes(bytes);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextBytes(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextBytes(dst, off, len);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextBytes(dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextBytes(ByteBuffer dst) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextBytes(dst);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextBytes(dst);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextFloats(dst, off, len);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextFloats(dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextFloats(FloatBuffer dst) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextFloats(dst);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextFloats(dst);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextDoubles(dst, off, len);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextDoubles(dst, off, len);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void nextDoubles(DoubleBuffer dst) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextDoubles(dst);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextDoubles(dst);
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -130,15 +479,70 @@ public class SyncRNG extends AbstractRNG {
 
     @Override
     public double nextGaussian() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextGaussian();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextGaussian();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public double nextGaussianFast() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextGaussianFast();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.nextGaussianFast();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /*
+     * exponential
+     */
+
+    @Override
+    public double nextExponential() {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.nextExponential();
+            }
+        }
+        this.lock(lock);
+        try {
+            return this.rng.nextExponential();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void nextExponentials(double[] dst, int off, int len) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.nextExponentials(dst, off, len);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
+            this.rng.nextExponentials(dst, off, len);
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -148,15 +552,34 @@ public class SyncRNG extends AbstractRNG {
     
     @Override
     public byte[] getState() {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                return this.rng.getState();
+            }
+        }
+        this.lock(lock);
+        try {
             return this.rng.getState();
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void setState(byte[] state) {
-        synchronized (this.rng) {
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (this.rng) {
+                this.rng.setState(state);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
             this.rng.setState(state);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -175,10 +598,20 @@ public class SyncRNG extends AbstractRNG {
             // Call from super constructor.
             return;
         }
-        synchronized (rng) {
-            // We can bypass setSeed(long), since we know that the object has
-            // been created (and set).
+        final ReentrantLock lock = this.lock;
+        if (lock == null) {
+            synchronized (rng) {
+                // We can bypass setSeed(long), since we know that the object
+                // has been created (and set).
+                rng.setSeedImpl(seed);
+            }
+            return;
+        }
+        this.lock(lock);
+        try {
             rng.setSeedImpl(seed);
+        } finally {
+            lock.unlock();
         }
     }
     
@@ -190,4 +623,29 @@ public class SyncRNG extends AbstractRNG {
     protected AbstractRNG getBackingRNG() {
         return this.rng;
     }
+    
+    /**
+     * For extending classes to guard their accesses to the backing RNG.
+     * 
+     * @return The lock to use, or null if must synchronize on the backing RNG
+     *         (LockMode.MONITOR).
+     */
+    protected ReentrantLock getLock() {
+        return this.lock;
+    }
+    
+    /**
+     * Acquires the specified lock (this instance's one), spinning first
+     * if in SPIN_THEN_PARK mode.
+     */
+    protected void lock(ReentrantLock lock) {
+        if (this.lockMode == LockMode.SPIN_THEN_PARK) {
+            for (int i=0;i<MAX_NBR_OF_SPINS;i++) {
+                if (lock.tryLock()) {
+                    return;
+                }
+            }
+        }
+        lock.lock();
+    }
 }
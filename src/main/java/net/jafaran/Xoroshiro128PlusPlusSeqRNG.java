@@ -0,0 +1,262 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Not thread-safe.
+ * 
+ * xoroshiro128++ RNG (David Blackman and Sebastiano Vigna, 2019,
+ * http://prng.di.unimi.it), with a period of 2^128-1, and jump functions
+ * to partition it.
+ * 
+ * Smaller state than Xoshiro256StarStarSeqRNG, which can make it faster,
+ * but its period is only large enough for moderately parallel usages.
+ */
+public class Xoroshiro128PlusPlusSeqRNG extends AbstractSeqRNG {
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final long[] JUMP = new long[]{0x2BD7A6A6E99C2DDCL, 0x0992CCAF6A6FCA05L};
+    
+    private static final long[] LONG_JUMP = new long[]{0x360FD5F2CF8D5D99L, 0x9C6E6877736C46E3L};
+    
+    private long s0;
+    private long s1;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed.
+     */
+    public Xoroshiro128PlusPlusSeqRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     * 
+     * State is initialized with successive outputs of a SplitMix64
+     * generator seeded with the specified seed.
+     */
+    public Xoroshiro128PlusPlusSeqRNG(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Equivalent to 2^64 calls to nextLong().
+     * 
+     * Can be used to generate non-overlapping sequences for parallel
+     * computations, for example by copying the state of an instance into
+     * another one (with getState() and setState(byte[])), and then jumping
+     * with the original one.
+     * 
+     * Stored bits are not modified.
+     */
+    public void jump() {
+        this.jump(JUMP);
+    }
+
+    /**
+     * Equivalent to 2^96 calls to nextLong().
+     * 
+     * Can be used to generate starting points from which jump() will
+     * generate non-overlapping sequences.
+     * 
+     * Stored bits are not modified.
+     */
+    public void longJump() {
+        this.jump(LONG_JUMP);
+    }
+
+    /**
+     * Uses the 32 MSBits of nextLong().
+     */
+    @Override
+    public int nextInt() {
+        return (int)(this.nextLong()>>>32);
+    }
+
+    @Override
+    public long nextLong() {
+        long s0 = this.s0;
+        long s1 = this.s1;
+        final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+        s1 ^= s0;
+        s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+        s1 = Long.rotateLeft(s1, 28);
+        this.s0 = s0;
+        this.s1 = s1;
+        return result;
+    }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+            s1 ^= s0;
+            s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+            s1 = Long.rotateLeft(s1, 28);
+            // Same as nextInt().
+            dst[i] = (int)(result>>>32);
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+            s1 ^= s0;
+            s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+            s1 = Long.rotateLeft(s1, 28);
+            dst[i] = result;
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+            s1 ^= s0;
+            s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+            s1 = Long.rotateLeft(s1, 28);
+            // Same as nextInt() and AbstractRNG.nextFloat().
+            dst[i] = (((int)(result>>>32)) & ((1<<24)-1)) * (1.0f/(1<<24));
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+            s1 ^= s0;
+            s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+            s1 = Long.rotateLeft(s1, 28);
+            // Same as AbstractRNG.nextDouble().
+            dst[i] = (result & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            final long result = Long.rotateLeft(s0 + s1, 17) + s0;
+            s1 ^= s0;
+            s0 = Long.rotateLeft(s0, 49) ^ s1 ^ (s1 << 21);
+            s1 = Long.rotateLeft(s1, 28);
+            // Same as AbstractRNG.nextBytes(...).
+            RandomUtilz.putBytes(result, dst, i, Math.min(8, end - i));
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+    }
+
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8*2 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        bb.putLong(this.s0);
+        bb.putLong(this.s1);
+        RandomUtilz.encodeNbrOfStoredBits(this.getCurrentNbrOfStoredBits(), bb);
+        RandomUtilz.encodeStoredBits(this.getCurrentStoredBits(), bb);
+        return tab;
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        this.s0 = bb.getLong();
+        this.s1 = bb.getLong();
+        this.setCurrentNbrOfStoredBits(RandomUtilz.decodeNbrOfStoredBits(bb));
+        this.setCurrentStoredBits(RandomUtilz.decodeStoredBits(bb));
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        super.setSeedImpl(0L);
+        // Since mix64 is a bijection, at most one word can be 0,
+        // so state can't be all zeros.
+        this.s0 = RandomUtilz.splitMix64(seed, 0);
+        this.s1 = RandomUtilz.splitMix64(seed, 1);
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    private void jump(long[] jump) {
+        long j0 = 0;
+        long j1 = 0;
+        for (int i=0;i<jump.length;i++) {
+            for (int b=0;b<64;b++) {
+                if ((jump[i] & (1L<<b)) != 0) {
+                    j0 ^= this.s0;
+                    j1 ^= this.s1;
+                }
+                this.nextLong();
+            }
+        }
+        this.s0 = j0;
+        this.s1 = j1;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2014-2015 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Not thread-safe.
+ * 
+ * xoshiro256** RNG (David Blackman and Sebastiano Vigna, 2018,
+ * http://prng.di.unimi.it), with a period of 2^256-1, and jump functions
+ * to partition it.
+ * 
+ * Advantages over MXSLongSeqRNG:
+ * - Passes modern statistical test batteries.
+ * - Larger period, that can be partitioned with jump() and longJump().
+ */
+public class Xoshiro256StarStarSeqRNG extends AbstractSeqRNG {
+
+    //--------------------------------------------------------------------------
+    // MEMBERS
+    //--------------------------------------------------------------------------
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final long[] JUMP = new long[]{0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL};
+    
+    private static final long[] LONG_JUMP = new long[]{0x76E15D3EFEFDCBBFL, 0xC5004E441C522FB3L, 0x77710069854EE241L, 0x39109BB02ACBE635L};
+    
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+    
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+    
+    /**
+     * Constructor using a random seed.
+     */
+    public Xoshiro256StarStarSeqRNG() {
+    }
+
+    /**
+     * Constructor using a specified seed.
+     * 
+     * State is initialized with successive outputs of a SplitMix64
+     * generator seeded with the specified seed.
+     */
+    public Xoshiro256StarStarSeqRNG(long seed) {
+        super(seed);
+    }
+
+    /**
+     * Equivalent to 2^128 calls to nextLong().
+     * 
+     * Can be used to generate non-overlapping sequences for parallel
+     * computations, for example by copying the state of an instance into
+     * another one (with getState() and setState(byte[])), and then jumping
+     * with the original one.
+     * 
+     * Stored bits are not modified.
+     */
+    public void jump() {
+        this.jump(JUMP);
+    }
+
+    /**
+     * Equivalent to 2^192 calls to nextLong().
+     * 
+     * Can be used to generate starting points from which jump() will
+     * generate non-overlapping sequences.
+     * 
+     * Stored bits are not modified.
+     */
+    public void longJump() {
+        this.jump(LONG_JUMP);
+    }
+
+    /**
+     * Uses the 32 MSBits of nextLong().
+     */
+    @Override
+    public int nextInt() {
+        return (int)(this.nextLong()>>>32);
+    }
+
+    @Override
+    public long nextLong() {
+        long s0 = this.s0;
+        long s1 = this.s1;
+        long s2 = this.s2;
+        long s3 = this.s3;
+        final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        final long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+        return result;
+    }
+
+    /*
+     * bulk
+     */
+
+    @Override
+    public void nextInts(int[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        long s2 = this.s2;
+        long s3 = this.s3;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+            final long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+            // Same as nextInt().
+            dst[i] = (int)(result>>>32);
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    @Override
+    public void nextLongs(long[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        long s2 = this.s2;
+        long s3 = this.s3;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+            final long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+            dst[i] = result;
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    @Override
+    public void nextFloats(float[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        long s2 = this.s2;
+        long s3 = this.s3;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+            final long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+            // Same as nextInt() and AbstractRNG.nextFloat().
+            dst[i] = (((int)(result>>>32)) & ((1<<24)-1)) * (1.0f/(1<<24));
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    @Override
+    public void nextDoubles(double[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        long s2 = this.s2;
+        long s3 = this.s3;
+        final int end = off + len;
+        for (int i=off;i<end;i++) {
+            final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+            final long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+            // Same as AbstractRNG.nextDouble().
+            dst[i] = (result & ((1L<<53)-1)) * (1.0/(1L<<53));
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    @Override
+    public void nextBytes(byte[] dst, int off, int len) {
+        RandomUtilz.checkRange(dst.length, off, len);
+        long s0 = this.s0;
+        long s1 = this.s1;
+        long s2 = this.s2;
+        long s3 = this.s3;
+        final int end = off + len;
+        for (int i=off;i<end;i+=8) {
+            final long result = Long.rotateLeft(s1 * 5, 7) * 9;
+            final long t = s1 << 17;
+            s2 ^= s0;
+            s3 ^= s1;
+            s1 ^= s2;
+            s0 ^= s3;
+            s2 ^= t;
+            s3 = Long.rotateLeft(s3, 45);
+            // Same as AbstractRNG.nextBytes(...).
+            RandomUtilz.putBytes(result, dst, i, Math.min(8, end - i));
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    /*
+     * 
+     */
+    
+    @Override
+    public byte[] getState() {
+        byte[] tab = new byte[8*4 + RandomUtilz.getEncodingByteSizeForStoredBits()];
+        // Big endian.
+        ByteBuffer bb = ByteBuffer.wrap(tab);
+        bb.putLong(this.s0);
+        bb.putLong(this.s1);
+        bb.putLong(this.s2);
+        bb.putLong(this.s3);
+        RandomUtilz.encodeNbrOfStoredBits(this.getCurrentNbrOfStoredBits(), bb);
+        RandomUtilz.encodeStoredBits(this.getCurrentStoredBits(), bb);
+        return tab;
+    }
+
+    @Override
+    public void setState(byte[] state) {
+        ByteBuffer bb = ByteBuffer.wrap(state);
+        this.s0 = bb.getLong();
+        this.s1 = bb.getLong();
+        this.s2 = bb.getLong();
+        this.s3 = bb.getLong();
+        this.setCurrentNbrOfStoredBits(RandomUtilz.decodeNbrOfStoredBits(bb));
+        this.setCurrentStoredBits(RandomUtilz.decodeStoredBits(bb));
+    }
+
+    //--------------------------------------------------------------------------
+    // PROTECTED METHODS
+    //--------------------------------------------------------------------------
+
+    @Override
+    protected void setSeedImpl(long seed) {
+        super.setSeedImpl(0L);
+        // Since mix64 is a bijection, at most one word can be 0,
+        // so state can't be all zeros.
+        this.s0 = RandomUtilz.splitMix64(seed, 0);
+        this.s1 = RandomUtilz.splitMix64(seed, 1);
+        this.s2 = RandomUtilz.splitMix64(seed, 2);
+        this.s3 = RandomUtilz.splitMix64(seed, 3);
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+
+    private void jump(long[] jump) {
+        long j0 = 0;
+        long j1 = 0;
+        long j2 = 0;
+        long j3 = 0;
+        for (int i=0;i<jump.length;i++) {
+            for (int b=0;b<64;b++) {
+                if ((jump[i] & (1L<<b)) != 0) {
+                    j0 ^= this.s0;
+                    j1 ^= this.s1;
+                    j2 ^= this.s2;
+                    j3 ^= this.s3;
+                }
+                this.nextLong();
+            }
+        }
+        this.s0 = j0;
+        this.s1 = j1;
+        this.s2 = j2;
+        this.s3 = j3;
+    }
+}
@@ -18,12 +18,12 @@ package net.jafaran;
 import java.util.Random;
 
 /**
- * Provides normal gaussian numbers using a Ziggurat algorithm, and a specified
- * Random implementation for uniform randomness.
+ * Provides normal gaussian numbers, and exponential numbers, using Ziggurat
+ * algorithms, and a specified Random implementation for uniform randomness.
  * 
  * For a same uniform randomness, a same version of these treatments always
- * return a same sequence of normal gaussian numbers, as if by using StrictMath
- * and strictfp.
+ * return a same sequence of normal gaussian (or exponential) numbers,
+ * as if by using StrictMath and strictfp.
  */
 public class Ziggurat {
     
@@ -72,6 +72,11 @@ public class Ziggurat {
      * we would use an int so the bias would be more obvious.
      * A workaround is to negate the test ("-abs(bits) >= -KI[index]"),
      * but it makes things slower if you don't have a negative-abs method.
+     * 
+     * For exponential numbers, we use the same layout of tables and
+     * tricks, with the constants of Marsaglia and Tsang's exponential
+     * Ziggurat (256 rectangles), and u in [0,1[ (exponential density
+     * being one-sided), its tail being an exponential shifted by R.
      */
 
     //--------------------------------------------------------------------------
@@ -174,6 +179,70 @@ public class Ziggurat {
         }
     }
 
+    /*
+     * Exponential Ziggurat constants for 256 rectangles.
+     */
+    
+    /**
+     * X where the tail starts.
+     */
+    static final double EXP_R_256 = 7.69711747013104972;
+    
+    /**
+     * Volume of each rectangle, the bottom one including the tail.
+     */
+    private static final double EXP_V_256 = 0.0039496598225815571993;
+    
+    /*
+     * Tables with same layout than Doornik's ones.
+     */
+    
+    private static final double[] EXP_ZIG_X = new double[N+1];
+    private static final double[] EXP_ZIG_R = new double[N];
+    static {
+        double f = expF(EXP_R_256);
+        EXP_ZIG_X[0] = EXP_V_256 / f;
+        EXP_ZIG_X[1] = EXP_R_256;
+        for (int i=2;i<N;i++) {
+            final double xi = -StrictMath.log(EXP_V_256 / EXP_ZIG_X[i-1] + f);
+            EXP_ZIG_X[i] = xi;
+            f = expF(xi);
+        }
+        EXP_ZIG_X[N] = 0.0;
+        
+        for (int i=0;i<N;i++) {
+            EXP_ZIG_R[i] = EXP_ZIG_X[i+1] / EXP_ZIG_X[i];
+        }
+    }
+    
+    /*
+     * For faster nextExponential(Random).
+     */
+    
+    private static final double[] EXP_ZIG_X_NE = new double[N];
+    private static final long[] EXP_ZIG_R_NE = new long[N];
+    static {
+        for (int i=0;i<N;i++) {
+            // u < threshold
+            // bits * (1.0/(1L<<53)) < threshold
+            // bits < threshold * (1L<<53)
+            // bits < ceil(threshold * (1L<<53))
+            EXP_ZIG_R_NE[i] = (long)Math.ceil(EXP_ZIG_R[i] * (1L<<53));
+            EXP_ZIG_X_NE[i] = EXP_ZIG_X[i] * (1.0/(1L<<53));
+        }
+    }
+    
+    /*
+     * For faster rare cases.
+     */
+    
+    private static final double[] EXP_F_ZIG_X = new double[EXP_ZIG_X.length];
+    static {
+        for (int i=0;i<EXP_F_ZIG_X.length;i++) {
+            EXP_F_ZIG_X[i] = expF(EXP_ZIG_X[i]);
+        }
+    }
+
     //--------------------------------------------------------------------------
     // PUBLIC METHODS
     //--------------------------------------------------------------------------
@@ -279,6 +348,33 @@ public class Ziggurat {
         } while (true);
     }
 
+    /**
+     * Uses a single nextLong() in the common case (about 99 percents
+     * of the time), and never computes a logarithm or an exponential
+     * in that case.
+     * 
+     * @param random The uniform randomness generator to use.
+     * @return An exponential number, of rate (and mean) 1.
+     */
+    public static double nextExponential(Random random) {
+        do {
+            final long bits = random.nextLong();
+            // Using 53 MSBits, for u in [0,1[ with 2^-53 granularity.
+            final long uLong = (bits>>>(64-53));
+            // Using 8 LSBits.
+            final int index = ((int)bits) & 0xFF;
+            
+            if (uLong < EXP_ZIG_R_NE[index]) {
+                return uLong * EXP_ZIG_X_NE[index];
+            }
+            
+            final double x = expRareCase(random, index, uLong * (1.0/(1L<<53)));
+            if (x == x) {
+                return x;
+            }
+        } while (true);
+    }
+
     //--------------------------------------------------------------------------
     // PRIVATE METHODS
     //--------------------------------------------------------------------------
@@ -300,6 +396,10 @@ public class Ziggurat {
     private static double f(double x) {
         return StrictMath.exp(-0.5 * (x*x));
     }
+    
+    private static double expF(double x) {
+        return StrictMath.exp(-x);
+    }
 
     /**
      * u and negSide are used exclusively, so it doesn't hurt
@@ -347,4 +447,27 @@ public class Ziggurat {
         } while (-(yy + yy) < xx * xx);
         return negSide ? xx - R_256 : R_256 - xx;
     }
+    
+    /**
+     * @param u Value in [0,1[.
+     * @return Value to return, or NaN if shall retry.
+     */
+    private static double expRareCase(
+            Random random,
+            int index,
+            double u) {
+        if (index == 0) {
+            // Tail: exponential being memoryless, it's just
+            // an exponential shifted by R.
+            // log argument in ]0,1], so result is finite, and >= R.
+            return EXP_R_256 - StrictMath.log(nextDouble(random)+ANTI_ZERO_EPS);
+        }
+        final double x = u * EXP_ZIG_X[index];
+        final double fI = EXP_F_ZIG_X[index];
+        final double fIP1 = EXP_F_ZIG_X[index+1];
+        if (fIP1 + (fI - fIP1) * nextDouble(random) < expF(x)) {
+            return x;
+        }
+        return Double.NaN;
+    }
 }
@@ -24,18 +24,51 @@
  * if they are not thread-safe.
  * 
  * Also provides an implementation of Ziggurat algorithm (based on J. A. Doornik
- * paper, 2005), used by nextGaussian() methods of the provided implementations.
+ * paper, 2005), used by nextGaussian() methods of the provided implementations,
+ * and an exponential Ziggurat, used by their nextExponential() methods.
  * 
  * Principal classes:
  * - Implementations using Mersenne-Twister algorithm (good pseudo-randomness):
  *   - MTConcRNG
  *   - MTSyncRNG (blocking but apparently faster than MTConcRNG)
  *   - MTSeqRNG
+ *   - MT64ConcRNG (MT19937-64, faster nextLong())
+ *   - MT64SeqRNG (MT19937-64, faster nextLong())
+ * - Implementations using SIMD-oriented Fast Mersenne Twister algorithm
+ *   (SFMT19937, same period than MT, faster):
+ *   - SFMTConcRNG
+ *   - SFMTSyncRNG
+ *   - SFMTSeqRNG
+ *   - DSFMTSeqRNG (dSFMT19937, native doubles with 1/2^52 granularity)
  * - Implementations using Marsaglia Xor-Shift (fast):
  *   - MXSIntSeqRNG (32 bits)
  *   - MXSLongSeqRNG (64 bits) (nextLong() faster, larger period)
+ * - Implementations using Blackman-Vigna xoshiro/xoroshiro (fast, good
+ *   pseudo-randomness, period can be partitioned with jump functions):
+ *   - Xoshiro256StarStarSeqRNG (256 bits state)
+ *   - Xoroshiro128PlusPlusSeqRNG (128 bits state)
+ * - PCG64SeqRNG: PCG64 DXSM (good pseudo-randomness, O(log(n)) advance
+ *   and distance).
+ * - SplittableSeqRNG: SplitMix64, as SplittableRandom (fast, cheap split()).
+ * - StripedConcRNG: Concurrent RNG made of stripes of sequential RNGs,
+ *   picked per thread and re-hashed on contention (scales with threads).
+ * - PrefetchConcRNG: Concurrent RNG using longs pre-generated from
+ *   a sequential RNG by a producer thread (cheap calls, if it keeps up).
+ * - CombiningSyncRNG: Blocking wrapper using flat combining (the lock holder
+ *   serves pending requests of other threads).
+ * - CounterConcRNG: Wait-free concurrent RNG based on Philox4x32-10
+ *   (counter-based: a fetch-and-add, and a bijection of the index).
  * - RandomConcRNG: Pseudo-RNG using the same algorithm than Random.
+ * - RandomWaitFreeConcRNG: Same outputs than RandomConcRNG, but wait-free
+ *   (fetch-and-add on a step counter, and jump to state for that step).
  * - RandomRNGAdapter: Pseudo-RNG backed by a Random instance.
  * - Ziggurat: Random-based implementation of Ziggurat algorithm.
+ * - Samplers of non-uniform distributions, using an AbstractRNG:
+ *   - GammaSampler (Marsaglia-Tsang), and ChiSquaredSampler, BetaSampler,
+ *     DirichletSampler and StudentTSampler built on it.
+ *   - PoissonSampler (inversion for small lambdas, PTRS for large ones).
+ *   - BinomialSampler (inversion, or BTPE for large n*min(p,1-p)),
+ *     and MultinomialSampler built on it (not thread-safe).
+ *   - AliasTable (O(1) weighted draws of indexes, Walker/Vose).
  */
 package net.jafaran;
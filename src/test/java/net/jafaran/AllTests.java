@@ -32,6 +32,7 @@ public class AllTests {
     public static Test suite() {
         TestSuite suite = new TestSuite("Test suite for "+AllTests.class.getPackage());
 
+        suite.addTestSuite(DistributionsTest.class);
         suite.addTestSuite(GaussianTesterTest.class);
         suite.addTestSuite(RandomsTest.class);
         suite.addTestSuite(ZigguratTest.class);
@@ -0,0 +1,985 @@
+/*
+ * Copyright 2014 Jeff Hain
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.jafaran;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests samplers of non-uniform distributions, by checking moments of their
+ * outputs, and that bulk methods are equivalent to successive scalar calls.
+ */
+public class DistributionsTest extends TestCase {
+
+    //--------------------------------------------------------------------------
+    // CONFIGURATION
+    //--------------------------------------------------------------------------
+
+    private static final boolean DEBUG = false;
+    
+    private static final boolean USE_RANDOM_SEED = false;
+    private static final long SEED = USE_RANDOM_SEED ? new Random().nextLong() : 123456789L;
+    static {
+        if (USE_RANDOM_SEED) {
+            System.out.println("SEED = "+SEED);
+        }
+    }
+    
+    private static final int NBR_OF_DRAWS = 400 * 1000;
+    
+    /**
+     * Max allowed difference between empirical and expected means,
+     * in number of standard errors.
+     */
+    private static final double MAX_MEAN_SE = 5.0;
+
+    /**
+     * Max allowed relative error on variances.
+     */
+    private static final double MAX_VAR_REL_ERR = 0.05;
+
+    //--------------------------------------------------------------------------
+    // PRIVATE CLASSES
+    //--------------------------------------------------------------------------
+
+    private interface MyDoubleSource {
+        public double next(AbstractRNG rng);
+        public void next(AbstractRNG rng, double[] dst, int off, int len);
+    }
+
+    private interface MyIntSource {
+        public int next(AbstractRNG rng);
+        public void next(AbstractRNG rng, int[] dst, int off, int len);
+    }
+
+    private interface MyIntVectorSource {
+        public int getDimension();
+        public void next(AbstractRNG rng, int[] dst, int off);
+        public void next(AbstractRNG rng, int[] dst, int off, int nbrOfVectors);
+    }
+
+    //--------------------------------------------------------------------------
+    // PUBLIC METHODS
+    //--------------------------------------------------------------------------
+
+    public DistributionsTest() {
+    }
+
+    /*
+     * gamma family
+     */
+    
+    public void test_GammaSampler() {
+        final double scale = 1.5;
+        for (double shape : new double[]{1e-3, 0.1, 0.5, 1.0, 2.5, 30.0}) {
+            final GammaSampler sampler = new GammaSampler(shape, scale);
+            assertEquals(shape, sampler.getShape());
+            assertEquals(scale, sampler.getScale());
+            final MyDoubleSource source = new MyDoubleSource() {
+                //@Override
+                public double next(AbstractRNG rng) {
+                    return sampler.next(rng);
+                }
+                //@Override
+                public void next(AbstractRNG rng, double[] dst, int off, int len) {
+                    sampler.next(rng, dst, off, len);
+                }
+            };
+            final double[] values = draw(source);
+            for (double value : values) {
+                assertTrue((value >= 0.0) && (value < Double.POSITIVE_INFINITY));
+            }
+            checkMoments(
+                    sampler.toString(),
+                    values,
+                    shape * scale,
+                    shape * scale * scale,
+                    (shape >= 0.5));
+            checkBulk(source);
+        }
+    }
+
+    public void test_GammaSampler_badArgs() {
+        for (double bad : new double[]{0.0, -1.0, Double.NaN, Double.POSITIVE_INFINITY}) {
+            try {
+                new GammaSampler(bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new GammaSampler(1.0, bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new ChiSquaredSampler(bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new BetaSampler(bad, 1.0);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new BetaSampler(1.0, bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new StudentTSampler(bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new DirichletSampler(new double[]{1.0, bad});
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+        try {
+            new DirichletSampler(new double[0]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Tests that parameters are validated against the actual domain,
+     * with messages naming caller's parameter, and that draws at domain
+     * bounds are not NaN.
+     */
+    public void test_GammaSamplers_domainBounds() {
+        final double belowMin = 0.5 * GammaSampler.MIN_SHAPE;
+        checkIAE("shape", new Runnable() {
+            //@Override
+            public void run() {
+                new GammaSampler(belowMin);
+            }
+        });
+        for (final double bad : new double[]{Double.MIN_VALUE, 1e-309, 2 * belowMin}) {
+            checkIAE("degreesOfFreedom", new Runnable() {
+                //@Override
+                public void run() {
+                    new ChiSquaredSampler(bad);
+                }
+            });
+            checkIAE("degreesOfFreedom", new Runnable() {
+                //@Override
+                public void run() {
+                    new StudentTSampler(bad);
+                }
+            });
+        }
+        checkIAE("beta", new Runnable() {
+            //@Override
+            public void run() {
+                new BetaSampler(1.0, belowMin);
+            }
+        });
+        checkIAE("alphas[1]", new Runnable() {
+            //@Override
+            public void run() {
+                new DirichletSampler(new double[]{1.0, belowMin});
+            }
+        });
+        
+        final double min = GammaSampler.MIN_SHAPE;
+        final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+        final GammaSampler gamma = new GammaSampler(min);
+        final GammaSampler gammaTinyScale = new GammaSampler(1.0, Double.MIN_VALUE);
+        final ChiSquaredSampler chiSquared = new ChiSquaredSampler(2 * min);
+        final StudentTSampler studentT = new StudentTSampler(2 * min);
+        final BetaSampler beta = new BetaSampler(min, min);
+        final DirichletSampler dirichlet = new DirichletSampler(new double[]{min, min, 1.0});
+        final double[] vector = new double[3];
+        for (int i=0;i<10000;i++) {
+            final double g = gamma.next(rng);
+            assertTrue((g >= 0.0) && (g < Double.POSITIVE_INFINITY));
+            final double gts = gammaTinyScale.next(rng);
+            assertTrue((gts >= 0.0) && (gts < Double.POSITIVE_INFINITY));
+            final double c = chiSquared.next(rng);
+            assertTrue((c >= 0.0) && (c < Double.POSITIVE_INFINITY));
+            assertFalse(Double.isNaN(studentT.next(rng)));
+            final double b = beta.next(rng);
+            assertTrue((b >= 0.0) && (b <= 1.0));
+            dirichlet.next(rng, vector, 0);
+            for (double v : vector) {
+                assertTrue((v >= 0.0) && (v <= 1.0));
+            }
+        }
+    }
+
+    public void test_ChiSquaredSampler() {
+        for (double k : new double[]{1.0, 3.0, 10.0}) {
+            final ChiSquaredSampler sampler = new ChiSquaredSampler(k);
+            assertEquals(k, sampler.getDegreesOfFreedom());
+            final MyDoubleSource source = new MyDoubleSource() {
+                //@Override
+                public double next(AbstractRNG rng) {
+                    return sampler.next(rng);
+                }
+                //@Override
+                public void next(AbstractRNG rng, double[] dst, int off, int len) {
+                    sampler.next(rng, dst, off, len);
+                }
+            };
+            checkMoments(sampler.toString(), draw(source), k, 2.0 * k, true);
+            checkBulk(source);
+        }
+    }
+
+    public void test_BetaSampler() {
+        final double[][] shapesArr = new double[][]{
+                {1e-3, 1e-3},
+                {0.5, 0.5},
+                {0.2, 3.0},
+                {2.0, 5.0},
+                {40.0, 10.0}};
+        for (double[] shapes : shapesArr) {
+            final double a = shapes[0];
+            final double b = shapes[1];
+            final BetaSampler sampler = new BetaSampler(a, b);
+            assertEquals(a, sampler.getAlpha());
+            assertEquals(b, sampler.getBeta());
+            final MyDoubleSource source = new MyDoubleSource() {
+                //@Override
+                public double next(AbstractRNG rng) {
+                    return sampler.next(rng);
+                }
+                //@Override
+                public void next(AbstractRNG rng, double[] dst, int off, int len) {
+                    sampler.next(rng, dst, off, len);
+                }
+            };
+            final double[] values = draw(source);
+            for (double value : values) {
+                assertTrue((value >= 0.0) && (value <= 1.0));
+            }
+            final double s = a + b;
+            checkMoments(
+                    sampler.toString(),
+                    values,
+                    a / s,
+                    (a * b) / (s * s * (s + 1.0)),
+                    true);
+            checkBulk(source);
+        }
+    }
+
+    public void test_StudentTSampler() {
+        for (double nu : new double[]{1e-3, 0.5, 1.0, 5.0, 30.0}) {
+            final StudentTSampler sampler = new StudentTSampler(nu);
+            assertEquals(nu, sampler.getDegreesOfFreedom());
+            final MyDoubleSource source = new MyDoubleSource() {
+                //@Override
+                public double next(AbstractRNG rng) {
+                    return sampler.next(rng);
+                }
+                //@Override
+                public void next(AbstractRNG rng, double[] dst, int off, int len) {
+                    sampler.next(rng, dst, off, len);
+                }
+            };
+            final double[] values = draw(source);
+            int nbrOfPositives = 0;
+            for (double value : values) {
+                assertFalse(Double.isNaN(value));
+                if (value > 0.0) {
+                    nbrOfPositives++;
+                }
+            }
+            // Symmetry (moments not defined for small nu).
+            final double halfN = 0.5 * values.length;
+            assertEquals(halfN, nbrOfPositives, MAX_MEAN_SE * Math.sqrt(0.5 * halfN));
+            if (nu > 4.0) {
+                checkMoments(sampler.toString(), values, 0.0, nu / (nu - 2.0), true);
+            }
+            checkBulk(source);
+        }
+    }
+
+    public void test_DirichletSampler() {
+        final double[][] alphasArr = new double[][]{
+                {1.0},
+                {1e-3, 1e-3, 1e-3},
+                {0.1, 1.0, 3.0},
+                {2.0, 5.0, 10.0, 20.0}};
+        final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+        for (double[] alphas : alphasArr) {
+            final DirichletSampler sampler = new DirichletSampler(alphas);
+            final int k = alphas.length;
+            assertEquals(k, sampler.getDimension());
+            double alpha0 = 0.0;
+            for (int j=0;j<k;j++) {
+                assertEquals(alphas[j], sampler.getAlpha(j));
+                alpha0 += alphas[j];
+            }
+            
+            final int nbrOfVectors = NBR_OF_DRAWS / 4;
+            final double[] values = new double[1 + nbrOfVectors * k];
+            for (int i=0;i<nbrOfVectors;i++) {
+                sampler.next(rng, values, 1 + i * k);
+            }
+            assertEquals(0.0, values[0]);
+            final double[] component = new double[nbrOfVectors];
+            for (int j=0;j<k;j++) {
+                for (int i=0;i<nbrOfVectors;i++) {
+                    final double value = values[1 + i * k + j];
+                    assertTrue((value >= 0.0) && (value <= 1.0));
+                    component[i] = value;
+                }
+                // Marginals are beta(alpha_j, alpha0-alpha_j).
+                final double a = alphas[j];
+                final double b = alpha0 - a;
+                checkMoments(
+                        sampler.toString() + "[" + j + "]",
+                        component,
+                        a / alpha0,
+                        (a * b) / (alpha0 * alpha0 * (alpha0 + 1.0)),
+                        true);
+            }
+            for (int i=0;i<nbrOfVectors;i++) {
+                double sum = 0.0;
+                for (int j=0;j<k;j++) {
+                    sum += values[1 + i * k + j];
+                }
+                assertEquals(1.0, sum, 1e-12);
+            }
+            
+            /*
+             * bulk
+             */
+            
+            final int n = 100;
+            final AbstractRNG rng1 = new MXSLongSeqRNG(SEED);
+            final AbstractRNG rng2 = new MXSLongSeqRNG(SEED);
+            final double[] expected = new double[2 + n * k];
+            final double[] actual = new double[2 + n * k];
+            for (int i=0;i<n;i++) {
+                sampler.next(rng1, expected, 1 + i * k);
+            }
+            sampler.nextVectors(rng2, actual, 1, n);
+            for (int i=0;i<expected.length;i++) {
+                assertEquals(expected[i], actual[i]);
+            }
+            assertEquals(rng1.nextLong(), rng2.nextLong());
+            
+            try {
+                sampler.next(rng, new double[k], 1);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // ok
+            }
+            try {
+                sampler.nextVectors(rng, new double[2 * k], 1, 2);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // ok
+            }
+            try {
+                sampler.nextVectors(rng, new double[k], 0, -1);
+                fail();
+            } catch (IndexOutOfBoundsException e) {
+                // ok
+            }
+        }
+    }
+
+    /*
+     * discrete
+     */
+    
+    public void test_PoissonSampler() {
+        for (double lambda : new double[]{
+                0.0, 0.5, 3.0, 9.99, 10.0, 37.5, 1000.0, 1e6, PoissonSampler.MAX_LAMBDA}) {
+            final PoissonSampler sampler = new PoissonSampler(lambda);
+            assertEquals(lambda, sampler.getLambda());
+            final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+            final int[] counts = new int[NBR_OF_DRAWS];
+            for (int i=0;i<counts.length;i++) {
+                counts[i] = sampler.next(rng);
+            }
+            final double[] values = new double[counts.length];
+            for (int i=0;i<counts.length;i++) {
+                assertTrue(counts[i] >= 0);
+                values[i] = counts[i];
+            }
+            checkMoments(sampler.toString(), values, lambda, lambda, true);
+            if (lambda <= 100.0) {
+                // Probability of each value (sequentially computed,
+                // in logs not to underflow).
+                final double logLambda = Math.log(lambda);
+                double logFact = 0.0;
+                for (int k=0;k<=lambda+5*Math.sqrt(lambda);k++) {
+                    if (k > 0) {
+                        logFact += Math.log(k);
+                    }
+                    final double p = (k == 0) ? Math.exp(-lambda) : Math.exp(-lambda + k * logLambda - logFact);
+                    checkFrequency(sampler.toString() + " k = " + k, counts, k, p);
+                }
+            }
+            
+            checkBulk(new MyIntSource() {
+                //@Override
+                public int next(AbstractRNG rng) {
+                    return sampler.next(rng);
+                }
+                //@Override
+                public void next(AbstractRNG rng, int[] dst, int off, int len) {
+                    sampler.next(rng, dst, off, len);
+                }
+            });
+        }
+    }
+
+    public void test_PoissonSampler_badArgs() {
+        for (double bad : new double[]{
+                -1e-300, -1.0, Double.NaN, 2 * PoissonSampler.MAX_LAMBDA, Double.POSITIVE_INFINITY}) {
+            try {
+                new PoissonSampler(bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
+    public void test_PoissonSampler_logFactorial() {
+        double expected = 0.0;
+        for (int k=0;k<1000;k++) {
+            if (k > 0) {
+                expected += Math.log(k);
+            }
+            assertEquals(expected, PoissonSampler.logFactorial(k), Math.max(1.0, expected) * 1e-13);
+        }
+    }
+
+    public void test_BinomialSampler() {
+        final double[][] paramsArr = new double[][]{
+                {0, 0.3},
+                {10, 0.0},
+                {10, 1.0},
+                {1, 0.5},
+                {20, 0.3},
+                {100, 0.3}, // inversion
+                {101, 0.3}, // BTPE
+                {1000, 0.5},
+                {1000, 0.9},
+                {200, 0.99},
+                {Integer.MAX_VALUE, 0.3},
+                {Integer.MAX_VALUE, 1e-9}};
+        for (double[] params : paramsArr) {
+            final int n = (int)params[0];
+            final double p = params[1];
+            final BinomialSampler sampler = new BinomialSampler(n, p);
+            assertEquals(n, sampler.getN());
+            assertEquals(p, sampler.getP());
+            final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+            final int[] counts = new int[NBR_OF_DRAWS];
+            for (int i=0;i<counts.length;i++) {
+                counts[i] = sampler.next(rng);
+            }
+            final double[] values = new double[counts.length];
+            for (int i=0;i<counts.length;i++) {
+                assertTrue((counts[i] >= 0) && (counts[i] <= n));
+                values[i] = counts[i];
+            }
+            final double mean = n * p;
+            final double var = mean * (1.0 - p);
+            checkMoments(sampler.toString(), values, mean, var, true);
+            if ((n > 0) && (n <= 1000)) {
+                final double sd = Math.sqrt(var);
+                for (int k=(int)Math.max(0, mean-5*sd);k<=Math.min(n, mean+5*sd);k++) {
+                    checkFrequency(sampler.toString() + " k = " + k, counts, k, binomialProb(n, p, k));
+                }
+            }
+            
+            checkBulk(new MyIntSource() {
+                //@Override
+                public int next(AbstractRNG rng) {
+                    return sampler.next(rng);
+                }
+                //@Override
+                public void next(AbstractRNG rng, int[] dst, int off, int len) {
+                    sampler.next(rng, dst, off, len);
+                }
+            });
+        }
+    }
+
+    /**
+     * Tests that setup caching, when parameters change, yields same draws
+     * than fresh samplers.
+     */
+    public void test_BinomialSampler_paramsChange() {
+        final AbstractRNG rng1 = new MXSLongSeqRNG(SEED);
+        final AbstractRNG rng2 = new MXSLongSeqRNG(SEED);
+        final AbstractRNG paramsRng = new MXSLongSeqRNG(SEED + 1);
+        final BinomialSampler sampler = new BinomialSampler();
+        assertEquals(0, sampler.getN());
+        assertEquals(0.0, sampler.getP());
+        int n = 0;
+        double p = 0.0;
+        for (int i=0;i<10000;i++) {
+            // Half the time, same params than previous draw.
+            if (paramsRng.nextBoolean()) {
+                n = paramsRng.nextInt(1 + (1 << paramsRng.nextInt(20)));
+                p = paramsRng.nextDouble();
+            }
+            final int actual = sampler.next(rng1, n, p);
+            assertEquals(n, sampler.getN());
+            assertEquals(p, sampler.getP());
+            assertEquals(new BinomialSampler(n, p).next(rng2), actual);
+        }
+    }
+
+    public void test_BinomialSampler_badArgs() {
+        for (int bad : new int[]{-1, Integer.MIN_VALUE}) {
+            try {
+                new BinomialSampler(bad, 0.5);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new MultinomialSampler(bad, new double[]{1.0});
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+        for (double bad : new double[]{-1e-300, 1.0 + 1e-15, Double.NaN}) {
+            try {
+                new BinomialSampler(1, bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            final BinomialSampler sampler = new BinomialSampler(1, 0.5);
+            try {
+                sampler.next(new MXSLongSeqRNG(SEED), 1, bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+        for (double[] bad : new double[][]{
+                {},
+                {0.0, 0.0},
+                {1.0, -1.0},
+                {1.0, Double.NaN},
+                {1.0, Double.POSITIVE_INFINITY},
+                {Double.MAX_VALUE, Double.MAX_VALUE}}) {
+            try {
+                new MultinomialSampler(1, bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
+    public void test_MultinomialSampler() {
+        final double[][] weightsArr = new double[][]{
+                {3.0},
+                {1.0, 0.0, 1.0, 0.0},
+                {0.1, 0.2, 0.3, 0.4},
+                {1e-6, 5.0, 100.0, 1.0, 1e-3}};
+        final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+        for (int n : new int[]{0, 7, 1000, 1000 * 1000 * 1000}) {
+            for (double[] weights : weightsArr) {
+                final MultinomialSampler sampler = new MultinomialSampler(n, weights);
+                final int k = weights.length;
+                assertEquals(n, sampler.getN());
+                assertEquals(k, sampler.getDimension());
+                double sum = 0.0;
+                for (double weight : weights) {
+                    sum += weight;
+                }
+                
+                final int nbrOfVectors = NBR_OF_DRAWS / 8;
+                final int[] counts = new int[1 + nbrOfVectors * k];
+                for (int i=0;i<nbrOfVectors;i++) {
+                    sampler.next(rng, counts, 1 + i * k);
+                }
+                assertEquals(0, counts[0]);
+                for (int i=0;i<nbrOfVectors;i++) {
+                    long countSum = 0;
+                    for (int j=0;j<k;j++) {
+                        countSum += counts[1 + i * k + j];
+                    }
+                    assertEquals(n, countSum);
+                }
+                final double[] component = new double[nbrOfVectors];
+                for (int j=0;j<k;j++) {
+                    final double p = weights[j] / sum;
+                    assertEquals(p, sampler.getProb(j), 1e-15);
+                    for (int i=0;i<nbrOfVectors;i++) {
+                        final int count = counts[1 + i * k + j];
+                        assertTrue((count >= 0) && (count <= n));
+                        component[i] = count;
+                    }
+                    // Marginals are binomial(n, p_j).
+                    // Variance not checked if too few successes.
+                    checkMoments(
+                            sampler.toString() + "[" + j + "]",
+                            component,
+                            n * p,
+                            n * p * (1.0 - p),
+                            (n * p * nbrOfVectors >= 1e4));
+                }
+                
+                checkBulk(new MyIntVectorSource() {
+                    //@Override
+                    public int getDimension() {
+                        return sampler.getDimension();
+                    }
+                    //@Override
+                    public void next(AbstractRNG rng, int[] dst, int off) {
+                        sampler.next(rng, dst, off);
+                    }
+                    //@Override
+                    public void next(AbstractRNG rng, int[] dst, int off, int nbrOfVectors) {
+                        sampler.nextVectors(rng, dst, off, nbrOfVectors);
+                    }
+                });
+                try {
+                    sampler.next(rng, new int[k], 1);
+                    fail();
+                } catch (IndexOutOfBoundsException e) {
+                    // ok
+                }
+            }
+        }
+    }
+
+    public void test_AliasTable() {
+        final AbstractRNG weightsRng = new MXSLongSeqRNG(SEED + 1);
+        final double[] randomWeights = new double[1000];
+        for (int i=0;i<randomWeights.length;i++) {
+            // Some zeros, and various magnitudes.
+            randomWeights[i] = (i % 10 == 0) ? 0.0 : weightsRng.nextDouble() * (1 + (i % 7) * 100);
+        }
+        final double[][] weightsArr = new double[][]{
+                {1.0},
+                {1.0, 0.0, 2.0, 0.0, 3.0},
+                {0.0, 0.0, 5.0},
+                {1e-300, 1.0},
+                {Double.MIN_VALUE, 0.0},
+                {0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1, 0.1},
+                randomWeights};
+        for (double[] weights : weightsArr) {
+            final AliasTable table = new AliasTable(weights);
+            final int k = weights.length;
+            assertEquals(k, table.getNbrOfCategories());
+            double sum = 0.0;
+            for (double weight : weights) {
+                sum += weight;
+            }
+            
+            final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+            final int[] hist = new int[k];
+            for (int i=0;i<NBR_OF_DRAWS;i++) {
+                hist[table.next(rng)]++;
+            }
+            // One nextLong() per draw.
+            final AbstractRNG refRng = new MXSLongSeqRNG(SEED);
+            for (int i=0;i<NBR_OF_DRAWS;i++) {
+                refRng.nextLong();
+            }
+            assertEquals(refRng.nextLong(), rng.nextLong());
+            
+            for (int i=0;i<k;i++) {
+                final double p = weights[i] / sum;
+                if (p == 0.0) {
+                    assertEquals(0, hist[i]);
+                } else {
+                    final double expectedCount = p * NBR_OF_DRAWS;
+                    final double tol = MAX_MEAN_SE * Math.sqrt(expectedCount * (1.0 - p)) + 1.0;
+                    assertEquals(expectedCount, hist[i], tol);
+                }
+            }
+            
+            checkBulk(new MyIntSource() {
+                //@Override
+                public int next(AbstractRNG rng) {
+                    return table.next(rng);
+                }
+                //@Override
+                public void next(AbstractRNG rng, int[] dst, int off, int len) {
+                    table.next(rng, dst, off, len);
+                }
+            });
+            // Whole-array overload.
+            {
+                final AbstractRNG rng1 = new MXSLongSeqRNG(SEED);
+                final AbstractRNG rng2 = new MXSLongSeqRNG(SEED);
+                final int[] expected = new int[100];
+                final int[] actual = new int[expected.length];
+                table.next(rng1, expected, 0, expected.length);
+                table.next(rng2, actual);
+                for (int i=0;i<expected.length;i++) {
+                    assertEquals(expected[i], actual[i]);
+                }
+                assertEquals(rng1.nextLong(), rng2.nextLong());
+            }
+        }
+    }
+
+    public void test_AliasTable_large() {
+        final int k = 1 << 20;
+        final double[] weights = new double[k];
+        for (int i=0;i<k;i++) {
+            weights[i] = i;
+        }
+        final AliasTable table = new AliasTable(weights);
+        final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+        final int[] indexes = new int[NBR_OF_DRAWS];
+        table.next(rng, indexes);
+        final double[] values = new double[indexes.length];
+        for (int i=0;i<indexes.length;i++) {
+            assertTrue((indexes[i] > 0) && (indexes[i] < k));
+            values[i] = indexes[i];
+        }
+        // Weights proportional to index: mean (2k-1)/3, variance (k^2-k-2)/18.
+        final double kd = k;
+        checkMoments(
+                "k = " + k,
+                values,
+                (2 * kd - 1) / 3,
+                (kd * kd - kd - 2) / 18,
+                true);
+    }
+
+    public void test_AliasTable_badArgs() {
+        for (double[] bad : new double[][]{
+                {},
+                {0.0, 0.0},
+                {1.0, -1.0},
+                {1.0, Double.NaN},
+                {1.0, Double.POSITIVE_INFINITY},
+                {Double.MAX_VALUE, Double.MAX_VALUE}}) {
+            try {
+                new AliasTable(bad);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
+    //--------------------------------------------------------------------------
+    // PRIVATE METHODS
+    //--------------------------------------------------------------------------
+    
+    private static double[] draw(MyDoubleSource source) {
+        final AbstractRNG rng = new MXSLongSeqRNG(SEED);
+        final double[] values = new double[NBR_OF_DRAWS];
+        for (int i=0;i<values.length;i++) {
+            values[i] = source.next(rng);
+        }
+        return values;
+    }
+    
+    /**
+     * @param checkVar True if variance must be checked (false if kurtosis
+     *        is too large for it to be estimated accurately enough).
+     */
+    private static void checkMoments(
+            String descr,
+            double[] values,
+            double expectedMean,
+            double expectedVar,
+            boolean checkVar) {
+        final int n = values.length;
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value;
+        }
+        final double mean = sum / n;
+        double sumSq = 0.0;
+        for (double value : values) {
+            final double dev = value - mean;
+            sumSq += dev * dev;
+        }
+        final double var = sumSq / (n - 1);
+        if (DEBUG) {
+            System.out.println(descr + " : mean = " + mean + " (" + expectedMean
+                    + "), var = " + var + " (" + expectedVar + ")");
+        }
+        final double meanTol = MAX_MEAN_SE * Math.sqrt(expectedVar / n);
+        assertEquals(descr, expectedMean, mean, meanTol);
+        if (checkVar) {
+            assertEquals(descr, expectedVar, var, expectedVar * MAX_VAR_REL_ERR + 1e-15);
+        }
+    }
+    
+    /**
+     * Checks that the specified runnable throws IllegalArgumentException,
+     * with a message starting with the specified parameter name.
+     */
+    private static void checkIAE(String paramName, Runnable runnable) {
+        try {
+            runnable.run();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(paramName + " ["));
+        }
+    }
+    
+    /**
+     * @return Probability of k successes out of n trials of probability p.
+     */
+    private static double binomialProb(int n, double p, int k) {
+        if (p == 0.0) {
+            return (k == 0) ? 1.0 : 0.0;
+        }
+        if (p == 1.0) {
+            return (k == n) ? 1.0 : 0.0;
+        }
+        final double logBinomialCoeff =
+                PoissonSampler.logFactorial(n)
+                - PoissonSampler.logFactorial(k)
+                - PoissonSampler.logFactorial(n - k);
+        return Math.exp(logBinomialCoeff + k * Math.log(p) + (n - k) * Math.log(1.0 - p));
+    }
+    
+    /**
+     * Checks that the number of occurrences of the specified value
+     * is close to its expected number.
+     * 
+     * @param p Probability of value.
+     */
+    private static void checkFrequency(
+            String descr,
+            int[] values,
+            int value,
+            double p) {
+        int count = 0;
+        for (int v : values) {
+            if (v == value) {
+                count++;
+            }
+        }
+        final double expectedCount = p * values.length;
+        if (DEBUG) {
+            System.out.println(descr + " : count = " + count + " (" + expectedCount + ")");
+        }
+        // +1 for values of tiny probability.
+        final double tol = MAX_MEAN_SE * Math.sqrt(expectedCount * (1.0 - p)) + 1.0;
+        assertEquals(descr, expectedCount, count, tol);
+    }
+    
+    /**
+     * Checks that bulk method is equivalent to successive scalar calls,
+     * and that it checks its range.
+     */
+    private static void checkBulk(MyDoubleSource source) {
+        final int n = 100;
+        final AbstractRNG rng1 = new MXSLongSeqRNG(SEED);
+        final AbstractRNG rng2 = new MXSLongSeqRNG(SEED);
+        final double[] expected = new double[n + 2];
+        final double[] actual = new double[n + 2];
+        for (int i=0;i<n;i++) {
+            expected[1+i] = source.next(rng1);
+        }
+        source.next(rng2, actual, 1, n);
+        for (int i=0;i<expected.length;i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+        // Same uniform randomness used.
+        assertEquals(rng1.nextLong(), rng2.nextLong());
+        
+        try {
+            source.next(rng1, new double[n], 1, n);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // ok
+        }
+        try {
+            source.next(rng1, new double[n], 0, -1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Checks that bulk method is equivalent to successive scalar calls,
+     * and that it checks its range.
+     */
+    private static void checkBulk(final MyIntSource source) {
+        checkBulk(new MyIntVectorSource() {
+            //@Override
+            public int getDimension() {
+                return 1;
+            }
+            //@Override
+            public void next(AbstractRNG rng, int[] dst, int off) {
+                dst[off] = source.next(rng);
+            }
+            //@Override
+            public void next(AbstractRNG rng, int[] dst, int off, int nbrOfVectors) {
+                source.next(rng, dst, off, nbrOfVectors);
+            }
+        });
+    }
+
+    /**
+     * Checks that bulk method is equivalent to successive single-vector
+     * calls, and that it checks its range.
+     */
+    private static void checkBulk(MyIntVectorSource source) {
+        final int n = 100;
+        final int k = source.getDimension();
+        final AbstractRNG rng1 = new MXSLongSeqRNG(SEED);
+        final AbstractRNG rng2 = new MXSLongSeqRNG(SEED);
+        final int[] expected = new int[2 + n * k];
+        final int[] actual = new int[2 + n * k];
+        for (int i=0;i<n;i++) {
+            source.next(rng1, expected, 1 + i * k);
+        }
+        source.next(rng2, actual, 1, n);
+        for (int i=0;i<expected.length;i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+        // Same uniform randomness used.
+        assertEquals(rng1.nextLong(), rng2.nextLong());
+        
+        try {
+            source.next(rng1, new int[n * k], 1, n);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // ok
+        }
+        try {
+            source.next(rng1, new int[n * k], 0, -1);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // ok
+        }
+    }
+}
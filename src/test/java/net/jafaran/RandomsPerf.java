@@ -282,6 +282,111 @@ public class RandomsPerf {
         }
     }
 
+    private static class MyUser_nextExponential implements MyInterfaceUser {
+        //@Override
+        public String methodSignature() {
+            return "nextExponential()";
+        }
+        //@Override
+        public void use(Random random, int nbrOfCalls) {
+            final AbstractRNG rng = (AbstractRNG)random;
+            double dummy = 0.0;
+            for (int i=0;i<nbrOfCalls;i++) {
+                dummy += rng.nextExponential();
+            }
+            if (dummy == 0.0) {
+                System.out.println("rare");
+            }
+        }
+    }
+
+    private static class MyUser_GammaSampler_next implements MyInterfaceUser {
+        private final GammaSampler sampler = new GammaSampler(2.5);
+        //@Override
+        public String methodSignature() {
+            return "GammaSampler(2.5).next(AbstractRNG)";
+        }
+        //@Override
+        public void use(Random random, int nbrOfCalls) {
+            final AbstractRNG rng = (AbstractRNG)random;
+            final GammaSampler sampler = this.sampler;
+            double dummy = 0.0;
+            for (int i=0;i<nbrOfCalls;i++) {
+                dummy += sampler.next(rng);
+            }
+            if (dummy == 0.0) {
+                System.out.println("rare");
+            }
+        }
+    }
+
+    private static class MyUser_PoissonSampler_next implements MyInterfaceUser {
+        private final PoissonSampler sampler = new PoissonSampler(1000.0);
+        //@Override
+        public String methodSignature() {
+            return "PoissonSampler(1000).next(AbstractRNG)";
+        }
+        //@Override
+        public void use(Random random, int nbrOfCalls) {
+            final AbstractRNG rng = (AbstractRNG)random;
+            final PoissonSampler sampler = this.sampler;
+            int dummy = 0;
+            for (int i=0;i<nbrOfCalls;i++) {
+                dummy += sampler.next(rng);
+            }
+            if (dummy == 0) {
+                System.out.println("rare");
+            }
+        }
+    }
+
+    private static class MyUser_BinomialSampler_next implements MyInterfaceUser {
+        private final BinomialSampler sampler = new BinomialSampler(1000 * 1000, 0.3);
+        //@Override
+        public String methodSignature() {
+            return "BinomialSampler(10^6,0.3).next(AbstractRNG)";
+        }
+        //@Override
+        public void use(Random random, int nbrOfCalls) {
+            final AbstractRNG rng = (AbstractRNG)random;
+            final BinomialSampler sampler = this.sampler;
+            int dummy = 0;
+            for (int i=0;i<nbrOfCalls;i++) {
+                dummy += sampler.next(rng);
+            }
+            if (dummy == 0) {
+                System.out.println("rare");
+            }
+        }
+    }
+
+    private static class MyUser_AliasTable_next implements MyInterfaceUser {
+        private final AliasTable table;
+        public MyUser_AliasTable_next() {
+            final double[] weights = new double[1000 * 1000];
+            for (int i=0;i<weights.length;i++) {
+                weights[i] = 1 + (i % 100);
+            }
+            this.table = new AliasTable(weights);
+        }
+        //@Override
+        public String methodSignature() {
+            return "AliasTable(10^6 weights).next(AbstractRNG)";
+        }
+        //@Override
+        public void use(Random random, int nbrOfCalls) {
+            final AbstractRNG rng = (AbstractRNG)random;
+            final AliasTable table = this.table;
+            int dummy = 0;
+            for (int i=0;i<nbrOfCalls;i++) {
+                dummy += table.next(rng);
+            }
+            if (dummy == 0) {
+                System.out.println("rare");
+            }
+        }
+    }
+
     private static class MyUser_nextGaussianFast implements MyInterfaceUser {
         //@Override
         public String methodSignature() {
@@ -493,6 +598,48 @@ public class RandomsPerf {
                             bench(random, nbrOfThreads, new MyUser_nextGaussianFast());
                         }
                     }
+
+                    System.out.println();
+                    for (Random random : newRandoms(sequentialAllowed)) {
+                        if(handlePill(random))continue;
+                        if (random instanceof AbstractRNG) {
+                            bench(random, nbrOfThreads, new MyUser_nextExponential());
+                        }
+                    }
+
+                    System.out.println();
+                    for (Random random : newRandoms(sequentialAllowed)) {
+                        if(handlePill(random))continue;
+                        if (random instanceof AbstractRNG) {
+                            bench(random, nbrOfThreads, new MyUser_GammaSampler_next(), ((nbrOfThreads > 1) ? LOOP_DIVISOR_FOR_CONC_GAUSSIAN : 1));
+                        }
+                    }
+
+                    System.out.println();
+                    for (Random random : newRandoms(sequentialAllowed)) {
+                        if(handlePill(random))continue;
+                        if (random instanceof AbstractRNG) {
+                            bench(random, nbrOfThreads, new MyUser_PoissonSampler_next(), ((nbrOfThreads > 1) ? LOOP_DIVISOR_FOR_CONC_GAUSSIAN : 1));
+                        }
+                    }
+
+                    System.out.println();
+                    for (Random random : newRandoms(sequentialAllowed)) {
+                        if(handlePill(random))continue;
+                        // Not thread-safe.
+                        if ((nbrOfThreads == 1) && (random instanceof AbstractRNG)) {
+                            bench(random, nbrOfThreads, new MyUser_BinomialSampler_next());
+                        }
+                    }
+
+                    System.out.println();
+                    final MyUser_AliasTable_next aliasTableUser = new MyUser_AliasTable_next();
+                    for (Random random : newRandoms(sequentialAllowed)) {
+                        if(handlePill(random))continue;
+                        if (random instanceof AbstractRNG) {
+                            bench(random, nbrOfThreads, aliasTableUser);
+                        }
+                    }
                 }
             }
         }
@@ -559,14 +706,32 @@ public class RandomsPerf {
         ArrayList<Random> result = new ArrayList<Random>();
         result.add(new Random());
         result.add(new RandomConcRNG());
+        result.add(new RandomConcRNG(RandomUtilz.longPseudoEntropy(), BackoffPolicy.EXPONENTIAL, false));
+        result.add(new RandomWaitFreeConcRNG());
+        result.add(new CounterConcRNG());
         result.add(new MTConcRNG());
+        result.add(new MTConcRNG(RandomUtilz.longPseudoEntropy(), 64));
+        result.add(new MTConcRNG(RandomUtilz.longPseudoEntropy(), 1, false, BackoffPolicy.EXPONENTIAL, false));
         result.add(new MTSyncRNG());
+        result.add(new CombiningSyncRNG(new MTSeqRNG()));
+        result.add(new MT64ConcRNG());
+        result.add(new SFMTConcRNG());
+        result.add(new SFMTSyncRNG());
+        result.add(new StripedConcRNG());
+        result.add(new PrefetchConcRNG());
         if (sequentialAllowed) {
             result.add(SEQ_PILL);
             // TODO Java7 result.add(ThreadLocalRandom.current());
             result.add(new MTSeqRNG());
+            result.add(new MT64SeqRNG());
+            result.add(new SFMTSeqRNG());
+            result.add(new DSFMTSeqRNG());
             result.add(new MXSIntSeqRNG());
             result.add(new MXSLongSeqRNG());
+            result.add(new Xoshiro256StarStarSeqRNG());
+            result.add(new Xoroshiro128PlusPlusSeqRNG());
+            result.add(new PCG64SeqRNG());
+            result.add(new SplittableSeqRNG());
         }
         return result;
     }
@@ -15,11 +15,24 @@
  */
 package net.jafaran;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 
@@ -87,6 +100,19 @@ public class RandomsTest extends TestCase {
         public Random newRandom(Void dummy);
     }
 
+    /**
+     * To test bulk methods against successive calls to their scalar
+     * counterpart, using longs to hold values of any primitive type.
+     */
+    private interface MyInterfaceBulkUser {
+        /**
+         * Must use a bulk method, which must throw if the specified range
+         * is invalid.
+         */
+        public void nextValues(AbstractRNG rng, long[] dst, int off, int len);
+        public long nextValue(AbstractRNG rng);
+    }
+
     //--------------------------------------------------------------------------
     // MEMBERS
     //--------------------------------------------------------------------------
@@ -744,6 +770,334 @@ public class RandomsTest extends TestCase {
         }
     }
 
+    /*
+     * bulk
+     */
+    
+    public void test_nextInts_intArray_2int() {
+        this.test_bulkMethod(new MyInterfaceBulkUser() {
+            public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                final int[] tmp = ((dst == null) ? null : new int[dst.length]);
+                rng.nextInts(tmp, off, len);
+                for (int i=off;i<off+len;i++) {
+                    dst[i] = tmp[i];
+                }
+            }
+            public long nextValue(AbstractRNG rng) {
+                return rng.nextInt();
+            }
+        });
+    }
+
+    public void test_nextInts_intArray_3int() {
+        for (final int n : new int[]{1,7,(1<<20),Integer.MAX_VALUE}) {
+            this.test_bulkMethod(new MyInterfaceBulkUser() {
+                public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                    final int[] tmp = ((dst == null) ? null : new int[dst.length]);
+                    rng.nextInts(tmp, off, len, n);
+                    for (int i=off;i<off+len;i++) {
+                        dst[i] = tmp[i];
+                    }
+                }
+                public long nextValue(AbstractRNG rng) {
+                    return rng.nextInt(n);
+                }
+            });
+        }
+        
+        for (MyInterfaceRandomFactory factory : newFactories(true)) {
+            final Random random = factory.newRandom(SEED);
+            if (!(random instanceof AbstractRNG)) {
+                // Irrelevant.
+                continue;
+            }
+            final AbstractRNG rng = (AbstractRNG)random;
+            for (int n : new int[]{Integer.MIN_VALUE,-1,0}) {
+                try {
+                    rng.nextInts(new int[1], 0, 1, n);
+                    assertTrue(false);
+                } catch (IllegalArgumentException e) {
+                    // ok
+                }
+            }
+        }
+    }
+
+    public void test_nextLongs_longArray_2int() {
+        this.test_bulkMethod(new MyInterfaceBulkUser() {
+            public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                rng.nextLongs(dst, off, len);
+            }
+            public long nextValue(AbstractRNG rng) {
+                return rng.nextLong();
+            }
+        });
+    }
+
+    public void test_nextLongs_longArray_2int_long() {
+        for (final long n : new long[]{1L,7L,Integer.MAX_VALUE+8L,Long.MAX_VALUE}) {
+            this.test_bulkMethod(new MyInterfaceBulkUser() {
+                public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                    rng.nextLongs(dst, off, len, n);
+                }
+                public long nextValue(AbstractRNG rng) {
+                    return rng.nextLong(n);
+                }
+            });
+        }
+        
+        for (MyInterfaceRandomFactory factory : newFactories(true)) {
+            final Random random = factory.newRandom(SEED);
+            if (!(random instanceof AbstractRNG)) {
+                // Irrelevant.
+                continue;
+            }
+            final AbstractRNG rng = (AbstractRNG)random;
+            for (long n : new long[]{Long.MIN_VALUE,-1L,0L}) {
+                try {
+                    rng.nextLongs(new long[1], 0, 1, n);
+                    assertTrue(false);
+                } catch (IllegalArgumentException e) {
+                    // ok
+                }
+            }
+        }
+    }
+    
+    public void test_nextFloats_floatArray_2int() {
+        this.test_bulkMethod(new MyInterfaceBulkUser() {
+            public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                final float[] tmp = ((dst == null) ? null : new float[dst.length]);
+                rng.nextFloats(tmp, off, len);
+                for (int i=off;i<off+len;i++) {
+                    dst[i] = Float.floatToRawIntBits(tmp[i]);
+                }
+            }
+            public long nextValue(AbstractRNG rng) {
+                return Float.floatToRawIntBits(rng.nextFloat());
+            }
+        });
+    }
+
+    public void test_nextFloats_FloatBuffer() {
+        for (final boolean direct : new boolean[]{false,true}) {
+            this.test_bulkMethod(new MyInterfaceBulkUser() {
+                public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                    final FloatBuffer tmp = newFloatBuffer(direct, dst, off, len);
+                    rng.nextFloats(tmp);
+                    assertEquals(off + len, tmp.position());
+                    for (int i=off;i<off+len;i++) {
+                        dst[i] = Float.floatToRawIntBits(tmp.get(i));
+                    }
+                }
+                public long nextValue(AbstractRNG rng) {
+                    return Float.floatToRawIntBits(rng.nextFloat());
+                }
+            });
+        }
+        
+        for (AbstractRNG rng : newAbstractRNGs()) {
+            try {
+                rng.nextFloats(FloatBuffer.allocate(1).asReadOnlyBuffer());
+                assertTrue(false);
+            } catch (ReadOnlyBufferException e) {
+                // ok
+            }
+        }
+    }
+
+    public void test_nextDoubles_doubleArray_2int() {
+        this.test_bulkMethod(new MyInterfaceBulkUser() {
+            public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                final double[] tmp = ((dst == null) ? null : new double[dst.length]);
+                rng.nextDoubles(tmp, off, len);
+                for (int i=off;i<off+len;i++) {
+                    dst[i] = Double.doubleToRawLongBits(tmp[i]);
+                }
+            }
+            public long nextValue(AbstractRNG rng) {
+                return Double.doubleToRawLongBits(rng.nextDouble());
+            }
+        });
+    }
+
+    public void test_nextDoubles_DoubleBuffer() {
+        for (final boolean direct : new boolean[]{false,true}) {
+            this.test_bulkMethod(new MyInterfaceBulkUser() {
+                public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                    final DoubleBuffer tmp = newDoubleBuffer(direct, dst, off, len);
+                    rng.nextDoubles(tmp);
+                    assertEquals(off + len, tmp.position());
+                    for (int i=off;i<off+len;i++) {
+                        dst[i] = Double.doubleToRawLongBits(tmp.get(i));
+                    }
+                }
+                public long nextValue(AbstractRNG rng) {
+                    return Double.doubleToRawLongBits(rng.nextDouble());
+                }
+            });
+        }
+        
+        for (AbstractRNG rng : newAbstractRNGs()) {
+            try {
+                rng.nextDoubles(DoubleBuffer.allocate(1).asReadOnlyBuffer());
+                assertTrue(false);
+            } catch (ReadOnlyBufferException e) {
+                // ok
+            }
+        }
+    }
+    
+    public void test_nextBytes_byteArray_2int() {
+        for (MyInterfaceRandomFactory factory : newFactories(true)) {
+            final Random random = factory.newRandom(SEED);
+            if (!(random instanceof AbstractRNG)) {
+                // Irrelevant.
+                continue;
+            }
+            final AbstractRNG rng = (AbstractRNG)random;
+            
+            try {
+                rng.nextBytes(null, 0, 0);
+                assertTrue(false);
+            } catch (NullPointerException e) {
+                // ok
+            }
+            for (int[] offLen : new int[][]{{-1,1},{0,-1},{0,4},{3,2},{4,1},{1,Integer.MAX_VALUE}}) {
+                try {
+                    rng.nextBytes(new byte[3], offLen[0], offLen[1]);
+                    assertTrue(false);
+                } catch (IndexOutOfBoundsException e) {
+                    // ok
+                }
+            }
+            
+            /*
+             * Bytes must be those of nextLong(), LSByte first.
+             */
+            
+            final AbstractRNG ref = (AbstractRNG)factory.newRandom(SEED);
+            final AbstractRNG res = rng;
+            for (int len : new int[]{0,1,7,8,9,16,4*MTUtils.N+5,1000}) {
+                final int off = 3;
+                final byte[] dst = new byte[off + len + 2];
+                res.nextBytes(dst, off, len);
+                long bits = 0;
+                for (int i=0;i<len;i++) {
+                    if ((i & 7) == 0) {
+                        bits = ref.nextLong();
+                    }
+                    assertEquals((byte)(bits>>(8*(i & 7))), dst[off + i]);
+                }
+                assertEquals(0, dst[off-1]);
+                assertEquals(0, dst[off+len]);
+            }
+            
+            /*
+             * Other methods must compute the same bytes.
+             */
+            
+            for (int len : new int[]{0,1,7,8,9,16,4*MTUtils.N+5,1000}) {
+                final byte[] expected = new byte[len];
+                ref.nextBytes(expected, 0, len);
+                
+                final byte[] actual = new byte[len];
+                res.nextBytes(actual);
+                assertTrue(Arrays.equals(expected, actual));
+                
+                for (ByteBuffer bb : new ByteBuffer[]{
+                        ByteBuffer.allocate(len),
+                        ByteBuffer.allocateDirect(len),
+                        ByteBuffer.allocateDirect(len).order(ByteOrder.LITTLE_ENDIAN)}) {
+                    ref.nextBytes(expected, 0, len);
+                    res.nextBytes(bb);
+                    assertEquals(len, bb.position());
+                    bb.flip();
+                    bb.get(actual);
+                    assertTrue(Arrays.equals(expected, actual));
+                }
+            }
+            
+            try {
+                res.nextBytes(ByteBuffer.allocate(1).asReadOnlyBuffer());
+                assertTrue(false);
+            } catch (ReadOnlyBufferException e) {
+                // ok
+            }
+        }
+    }
+    
+    /**
+     * Tests that the bulk method gives same results than successive calls
+     * to its scalar counterpart, for ranges around Mersenne-Twister state
+     * length, and that it doesn't write out of the specified range.
+     */
+    public void test_bulkMethod(MyInterfaceBulkUser user) {
+        for (MyInterfaceRandomFactory factory : newFactories(true)) {
+            final Random random = factory.newRandom(SEED);
+            if (!(random instanceof AbstractRNG)) {
+                // Irrelevant.
+                continue;
+            }
+            final AbstractRNG rng = (AbstractRNG)random;
+            
+            /*
+             * Exceptions.
+             */
+            
+            try {
+                user.nextValues(rng, null, 0, 0);
+                assertTrue(false);
+            } catch (NullPointerException e) {
+                // ok
+            }
+            for (int[] offLen : new int[][]{{-1,1},{0,-1},{0,4},{3,2},{4,1},{1,Integer.MAX_VALUE}}) {
+                try {
+                    user.nextValues(rng, new long[3], offLen[0], offLen[1]);
+                    assertTrue(false);
+                } catch (IndexOutOfBoundsException e) {
+                    // ok
+                }
+            }
+            
+            /*
+             * Consistency with scalar method.
+             */
+            
+            final AbstractRNG ref = (AbstractRNG)factory.newRandom(SEED);
+            final AbstractRNG res = rng;
+            // Might cause stored bits.
+            ref.nextBit();
+            res.nextBit();
+            final int n = MTUtils.N;
+            for (int len : new int[]{0,1,2,3,n-1,n,n+1,2*n+3,1000}) {
+                final int off = 3;
+                final long[] dst = new long[off + len + 2];
+                final long pad = 0x0123456789ABCDEFL;
+                Arrays.fill(dst, pad);
+                user.nextValues(res, dst, off, len);
+                for (int i=0;i<dst.length;i++) {
+                    if ((i < off) || (i >= off + len)) {
+                        assertEquals(pad, dst[i]);
+                    } else {
+                        final long expected = user.nextValue(ref);
+                        if (expected != dst[i]) {
+                            System.out.println("rng = "+res);
+                            System.out.println("len = "+len);
+                            System.out.println("i = "+i);
+                            assertEquals(expected, dst[i]);
+                        }
+                    }
+                }
+            }
+            // Checking states are still in sync.
+            for (int i=0;i<100;i++) {
+                assertEquals(ref.nextBit(), res.nextBit());
+                assertEquals(ref.nextInt(), res.nextInt());
+            }
+        }
+    }
+
     /*
      * gaussian
      */
@@ -788,6 +1142,25 @@ public class RandomsTest extends TestCase {
         }
     }
     
+    /*
+     * exponential
+     */
+    
+    public void test_nextExponentials_doubleArray_2int() {
+        this.test_bulkMethod(new MyInterfaceBulkUser() {
+            public void nextValues(AbstractRNG rng, long[] dst, int off, int len) {
+                final double[] tmp = ((dst == null) ? null : new double[dst.length]);
+                rng.nextExponentials(tmp, off, len);
+                for (int i=off;i<off+len;i++) {
+                    dst[i] = Double.doubleToRawLongBits(tmp[i]);
+                }
+            }
+            public long nextValue(AbstractRNG rng) {
+                return Double.doubleToRawLongBits(rng.nextExponential());
+            }
+        });
+    }
+    
     /*
      * state get/set
      */
@@ -855,12 +1228,204 @@ public class RandomsTest extends TestCase {
      * Tests that int and long output are same as Random.
      */
     public void test_RandomRNG_int_long_output() {
-        Random ref = new Random(SEED);
-        Random res = new RandomConcRNG(SEED);
-        for (int i=0;i<1000;i++) {
-            assertEquals(ref.nextInt(), res.nextInt());
-            assertEquals(ref.nextLong(), res.nextLong());
+        for (Random res : new Random[]{
+                new RandomConcRNG(SEED),
+                new RandomWaitFreeConcRNG(SEED)}) {
+            Random ref = new Random(SEED);
+            for (int i=0;i<1000;i++) {
+                assertEquals(ref.nextInt(), res.nextInt());
+                assertEquals(ref.nextLong(), res.nextLong());
+                assertEquals(ref.nextBoolean(), res.nextBoolean());
+            }
+        }
+    }
+
+    /**
+     * Tests RandomWaitFreeConcRNG bulk methods, state compatibility with
+     * RandomConcRNG (also after many steps), and that values generated
+     * concurrently are exactly the first ones of Random's sequence.
+     */
+    public void test_RandomWaitFreeConcRNG() {
+        {
+            final Random ref = new Random(SEED);
+            final RandomWaitFreeConcRNG res = new RandomWaitFreeConcRNG(SEED);
+            final Random lenRandom = new Random(SEED);
+            for (int k=0;k<100;k++) {
+                final int len = lenRandom.nextInt(100);
+                final int[] ints = new int[len];
+                res.nextInts(ints, 0, len);
+                for (int i=0;i<len;i++) {
+                    assertEquals(ref.nextInt(), ints[i]);
+                }
+                final long[] longs = new long[len];
+                res.nextLongs(longs, 0, len);
+                for (int i=0;i<len;i++) {
+                    assertEquals(ref.nextLong(), longs[i]);
+                }
+            }
+        }
+        
+        {
+            final RandomConcRNG ref = new RandomConcRNG(SEED);
+            final RandomWaitFreeConcRNG res = new RandomWaitFreeConcRNG(SEED);
+            // Large enough for all digits of the step to be used.
+            final int[] tmp = new int[1000*1000];
+            for (int k=0;k<3;k++) {
+                ref.nextInts(tmp, 0, tmp.length);
+                res.nextInts(tmp, 0, tmp.length);
+                assertTrue(Arrays.equals(ref.getState(), res.getState()));
+                assertEquals(ref.nextLong(), res.nextLong());
+            }
+            final byte[] state = ref.getState();
+            final RandomWaitFreeConcRNG res2 = new RandomWaitFreeConcRNG();
+            res2.setState(state);
+            assertTrue(Arrays.equals(state, res2.getState()));
+            for (int i=0;i<1000;i++) {
+                assertEquals(ref.nextInt(), res2.nextInt());
+            }
+        }
+        
+        final int nbrOfThreads = 4;
+        final int nbrOfIntsPerThread = 100*1000;
+        
+        final RandomWaitFreeConcRNG random = new RandomWaitFreeConcRNG(SEED);
+        
+        final int[][] resByThreadIndex = new int[nbrOfThreads][nbrOfIntsPerThread];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final int[] threadRes = resByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    final Random opRandom = new Random();
+                    int i = 0;
+                    while (i < nbrOfIntsPerThread) {
+                        final int op = opRandom.nextInt(3);
+                        if ((op == 0) || (i == nbrOfIntsPerThread-1)) {
+                            threadRes[i++] = random.nextInt();
+                        } else if (op == 1) {
+                            // nextLong() adds the second int (signed)
+                            // to the first one shifted.
+                            final long bits = random.nextLong();
+                            final int lo = (int)bits;
+                            threadRes[i++] = (int)((bits - lo)>>>32);
+                            threadRes[i++] = lo;
+                        } else {
+                            final int len = Math.min(opRandom.nextInt(100), nbrOfIntsPerThread - i);
+                            random.nextInts(threadRes, i, len);
+                            i += len;
+                        }
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        final int nbrOfInts = nbrOfThreads * nbrOfIntsPerThread;
+        final int[] refs = new int[nbrOfInts];
+        final Random ref = new Random(SEED);
+        for (int i=0;i<nbrOfInts;i++) {
+            refs[i] = ref.nextInt();
+        }
+        final int[] ress = new int[nbrOfInts];
+        for (int n=0;n<nbrOfThreads;n++) {
+            System.arraycopy(resByThreadIndex[n], 0, ress, n * nbrOfIntsPerThread, nbrOfIntsPerThread);
+        }
+        Arrays.sort(refs);
+        Arrays.sort(ress);
+        assertTrue(Arrays.equals(refs, ress));
+    }
+    
+    /**
+     * Tests CounterConcRNG against Philox4x32-10 known answer, bulk methods
+     * against scalar ones, indexes, and that values generated concurrently
+     * are exactly the first ones of the sequence.
+     */
+    public void test_CounterConcRNG() {
+        /*
+         * Known answer from Random123 (kat_vectors), for zero counter and key:
+         * 6627e8d5 e169c58d bc57ac4c 9b00dbd8.
+         */
+        {
+            final long[] tmp = new long[1];
+            assertEquals(0xE169C58D6627E8D5L, CounterConcRNG.philox(0L, 0L, false, tmp, 0));
+            assertEquals(0x9B00DBD8BC57AC4CL, tmp[0]);
+            assertEquals(0x9B00DBD8BC57AC4CL, CounterConcRNG.philox(0L, 0L, true, null, 0));
+            final int[] ints = new int[3];
+            CounterConcRNG.philox(0L, 0L, ints, 1);
+            assertEquals(0, ints[0]);
+            assertEquals(0x6627E8D5, ints[1]);
+            assertEquals(0xBC57AC4C, ints[2]);
+            
+            final CounterConcRNG random = new CounterConcRNG(0L);
+            assertEquals(0xE169C58D6627E8D5L, random.nextLong());
+            assertEquals(0x9B00DBD8BC57AC4CL, random.nextLong());
+            assertEquals(2L, random.getIndex());
+            random.setIndex(1L);
+            assertEquals(0x9B00DBD8BC57AC4CL, random.nextLong());
+            random.setIndex(0L);
+            assertEquals(0x6627E8D5, random.nextInt());
+        }
+        
+        {
+            final CounterConcRNG ref = new CounterConcRNG(SEED);
+            final CounterConcRNG res = new CounterConcRNG(SEED);
+            final Random lenRandom = new Random(SEED);
+            for (int k=0;k<100;k++) {
+                // Random lengths, for ranges to start and end
+                // at both halves of blocks.
+                final int len = lenRandom.nextInt(100);
+                final int[] ints = new int[len];
+                res.nextInts(ints, 0, len);
+                for (int i=0;i<len;i++) {
+                    assertEquals(ref.nextInt(), ints[i]);
+                }
+                final long[] longs = new long[len];
+                res.nextLongs(longs, 0, len);
+                for (int i=0;i<len;i++) {
+                    assertEquals(ref.nextLong(), longs[i]);
+                }
+            }
+        }
+        
+        final int nbrOfThreads = 4;
+        final int nbrOfLongsPerThread = 100*1000;
+        
+        final CounterConcRNG random = new CounterConcRNG(SEED);
+        
+        final long[][] resByThreadIndex = new long[nbrOfThreads][nbrOfLongsPerThread];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final long[] threadRes = resByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    final Random opRandom = new Random();
+                    int i = 0;
+                    while (i < nbrOfLongsPerThread) {
+                        if (opRandom.nextBoolean()) {
+                            threadRes[i++] = random.nextLong();
+                        } else {
+                            final int len = Math.min(opRandom.nextInt(100), nbrOfLongsPerThread - i);
+                            random.nextLongs(threadRes, i, len);
+                            i += len;
+                        }
+                    }
+                }
+            });
         }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        final int nbrOfLongs = nbrOfThreads * nbrOfLongsPerThread;
+        final long[] refs = new long[nbrOfLongs];
+        new CounterConcRNG(SEED).nextLongs(refs, 0, nbrOfLongs);
+        final long[] ress = new long[nbrOfLongs];
+        for (int n=0;n<nbrOfThreads;n++) {
+            System.arraycopy(resByThreadIndex[n], 0, ress, n * nbrOfLongsPerThread, nbrOfLongsPerThread);
+        }
+        Arrays.sort(refs);
+        Arrays.sort(ress);
+        assertTrue(Arrays.equals(refs, ress));
     }
 
     public void test_RandomRNGAdapter_Random() {
@@ -1156,9 +1721,1341 @@ public class RandomsTest extends TestCase {
         }
     }
 
-    public void test_MTSeqRNG_split() {
-        MTSeqRNG random1 = new MTSeqRNG(SEED);
-        MTSeqRNG random2 = random1.split();
+    /**
+     * Tests that MTConcRNG, in block mode or not, computing next state ahead
+     * or not, used by a single thread, gives the same outputs than MTSeqRNG,
+     * for scalar and bulk methods.
+     */
+    public void test_MTConcRNG_bulk_blocks_sequential() {
+        for (int blockSize : new int[]{1,7,1000}) {
+            for (boolean twistAhead : new boolean[]{false,true}) {
+                final MTSeqRNG seq = new MTSeqRNG(SEED);
+                final MTConcRNG conc = new MTConcRNG(SEED, blockSize, twistAhead);
+                final Random opRandom = new Random(SEED);
+                for (int k=0;k<1000;k++) {
+                    final int len = opRandom.nextInt(1000);
+                    final int off = opRandom.nextInt(3);
+                    switch (opRandom.nextInt(9)) {
+                    case 0: assertEquals(seq.nextBit(), conc.nextBit()); break;
+                    case 1: assertEquals(seq.nextInt(), conc.nextInt()); break;
+                    case 2: assertEquals(seq.nextLong(), conc.nextLong()); break;
+                    case 3: assertEquals(seq.nextGaussian(), conc.nextGaussian()); break;
+                    case 4: {
+                        final int[] ref = new int[off+len];
+                        final int[] res = new int[off+len];
+                        seq.nextInts(ref, off, len);
+                        conc.nextInts(res, off, len);
+                        assertTrue(Arrays.equals(ref, res));
+                    } break;
+                    case 5: {
+                        final long[] ref = new long[off+len];
+                        final long[] res = new long[off+len];
+                        seq.nextLongs(ref, off, len);
+                        conc.nextLongs(res, off, len);
+                        assertTrue(Arrays.equals(ref, res));
+                    } break;
+                    case 6: {
+                        final float[] ref = new float[off+len];
+                        final float[] res = new float[off+len];
+                        seq.nextFloats(ref, off, len);
+                        conc.nextFloats(res, off, len);
+                        assertTrue(Arrays.equals(ref, res));
+                    } break;
+                    case 7: {
+                        final double[] ref = new double[off+len];
+                        final double[] res = new double[off+len];
+                        seq.nextDoubles(ref, off, len);
+                        conc.nextDoubles(res, off, len);
+                        assertTrue(Arrays.equals(ref, res));
+                    } break;
+                    case 8: {
+                        final byte[] ref = new byte[off+len];
+                        final byte[] res = new byte[off+len];
+                        seq.nextBytes(ref, off, len);
+                        conc.nextBytes(res, off, len);
+                        assertTrue(Arrays.equals(ref, res));
+                    } break;
+                    default:
+                        throw new AssertionError();
+                    }
+                }
+            }
+        }
+        
+        try {
+            new MTConcRNG(SEED, 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Tests that, in block mode, longs generated concurrently are among
+     * the first ones of the sequence (the ones reserved but not used
+     * being skipped), and are not generated twice.
+     */
+    public void test_MTConcRNG_blocks_concurrent() {
+        final int nbrOfThreads = 4;
+        final int nbrOfCallsPerThread = 100*1000;
+        final int blockSize = 64;
+        
+        final MTConcRNG conc = new MTConcRNG(SEED, blockSize);
+        
+        final long[][] resByThreadIndex = new long[nbrOfThreads][nbrOfCallsPerThread];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final long[] threadRes = resByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    final Random lenRandom = new Random();
+                    int i = 0;
+                    while (i < nbrOfCallsPerThread) {
+                        if (lenRandom.nextBoolean()) {
+                            threadRes[i++] = conc.nextLong();
+                        } else {
+                            // Even number of words, as with nextLong(),
+                            // for longs to be made of the same words.
+                            final int len = Math.min(lenRandom.nextInt(100), nbrOfCallsPerThread - i);
+                            conc.nextLongs(threadRes, i, len);
+                            i += len;
+                        }
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        final int nbrOfRefs = nbrOfThreads * (nbrOfCallsPerThread + blockSize/2);
+        final long[] refs = new long[nbrOfRefs];
+        new MTSeqRNG(SEED).nextLongs(refs, 0, nbrOfRefs);
+        final HashSet<Long> refSet = new HashSet<Long>();
+        for (long ref : refs) {
+            refSet.add(ref);
+        }
+        
+        int nbrOfRes = 0;
+        for (long[] threadRes : resByThreadIndex) {
+            for (long res : threadRes) {
+                // Removing so that duplicates are detected.
+                assertTrue(refSet.remove(res));
+                nbrOfRes++;
+            }
+        }
+        assertEquals(nbrOfThreads * nbrOfCallsPerThread, nbrOfRes);
+    }
+
+    /**
+     * Tests that ints generated concurrently by MTConcRNG, across many state
+     * regenerations (and holders recyclings), computing next state ahead
+     * or not, are exactly the first ints of MTSeqRNG sequence.
+     */
+    public void test_MTConcRNG_regenerations_concurrent() {
+        for (boolean twistAhead : new boolean[]{false,true}) {
+            test_MTConcRNG_regenerations_concurrent(twistAhead);
+        }
+    }
+    
+    public void test_MTConcRNG_regenerations_concurrent(boolean twistAhead) {
+        final int nbrOfThreads = 4;
+        final int nbrOfIntsPerThread = 200*1000;
+        
+        final MTConcRNG conc = new MTConcRNG(SEED, 1, twistAhead);
+        
+        final int[][] resByThreadIndex = new int[nbrOfThreads][nbrOfIntsPerThread];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final int[] threadRes = resByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    final Random opRandom = new Random();
+                    int i = 0;
+                    while (i < nbrOfIntsPerThread) {
+                        final int op = opRandom.nextInt(3);
+                        if ((op == 0) || (i == nbrOfIntsPerThread-1)) {
+                            threadRes[i++] = conc.nextInt();
+                        } else if (op == 1) {
+                            // nextLong() adds the second int (signed)
+                            // to the first one shifted.
+                            final long bits = conc.nextLong();
+                            final int lo = (int)bits;
+                            threadRes[i++] = (int)((bits - lo)>>>32);
+                            threadRes[i++] = lo;
+                        } else {
+                            final int len = Math.min(opRandom.nextInt(1000), nbrOfIntsPerThread - i);
+                            conc.nextInts(threadRes, i, len);
+                            i += len;
+                        }
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        final int nbrOfInts = nbrOfThreads * nbrOfIntsPerThread;
+        final int[] refs = new int[nbrOfInts];
+        new MTSeqRNG(SEED).nextInts(refs, 0, nbrOfInts);
+        final int[] ress = new int[nbrOfInts];
+        for (int n=0;n<nbrOfThreads;n++) {
+            System.arraycopy(resByThreadIndex[n], 0, ress, n * nbrOfIntsPerThread, nbrOfIntsPerThread);
+        }
+        Arrays.sort(refs);
+        Arrays.sort(ress);
+        assertTrue(Arrays.equals(refs, ress));
+    }
+
+    public void test_MTConcRNG_twoInstances_concurrent() {
+        for (boolean twistAhead : new boolean[]{false,true}) {
+            test_MTConcRNG_twoInstances_concurrent(twistAhead);
+        }
+    }
+
+    /**
+     * Tests that state holders recycled by an instance don't end up being
+     * used by another instance (spare holders being per thread, threads
+     * using both instances could move a holder from one to the other, while
+     * threads with a stale reference to it would still use it), by checking
+     * that values generated concurrently with both instances are still
+     * exactly the first ones of their sequences.
+     */
+    public void test_MTConcRNG_twoInstances_concurrent(boolean twistAhead) {
+        final int nbrOfThreads = 16;
+        final int nbrOfIntsPerThread = 400*1000;
+        
+        final MTConcRNG[] concs = new MTConcRNG[]{
+                new MTConcRNG(SEED, 1, twistAhead),
+                new MTConcRNG(SEED + 1, 1, twistAhead)};
+        
+        // For each thread and instance, ints and their count.
+        final int[][][] resByThreadIndex = new int[nbrOfThreads][2][nbrOfIntsPerThread];
+        final int[][] countByThreadIndex = new int[nbrOfThreads][2];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final int[][] threadRes = resByThreadIndex[n];
+            final int[] threadCount = countByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    final Random opRandom = new Random();
+                    for (int i=0;i<nbrOfIntsPerThread;i++) {
+                        final int c = opRandom.nextInt(2);
+                        threadRes[c][threadCount[c]++] = concs[c].nextInt();
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        for (int c=0;c<2;c++) {
+            int nbrOfInts = 0;
+            for (int n=0;n<nbrOfThreads;n++) {
+                nbrOfInts += countByThreadIndex[n][c];
+            }
+            final int[] refs = new int[nbrOfInts];
+            new MTSeqRNG(SEED + c).nextInts(refs, 0, nbrOfInts);
+            final int[] ress = new int[nbrOfInts];
+            int off = 0;
+            for (int n=0;n<nbrOfThreads;n++) {
+                final int count = countByThreadIndex[n][c];
+                System.arraycopy(resByThreadIndex[n][c], 0, ress, off, count);
+                off += count;
+            }
+            Arrays.sort(refs);
+            Arrays.sort(ress);
+            assertTrue(Arrays.equals(refs, ress));
+        }
+    }
+
+    /**
+     * Tests that MTConcRNG state holders are not published more times than
+     * their generation can count (else it would wrap, and a thread having
+     * read words from a holder before its recycling could have its CAS
+     * succeed), and that output is still MTSeqRNG's after that many twists.
+     */
+    public void test_MTConcRNG_generationNoWrap() throws Exception {
+        final Field holderRefField = MTConcRNG.class.getDeclaredField("holderRef");
+        holderRefField.setAccessible(true);
+        final int maxNbrOfPublications = (1<<16);
+        final int nbrOfTwists = 3 * maxNbrOfPublications;
+        final int n = 624;
+        for (boolean twistAhead : new boolean[]{false,true}) {
+            final MTConcRNG conc = new MTConcRNG(SEED, 1, twistAhead);
+            final AtomicReference<?> holderRef = (AtomicReference<?>)holderRefField.get(conc);
+            final MTSeqRNG ref = new MTSeqRNG(SEED);
+            final int[] expected = new int[n];
+            final int[] actual = new int[n];
+            final IdentityHashMap<Object,int[]> countByHolder = new IdentityHashMap<Object,int[]>();
+            Object previousHolder = null;
+            for (int k=0;k<nbrOfTwists;k++) {
+                ref.nextInts(expected, 0, n);
+                conc.nextInts(actual, 0, n);
+                assertTrue(Arrays.equals(expected, actual));
+                final Object holder = holderRef.get();
+                if (holder != previousHolder) {
+                    int[] count = countByHolder.get(holder);
+                    if (count == null) {
+                        count = new int[1];
+                        countByHolder.put(holder, count);
+                    }
+                    assertTrue(++count[0] <= maxNbrOfPublications);
+                    previousHolder = holder;
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests backoff policies and contention stats of RandomConcRNG
+     * and MTConcRNG, and that values generated concurrently with them
+     * are still exactly the first ones of their sequences.
+     */
+    public void test_ConcRNGs_backoffPolicies_stats() {
+        assertNull(new RandomConcRNG(SEED).getContentionStats());
+        assertNull(new MTConcRNG(SEED).getContentionStats());
+        assertEquals(BackoffPolicy.NONE, new RandomConcRNG(SEED).getBackoffPolicy());
+        assertEquals(BackoffPolicy.NONE, new MTConcRNG(SEED).getBackoffPolicy());
+        try {
+            new RandomConcRNG(SEED, null, true);
+            assertTrue(false);
+        } catch (NullPointerException e) {
+            // ok
+        }
+        try {
+            new MTConcRNG(SEED, 1, false, null, true);
+            assertTrue(false);
+        } catch (NullPointerException e) {
+            // ok
+        }
+        
+        final int nbrOfThreads = 4;
+        final int nbrOfIntsPerThread = 50*1000;
+        final int nbrOfInts = nbrOfThreads * nbrOfIntsPerThread;
+        for (BackoffPolicy backoffPolicy : BackoffPolicy.values()) {
+            for (boolean mt : new boolean[]{false,true}) {
+                final AbstractRNG random;
+                if (mt) {
+                    random = new MTConcRNG(SEED, 1, false, backoffPolicy, true);
+                    assertEquals(backoffPolicy, ((MTConcRNG)random).getBackoffPolicy());
+                } else {
+                    random = new RandomConcRNG(SEED, backoffPolicy, true);
+                    assertEquals(backoffPolicy, ((RandomConcRNG)random).getBackoffPolicy());
+                }
+                
+                final int[][] resByThreadIndex = new int[nbrOfThreads][nbrOfIntsPerThread];
+                final ExecutorService executor = Executors.newCachedThreadPool();
+                for (int n=0;n<nbrOfThreads;n++) {
+                    final int[] threadRes = resByThreadIndex[n];
+                    executor.execute(new Runnable() {
+                        //@Override
+                        public void run() {
+                            for (int i=0;i<nbrOfIntsPerThread;i++) {
+                                threadRes[i] = random.nextInt();
+                            }
+                        }
+                    });
+                }
+                TestUtils.shutdownAndAwaitTermination(executor);
+                
+                final int[] refs = new int[nbrOfInts];
+                final AbstractRNG ref = (mt ? new MTSeqRNG(SEED) : new RandomConcRNG(SEED));
+                for (int i=0;i<nbrOfInts;i++) {
+                    refs[i] = ref.nextInt();
+                }
+                final int[] ress = new int[nbrOfInts];
+                for (int n=0;n<nbrOfThreads;n++) {
+                    System.arraycopy(resByThreadIndex[n], 0, ress, n * nbrOfIntsPerThread, nbrOfIntsPerThread);
+                }
+                Arrays.sort(refs);
+                Arrays.sort(ress);
+                assertTrue(Arrays.equals(refs, ress));
+                
+                final ContentionStats stats;
+                if (mt) {
+                    stats = ((MTConcRNG)random).getContentionStats();
+                } else {
+                    stats = ((RandomConcRNG)random).getContentionStats();
+                }
+                // Each call succeeds with its last attempt.
+                assertTrue(stats.getNbrOfAttempts() >= nbrOfInts);
+                assertTrue(stats.getNbrOfFailedCASes() <= stats.getNbrOfAttempts() - nbrOfInts);
+                if (mt) {
+                    // One swap per state regeneration.
+                    final int nbrOfRegenerations = nbrOfInts / MTUtils.N;
+                    assertTrue(Math.abs(stats.getNbrOfHolderSwaps() - nbrOfRegenerations) <= 1);
+                } else {
+                    assertEquals(stats.getNbrOfAttempts() - nbrOfInts, stats.getNbrOfFailedCASes());
+                    assertEquals(0, stats.getNbrOfHolderSwaps());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests 64 bits Mersenne-Twisters nextLong() and nextInt() outputs.
+     */
+    public void test_MT64s_nextLong_nextInt() {
+        for (boolean conc : new boolean[]{false,true}) {
+            /*
+             * Output from
+             * http://www.math.sci.hiroshima-u.ac.jp/~m-mat/MT/emt64.html
+             * (init_by_array64, genrand64_int64()).
+             */
+            
+            final long[] initKey = new long[]{0x12345L, 0x23456L, 0x34567L, 0x45678L};
+            final AbstractRNG random = conc ? new MT64ConcRNG(initKey, 4) : new MT64SeqRNG(initKey, 4);
+            
+            // Unsigned values 16945909448695747420 and 16394063075524226720
+            // being written as signed ones.
+            long[] expected_0001_to_0005 = new long[]{
+                    7266447313870364031L, 4946485549665804864L, -1500834625013804196L,
+                    -2052680998185324896L, 4873882236456199058L};
+            
+            for (int i=0;i<expected_0001_to_0005.length;i++) {
+                assertEquals(expected_0001_to_0005[i], random.nextLong());
+            }
+            
+            /*
+             * nextInt() uses MSBits, including across state regenerations.
+             */
+            
+            final AbstractRNG ref = conc ? new MT64ConcRNG(SEED) : new MT64SeqRNG(SEED);
+            final AbstractRNG res = conc ? new MT64ConcRNG(SEED) : new MT64SeqRNG(SEED);
+            for (int i=0;i<3*MT64Utils.N;i++) {
+                assertEquals((int)(ref.nextLong()>>>32), res.nextInt());
+            }
+        }
+        
+        /*
+         * Keys.
+         */
+        
+        for (int keyLength : new int[]{Integer.MIN_VALUE,-1,0}) {
+            try {
+                new MT64SeqRNG(new long[1], keyLength);
+                assertTrue(false);
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            try {
+                new MT64ConcRNG(new long[1], keyLength);
+                assertTrue(false);
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+    }
+
+    /**
+     * Tests than concurrent 64 bits Mersenne-Twister, when used sequentially,
+     * gives same output than sequential one.
+     */
+    public void test_MT64s_homogeneity_sequential() {
+        final Random random = new Random(SEED);
+        final MT64SeqRNG seq = new MT64SeqRNG(SEED);
+        final MT64ConcRNG conc = new MT64ConcRNG(SEED);
+        final int[] bitSizes = new int[]{1,8,16,32,64};
+        for (int i=0;i<DEFAULT_MAX_NBR_OF_CALLS;i++) {
+            final int bitSize = bitSizes[random.nextInt(bitSizes.length)];
+            final long ref = nextBits(seq, bitSize);
+            final long res = nextBits(conc, bitSize);
+            assertEquals(ref, res);
+        }
+    }
+
+    /**
+     * Tests SFMTs nextInt() and nextLong() outputs.
+     */
+    public void test_SFMTs_nextInt_nextLong() {
+        for (AbstractRNG random : new AbstractRNG[]{
+                new SFMTSeqRNG(1234),
+                new SFMTSyncRNG(1234),
+                new SFMTConcRNG(1234)}) {
+            /*
+             * Output of original implementation (SFMT19937, init_gen_rand(1234)).
+             */
+            
+            int[] expected_0001_to_0010 = new int[]{
+                    (int)3440181298L, 1564997079, 1510669302, (int)2930277156L, 1452439940,
+                    (int)3796268453L, 423124208, 2143818589, (int)3827219408L, (int)2987036003L};
+            
+            for (int i=0;i<expected_0001_to_0010.length;i++) {
+                assertEquals(expected_0001_to_0010[i], random.nextInt());
+            }
+        }
+        
+        /*
+         * nextLong() uses two successive words, first one as LSBits,
+         * including across state regenerations.
+         */
+        
+        for (int firstInts : new int[]{0,1,SFMTUtils.N32-1,SFMTUtils.N32}) {
+            for (AbstractRNG random : new AbstractRNG[]{
+                    new SFMTSeqRNG(SEED),
+                    new SFMTConcRNG(SEED)}) {
+                final SFMTSeqRNG ref = new SFMTSeqRNG(SEED);
+                for (int i=0;i<firstInts;i++) {
+                    assertEquals(ref.nextInt(), random.nextInt());
+                }
+                for (int i=0;i<2*SFMTUtils.N32;i++) {
+                    final int lo = ref.nextInt();
+                    final int hi = ref.nextInt();
+                    assertEquals((((long)hi)<<32) | (lo & 0xFFFFFFFFL), random.nextLong());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests than concurrent SFMT, when used sequentially,
+     * gives same output than sequential one.
+     */
+    public void test_SFMTs_homogeneity_sequential() {
+        final Random random = new Random(SEED);
+        final SFMTSeqRNG seq = new SFMTSeqRNG(SEED);
+        final SFMTConcRNG conc = new SFMTConcRNG(SEED);
+        final int[] bitSizes = new int[]{1,8,16,32,64};
+        for (int i=0;i<DEFAULT_MAX_NBR_OF_CALLS;i++) {
+            final int bitSize = bitSizes[random.nextInt(bitSizes.length)];
+            final long ref = nextBits(seq, bitSize);
+            final long res = nextBits(conc, bitSize);
+            assertEquals(ref, res);
+        }
+        
+        final int[] initKey = new int[]{1,2,3,5,7,11};
+        seq.setSeed(initKey, initKey.length);
+        conc.setSeed(initKey, initKey.length);
+        final SFMTSyncRNG sync = new SFMTSyncRNG(initKey, initKey.length);
+        for (int i=0;i<10*SFMTUtils.N32;i++) {
+            final int ref = seq.nextInt();
+            assertEquals(ref, conc.nextInt());
+            assertEquals(ref, sync.nextInt());
+        }
+    }
+
+    /**
+     * Tests DSFMTSeqRNG nextDouble() and nextInt() outputs.
+     */
+    public void test_DSFMTSeqRNG_nextDouble_nextInt() {
+        /*
+         * Output of original implementation (dSFMT19937, init_gen_rand(0),
+         * dsfmt_genrand_close1_open2(), printed with 15 digits).
+         */
+        
+        final DSFMTSeqRNG random = new DSFMTSeqRNG(0L);
+        final double[] expected_0001_to_0004 = new double[]{
+                1.030581026769374, 1.213140320067012, 1.299002525016001, 1.381138853044628};
+        for (int i=0;i<expected_0001_to_0004.length;i++) {
+            assertEquals(expected_0001_to_0004[i], random.nextDouble() + 1.0, 1e-15);
+        }
+        
+        /*
+         * nextInt() uses the 32 LSBits of a word, and nextDouble()
+         * the 52 LSBits, including across state regenerations.
+         */
+        
+        final DSFMTSeqRNG ref = new DSFMTSeqRNG(SEED);
+        final DSFMTSeqRNG res = new DSFMTSeqRNG(SEED);
+        for (int i=0;i<3*DSFMTUtils.N64;i++) {
+            final double a = ref.nextDouble();
+            assertTrue((a >= 0.0) && (a < 1.0));
+            final long bits = Double.doubleToRawLongBits(a + 1.0);
+            if ((i&1) == 0) {
+                assertEquals((int)bits, res.nextInt());
+            } else {
+                assertEquals(a, res.nextDouble());
+            }
+        }
+    }
+
+    /**
+     * Tests xoshiro256** and xoroshiro128++ outputs, and jumps.
+     */
+    public void test_Xoshiros_nextLong_jump_longJump() {
+        /*
+         * Outputs of original implementations, from states {1,2,3,4}
+         * and {1,2}.
+         */
+        
+        {
+            final Xoshiro256StarStarSeqRNG random = new Xoshiro256StarStarSeqRNG();
+            random.setState(newLongsState(new long[]{1L,2L,3L,4L}));
+            final long[] expected = new long[]{
+                    11520L, 0L, 1509978240L, 1215971899390074240L, 1216172134540287360L};
+            for (int i=0;i<expected.length;i++) {
+                assertEquals(expected[i], random.nextLong());
+            }
+        }
+        {
+            final Xoroshiro128PlusPlusSeqRNG random = new Xoroshiro128PlusPlusSeqRNG();
+            random.setState(newLongsState(new long[]{1L,2L}));
+            final long[] expected = new long[]{
+                    393217L, 669327710093319L, 1732421326133921491L,
+                    -7051953992050424633L, -8891291296936358940L};
+            for (int i=0;i<expected.length;i++) {
+                assertEquals(expected[i], random.nextLong());
+            }
+        }
+        
+        /*
+         * States and outputs after jumps, from states {1,2,3,4} and {1,2},
+         * as given by original jump() and long_jump() implementations
+         * (and by the 2^k-th power of the transition matrix over GF(2)).
+         */
+        
+        for (boolean longJump : new boolean[]{false,true}) {
+            final Xoshiro256StarStarSeqRNG random = new Xoshiro256StarStarSeqRNG();
+            random.setState(newLongsState(new long[]{1L,2L,3L,4L}));
+            final long[] expectedState;
+            final long[] expected;
+            if (longJump) {
+                random.longJump();
+                expectedState = new long[]{
+                        678511610814637056L, -2596244294217022186L,
+                        6002989639035333134L, 3559352929785830385L};
+                expected = new long[]{
+                        5942309088398569549L, -2821296343772193180L, 6925613901769781251L};
+            } else {
+                random.jump();
+                expectedState = new long[]{
+                        -8324317625228856367L, 8079205330032121950L,
+                        7289065458748526725L, -8969279818415701936L};
+                expected = new long[]{
+                        -4912596984176294952L, 7126240192422241655L, 3805973808039778091L};
+            }
+            final ByteBuffer bb = ByteBuffer.wrap(random.getState());
+            for (int i=0;i<expectedState.length;i++) {
+                assertEquals(expectedState[i], bb.getLong());
+            }
+            for (int i=0;i<expected.length;i++) {
+                assertEquals(expected[i], random.nextLong());
+            }
+        }
+        for (boolean longJump : new boolean[]{false,true}) {
+            final Xoroshiro128PlusPlusSeqRNG random = new Xoroshiro128PlusPlusSeqRNG();
+            random.setState(newLongsState(new long[]{1L,2L}));
+            final long[] expectedState;
+            final long[] expected;
+            if (longJump) {
+                random.longJump();
+                expectedState = new long[]{2219032219420146153L, -8791527772551021949L};
+                expected = new long[]{
+                        -4969865514671635588L, 4599739792799904096L, -8854402046079075940L};
+            } else {
+                random.jump();
+                expectedState = new long[]{8625214420338730171L, -716342956333757118L};
+                expected = new long[]{
+                        6995778298204176446L, -840402565351164743L, -178510488483929274L};
+            }
+            final ByteBuffer bb = ByteBuffer.wrap(random.getState());
+            for (int i=0;i<expectedState.length;i++) {
+                assertEquals(expectedState[i], bb.getLong());
+            }
+            for (int i=0;i<expected.length;i++) {
+                assertEquals(expected[i], random.nextLong());
+            }
+        }
+        
+        /*
+         * Jumps are polynomials of the transition, so they commute,
+         * and they must not modify stored bits.
+         */
+        
+        {
+            final Xoshiro256StarStarSeqRNG a = new Xoshiro256StarStarSeqRNG(SEED);
+            final Xoshiro256StarStarSeqRNG b = new Xoshiro256StarStarSeqRNG(SEED);
+            a.nextBit();
+            b.nextBit();
+            final Xoshiro256StarStarSeqRNG c = new Xoshiro256StarStarSeqRNG(SEED);
+            a.jump();
+            a.longJump();
+            b.longJump();
+            b.jump();
+            assertTrue(Arrays.equals(a.getState(), b.getState()));
+            c.nextBit();
+            assertEquals(c.getCurrentNbrOfStoredBits(), a.getCurrentNbrOfStoredBits());
+            assertEquals(c.getCurrentStoredBits(), a.getCurrentStoredBits());
+            assertTrue(c.nextLong() != a.nextLong());
+        }
+        {
+            final Xoroshiro128PlusPlusSeqRNG a = new Xoroshiro128PlusPlusSeqRNG(SEED);
+            final Xoroshiro128PlusPlusSeqRNG b = new Xoroshiro128PlusPlusSeqRNG(SEED);
+            a.nextBit();
+            b.nextBit();
+            final Xoroshiro128PlusPlusSeqRNG c = new Xoroshiro128PlusPlusSeqRNG(SEED);
+            a.jump();
+            a.longJump();
+            b.longJump();
+            b.jump();
+            assertTrue(Arrays.equals(a.getState(), b.getState()));
+            c.nextBit();
+            assertEquals(c.getCurrentNbrOfStoredBits(), a.getCurrentNbrOfStoredBits());
+            assertEquals(c.getCurrentStoredBits(), a.getCurrentStoredBits());
+            assertTrue(c.nextLong() != a.nextLong());
+        }
+    }
+
+    /**
+     * Tests PCG64SeqRNG outputs, advance(long) and distance(PCG64SeqRNG).
+     */
+    public void test_PCG64SeqRNG_nextLong_advance_distance() {
+        final byte[] state = newLongsState(new long[]{
+                0x0123456789ABCDEFL, 0xFEDCBA9876543210L,
+                0x1111111111111111L, 0x2222222222222223L});
+        
+        /*
+         * Outputs computed with 128 bits arithmetic.
+         */
+        
+        {
+            final PCG64SeqRNG random = new PCG64SeqRNG();
+            random.setState(state);
+            final long[] expected = new long[]{
+                    -6502366247390919518L, 3821531367282631979L,
+                    4024874779112981246L, 2580867437274456663L};
+            for (int i=0;i<expected.length;i++) {
+                assertEquals(expected[i], random.nextLong());
+            }
+            
+            random.setState(state);
+            random.advance(1000);
+            assertEquals(6288034445208338371L, random.nextLong());
+        }
+        
+        /*
+         * Consistency with nextLong(), backward moves, and distance.
+         */
+        
+        final Random deltaRandom = new Random(SEED);
+        for (long delta : new long[]{0,1,2,3,100,1000,-1,-2,-1000,
+                Long.MAX_VALUE,Long.MIN_VALUE,deltaRandom.nextLong()}) {
+            final PCG64SeqRNG ref = new PCG64SeqRNG(SEED);
+            final PCG64SeqRNG res = new PCG64SeqRNG(SEED);
+            if ((delta >= 0) && (delta <= 1000)) {
+                for (int i=0;i<delta;i++) {
+                    ref.nextLong();
+                }
+                res.advance(delta);
+                assertTrue(Arrays.equals(ref.getState(), res.getState()));
+            } else {
+                res.advance(delta);
+            }
+            final PCG64SeqRNG base = new PCG64SeqRNG(SEED);
+            assertEquals(delta, base.distance(res));
+            if (delta == Long.MIN_VALUE) {
+                // 2^63 not in long range.
+                try {
+                    res.distance(base);
+                    assertTrue(false);
+                } catch (ArithmeticException e) {
+                    // ok
+                }
+                res.advance(Long.MAX_VALUE);
+                res.advance(1);
+            } else {
+                assertEquals(-delta, res.distance(base));
+                res.advance(-delta);
+            }
+            assertTrue(Arrays.equals(base.getState(), res.getState()));
+        }
+        
+        /*
+         * Stored bits not modified by advance.
+         */
+        
+        {
+            final PCG64SeqRNG random = new PCG64SeqRNG(SEED);
+            random.nextBit();
+            final int storedBits = random.getCurrentStoredBits();
+            random.advance(1234567);
+            assertEquals(31, random.getCurrentNbrOfStoredBits());
+            assertEquals(storedBits, random.getCurrentStoredBits());
+        }
+        
+        /*
+         * Exceptions.
+         */
+        
+        {
+            final PCG64SeqRNG a = new PCG64SeqRNG(SEED);
+            final PCG64SeqRNG b = new PCG64SeqRNG(SEED+1);
+            try {
+                a.distance(b);
+                assertTrue(false);
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+            
+            // Distance of 2^64 (as two advances of 2^63).
+            b.setState(a.getState());
+            b.advance(Long.MIN_VALUE);
+            b.advance(Long.MIN_VALUE);
+            b.advance(Long.MIN_VALUE);
+            b.advance(Long.MIN_VALUE);
+            b.advance(Long.MIN_VALUE);
+            try {
+                a.distance(b);
+                assertTrue(false);
+            } catch (ArithmeticException e) {
+                // ok
+            }
+        }
+    }
+
+    /**
+     * Tests SplittableSeqRNG gives same outputs than SplittableRandom (Java 8),
+     * split() included.
+     */
+    public void test_SplittableSeqRNG_nextLong_nextInt_split() {
+        final SplittableSeqRNG random = new SplittableSeqRNG(123L);
+        assertEquals(-5414281315512073941L, random.nextLong());
+        assertEquals(-431715638815246468L, random.nextLong());
+        assertEquals(-1511220291, random.nextInt());
+        assertEquals(211996644, random.nextInt());
+        
+        final SplittableSeqRNG child = random.split();
+        assertEquals(5102631177058905679L, child.nextLong());
+        assertEquals(1873252690, child.nextInt());
+        assertEquals(-1113931806880482L, random.nextLong());
+    }
+
+    /**
+     * Tests SplittableSeqRNG methods claimed to give same outputs than
+     * SplittableRandom, against it, if available (Java 8 or later,
+     * hence the use of reflection).
+     */
+    public void test_SplittableSeqRNG_vs_SplittableRandom() throws Exception {
+        final Class<?> srClass;
+        try {
+            srClass = Class.forName("java.util.SplittableRandom");
+        } catch (ClassNotFoundException e) {
+            // Java 7 or earlier: nothing to compare with.
+            return;
+        }
+        final Constructor<?> srConstructor = srClass.getConstructor(long.class);
+        final Method srNextInt = srClass.getMethod("nextInt");
+        final Method srNextLong = srClass.getMethod("nextLong");
+        final Method srSplit = srClass.getMethod("split");
+        
+        final Random seeder = new Random(SEED);
+        for (int k=0;k<100;k++) {
+            final long seed = seeder.nextLong();
+            SplittableSeqRNG random = new SplittableSeqRNG(seed);
+            Object ref = srConstructor.newInstance(seed);
+            for (int i=0;i<1000;i++) {
+                final int op = seeder.nextInt(5);
+                if (op == 0) {
+                    assertEquals(srNextInt.invoke(ref), random.nextInt());
+                } else if (op == 1) {
+                    assertEquals(srNextLong.invoke(ref), random.nextLong());
+                } else if (op == 2) {
+                    final int[] ints = new int[seeder.nextInt(10)];
+                    random.nextInts(ints, 0, ints.length);
+                    for (int j=0;j<ints.length;j++) {
+                        assertEquals(srNextInt.invoke(ref), ints[j]);
+                    }
+                } else if (op == 3) {
+                    final long[] longs = new long[seeder.nextInt(10)];
+                    random.nextLongs(longs, 0, longs.length);
+                    for (int j=0;j<longs.length;j++) {
+                        assertEquals(srNextLong.invoke(ref), longs[j]);
+                    }
+                } else {
+                    // Continuing with the child, or with the parent.
+                    final SplittableSeqRNG child = random.split();
+                    final Object refChild = srSplit.invoke(ref);
+                    if (seeder.nextBoolean()) {
+                        random = child;
+                        ref = refChild;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests StripedConcRNG stripes seeding, and constructor with RNGs.
+     */
+    public void test_StripedConcRNG_stripes() {
+        /*
+         * Default stripes: each one jumped from the previous one.
+         */
+        
+        {
+            final int nbrOfStripes = 3;
+            final StripedConcRNG random = new StripedConcRNG(SEED, nbrOfStripes);
+            assertEquals(nbrOfStripes, random.getNbrOfStripes());
+            
+            final Xoshiro256StarStarSeqRNG ref = new Xoshiro256StarStarSeqRNG(SEED);
+            final ByteBuffer bb = ByteBuffer.wrap(random.getState());
+            assertEquals(nbrOfStripes, bb.getInt());
+            for (int i=0;i<nbrOfStripes;i++) {
+                final byte[] expected = ref.getState();
+                final byte[] actual = new byte[bb.getInt()];
+                bb.get(actual);
+                assertTrue(Arrays.equals(expected, actual));
+                ref.jump();
+            }
+            assertEquals(0, bb.remaining());
+            
+            try {
+                new StripedConcRNG(SEED, nbrOfStripes+1).setState(random.getState());
+                assertTrue(false);
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+        
+        /*
+         * Specified stripes: used as they are,
+         * and seeded with different seeds.
+         */
+        
+        {
+            final StripedConcRNG random = new StripedConcRNG(
+                    new AbstractSeqRNG[]{new MXSLongSeqRNG(SEED)});
+            final MXSLongSeqRNG ref = new MXSLongSeqRNG(SEED);
+            for (int i=0;i<1000;i++) {
+                assertEquals(ref.nextBit(), random.nextBit());
+                assertEquals(ref.nextLong(), random.nextLong());
+            }
+        }
+        {
+            final MXSLongSeqRNG rng1 = new MXSLongSeqRNG();
+            final MXSLongSeqRNG rng2 = new MXSLongSeqRNG();
+            final StripedConcRNG random = new StripedConcRNG(new AbstractSeqRNG[]{rng1, rng2});
+            random.setSeed(SEED);
+            assertTrue(rng1.nextLong() != rng2.nextLong());
+        }
+        
+        try {
+            new StripedConcRNG(new AbstractSeqRNG[0]);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+        try {
+            new StripedConcRNG(new AbstractSeqRNG[]{new MXSLongSeqRNG(), null});
+            assertTrue(false);
+        } catch (NullPointerException e) {
+            // ok
+        }
+        try {
+            final MXSLongSeqRNG rng = new MXSLongSeqRNG();
+            new StripedConcRNG(new AbstractSeqRNG[]{rng, new MXSLongSeqRNG(), rng});
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+        try {
+            new StripedConcRNG(SEED, 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Tests that, with more threads than stripes, values generated
+     * concurrently are exactly the first values of each stripe's sequence,
+     * i.e. that no value is lost or generated twice.
+     */
+    public void test_StripedConcRNG_concurrent() {
+        final int nbrOfThreads = 8;
+        final int nbrOfCallsPerThread = 100*1000;
+        final int nbrOfStripes = 3;
+
+        final StripedConcRNG random = new StripedConcRNG(SEED, nbrOfStripes);
+        
+        final long[][] resByThreadIndex = new long[nbrOfThreads][nbrOfCallsPerThread];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final long[] threadRes = resByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    for (int i=0;i<nbrOfCallsPerThread;i++) {
+                        threadRes[i] = random.nextLong();
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        final HashSet<Long> resSet = new HashSet<Long>();
+        for (long[] threadRes : resByThreadIndex) {
+            for (long value : threadRes) {
+                resSet.add(value);
+            }
+        }
+        assertEquals(nbrOfThreads * nbrOfCallsPerThread, resSet.size());
+        
+        // Removing the sequence of each stripe, up to its first value
+        // not generated.
+        final Xoshiro256StarStarSeqRNG ref = new Xoshiro256StarStarSeqRNG(SEED);
+        for (int k=0;k<nbrOfStripes;k++) {
+            final Xoshiro256StarStarSeqRNG stripeRef = new Xoshiro256StarStarSeqRNG();
+            stripeRef.setState(ref.getState());
+            while (resSet.remove(stripeRef.nextLong())) {
+            }
+            ref.jump();
+        }
+        assertEquals(0, resSet.size());
+    }
+
+    /**
+     * Tests that, used by a single thread, PrefetchConcRNG gives the longs
+     * of its backing RNG, also after seeding, and shutdown.
+     */
+    public void test_PrefetchConcRNG_sequential() {
+        for (int capacity : new int[]{2,64,4096}) {
+            final MTSeqRNG ref = new MTSeqRNG(SEED);
+            final PrefetchConcRNG random = new PrefetchConcRNG(new MTSeqRNG(SEED), capacity);
+            assertEquals(capacity, random.getCapacity());
+            final Random opRandom = new Random(SEED);
+            for (int k=0;k<1000;k++) {
+                if (opRandom.nextBoolean()) {
+                    assertEquals(ref.nextLong(), random.nextLong());
+                } else {
+                    final int len = opRandom.nextInt(3 * capacity);
+                    final long[] expected = new long[len];
+                    final long[] actual = new long[len];
+                    ref.nextLongs(expected, 0, len);
+                    random.nextLongs(actual, 0, len);
+                    assertTrue(Arrays.equals(expected, actual));
+                }
+            }
+            
+            random.setSeed(SEED);
+            ref.setSeed(SEED);
+            for (int k=0;k<1000;k++) {
+                assertEquals(ref.nextLong(), random.nextLong());
+            }
+            
+            random.shutdown();
+            try {
+                // Producer can't have filled more than the ring.
+                for (int k=0;k<=capacity;k++) {
+                    assertEquals(ref.nextLong(), random.nextLong());
+                }
+                assertTrue(false);
+            } catch (IllegalStateException e) {
+                // ok
+            }
+        }
+        
+        for (int capacity : new int[]{-1,0,1,3,100}) {
+            try {
+                new PrefetchConcRNG(new MTSeqRNG(), capacity);
+                assertTrue(false);
+            } catch (IllegalArgumentException e) {
+                // ok
+            }
+        }
+        try {
+            new PrefetchConcRNG(null);
+            assertTrue(false);
+        } catch (NullPointerException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Tests that longs generated concurrently by PrefetchConcRNG, with a ring
+     * smaller than the number of longs generated, are exactly the first longs
+     * of its backing RNG.
+     */
+    public void test_PrefetchConcRNG_concurrent() {
+        final int nbrOfThreads = 4;
+        final int nbrOfCallsPerThread = 100*1000;
+        
+        final PrefetchConcRNG random = new PrefetchConcRNG(new MTSeqRNG(SEED), 256);
+        
+        final long[][] resByThreadIndex = new long[nbrOfThreads][nbrOfCallsPerThread];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final long[] threadRes = resByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    final Random lenRandom = new Random();
+                    int i = 0;
+                    while (i < nbrOfCallsPerThread) {
+                        if (lenRandom.nextBoolean()) {
+                            threadRes[i++] = random.nextLong();
+                        } else {
+                            final int len = Math.min(lenRandom.nextInt(1000), nbrOfCallsPerThread - i);
+                            random.nextLongs(threadRes, i, len);
+                            i += len;
+                        }
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        random.shutdown();
+        
+        final int nbrOfLongs = nbrOfThreads * nbrOfCallsPerThread;
+        final long[] refs = new long[nbrOfLongs];
+        new MTSeqRNG(SEED).nextLongs(refs, 0, nbrOfLongs);
+        final long[] ress = new long[nbrOfLongs];
+        for (int n=0;n<nbrOfThreads;n++) {
+            System.arraycopy(resByThreadIndex[n], 0, ress, n * nbrOfCallsPerThread, nbrOfCallsPerThread);
+        }
+        Arrays.sort(refs);
+        Arrays.sort(ress);
+        assertTrue(Arrays.equals(refs, ress));
+    }
+
+    /**
+     * Tests that concurrent seedings of PrefetchConcRNG don't orphan
+     * producers, i.e. that only one producer is alive afterwards,
+     * and none once it has been shut down.
+     */
+    public void test_PrefetchConcRNG_setSeed_concurrent() {
+        final int nbrOfThreads = 4;
+        final int nbrOfSeedingsPerThread = 100;
+        
+        final Set<Thread> producersBefore = getAlivePrefetchProducers();
+        
+        final PrefetchConcRNG random = new PrefetchConcRNG(new MTSeqRNG(SEED), 256);
+        
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    for (int i=0;i<nbrOfSeedingsPerThread;i++) {
+                        random.setSeed(i);
+                        random.nextLong();
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        final Set<Thread> producers = getAlivePrefetchProducers();
+        producers.removeAll(producersBefore);
+        assertEquals(1, producers.size());
+        
+        random.shutdown();
+        for (Thread producer : producers) {
+            try {
+                producer.join(10L * 1000L);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        final Set<Thread> producersAfter = getAlivePrefetchProducers();
+        producersAfter.removeAll(producersBefore);
+        assertEquals(0, producersAfter.size());
+    }
+
+    /**
+     * Tests that values generated concurrently by CombiningSyncRNG, through
+     * scalar and bulk methods, are exactly the first values of its backing
+     * RNG, and that it gives the same values when used sequentially.
+     */
+    public void test_CombiningSyncRNG() {
+        {
+            final MTSeqRNG ref = new MTSeqRNG(SEED);
+            final CombiningSyncRNG random = new CombiningSyncRNG(new MTSeqRNG(SEED), 1);
+            for (int k=0;k<1000;k++) {
+                assertEquals(ref.nextBit(), random.nextBit());
+                assertEquals(ref.nextInt(), random.nextInt());
+                assertEquals(ref.nextLong(), random.nextLong());
+                assertEquals(ref.nextFloat(), random.nextFloat());
+                assertEquals(ref.nextDouble(), random.nextDouble());
+                assertEquals(ref.nextGaussian(), random.nextGaussian());
+                assertEquals(ref.nextInt(k+1), random.nextInt(k+1));
+                assertEquals(ref.nextLong(k+1), random.nextLong(k+1));
+                assertEquals(ref.nextLong(Long.MAX_VALUE-k), random.nextLong(Long.MAX_VALUE-k));
+            }
+            for (int len : new int[]{0, 1, 7, 8, 9, 100}) {
+                final int n = 3 + len;
+                {
+                    final int[] expected = new int[len + 2];
+                    final int[] actual = new int[len + 2];
+                    ref.nextInts(expected, 1, len, n);
+                    random.nextInts(actual, 1, len, n);
+                    assertTrue(Arrays.equals(expected, actual));
+                }
+                {
+                    final long[] expected = new long[len + 2];
+                    final long[] actual = new long[len + 2];
+                    ref.nextLongs(expected, 1, len, Long.MAX_VALUE - n);
+                    random.nextLongs(actual, 1, len, Long.MAX_VALUE - n);
+                    assertTrue(Arrays.equals(expected, actual));
+                }
+                for (boolean direct : new boolean[]{false, true}) {
+                    final ByteBuffer expected = direct ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+                    final ByteBuffer actual = direct ? ByteBuffer.allocateDirect(len) : ByteBuffer.allocate(len);
+                    ref.nextBytes(expected);
+                    random.nextBytes(actual);
+                    assertEquals(len, actual.position());
+                    assertEquals(expected.flip(), actual.flip());
+                    
+                    final FloatBuffer expectedF = newFloatBuffer(direct, new long[len + 2], 1, len);
+                    final FloatBuffer actualF = newFloatBuffer(direct, new long[len + 2], 1, len);
+                    ref.nextFloats(expectedF);
+                    random.nextFloats(actualF);
+                    assertEquals(expectedF.limit(), actualF.position());
+                    assertEquals(expectedF.flip(), actualF.flip());
+                    
+                    final DoubleBuffer expectedD = newDoubleBuffer(direct, new long[len + 2], 1, len);
+                    final DoubleBuffer actualD = newDoubleBuffer(direct, new long[len + 2], 1, len);
+                    ref.nextDoubles(expectedD);
+                    random.nextDoubles(actualD);
+                    assertEquals(expectedD.limit(), actualD.position());
+                    assertEquals(expectedD.flip(), actualD.flip());
+                }
+            }
+            assertEquals(ref.nextLong(), random.nextLong());
+        }
+        
+        /*
+         * Bounded and buffer methods served as one request,
+         * i.e. delegated to the same method of the backing RNG.
+         */
+        
+        {
+            final int[] counter = new int[1];
+            final MTSeqRNG backing = new MTSeqRNG(SEED) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                public int nextInt(int n) {
+                    counter[0]++;
+                    return super.nextInt(n);
+                }
+                @Override
+                public long nextLong(long n) {
+                    counter[0]++;
+                    return super.nextLong(n);
+                }
+                @Override
+                public void nextInts(int[] dst, int off, int len, int n) {
+                    counter[0]++;
+                    super.nextInts(dst, off, len, n);
+                }
+                @Override
+                public void nextLongs(long[] dst, int off, int len, long n) {
+                    counter[0]++;
+                    super.nextLongs(dst, off, len, n);
+                }
+                @Override
+                public void nextBytes(ByteBuffer dst) {
+                    counter[0]++;
+                    super.nextBytes(dst);
+                }
+                @Override
+                public void nextFloats(FloatBuffer dst) {
+                    counter[0]++;
+                    super.nextFloats(dst);
+                }
+                @Override
+                public void nextDoubles(DoubleBuffer dst) {
+                    counter[0]++;
+                    super.nextDoubles(dst);
+                }
+            };
+            final CombiningSyncRNG random = new CombiningSyncRNG(backing, 1);
+            random.nextInt(3);
+            random.nextLong(Long.MAX_VALUE);
+            random.nextInts(new int[10], 0, 10, 3);
+            random.nextLongs(new long[10], 0, 10, Long.MAX_VALUE);
+            random.nextBytes(ByteBuffer.allocate(10));
+            random.nextFloats(FloatBuffer.allocate(10));
+            random.nextDoubles(DoubleBuffer.allocate(10));
+            assertEquals(7, counter[0]);
+        }
+        
+        final int nbrOfThreads = 8;
+        final int nbrOfIntsPerThread = 100*1000;
+        
+        final CombiningSyncRNG random = new CombiningSyncRNG(new MTSeqRNG(SEED), 3);
+        
+        final int[][] resByThreadIndex = new int[nbrOfThreads][nbrOfIntsPerThread];
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        for (int n=0;n<nbrOfThreads;n++) {
+            final int[] threadRes = resByThreadIndex[n];
+            executor.execute(new Runnable() {
+                //@Override
+                public void run() {
+                    final Random opRandom = new Random();
+                    int i = 0;
+                    while (i < nbrOfIntsPerThread) {
+                        final int op = opRandom.nextInt(3);
+                        if ((op == 0) || (i == nbrOfIntsPerThread-1)) {
+                            threadRes[i++] = random.nextInt();
+                        } else if (op == 1) {
+                            // nextLong() adds the second int (signed)
+                            // to the first one shifted.
+                            final long bits = random.nextLong();
+                            final int lo = (int)bits;
+                            threadRes[i++] = (int)((bits - lo)>>>32);
+                            threadRes[i++] = lo;
+                        } else {
+                            final int len = Math.min(opRandom.nextInt(100), nbrOfIntsPerThread - i);
+                            random.nextInts(threadRes, i, len);
+                            i += len;
+                        }
+                    }
+                }
+            });
+        }
+        TestUtils.shutdownAndAwaitTermination(executor);
+        
+        final int nbrOfInts = nbrOfThreads * nbrOfIntsPerThread;
+        final int[] refs = new int[nbrOfInts];
+        new MTSeqRNG(SEED).nextInts(refs, 0, nbrOfInts);
+        final int[] ress = new int[nbrOfInts];
+        for (int n=0;n<nbrOfThreads;n++) {
+            System.arraycopy(resByThreadIndex[n], 0, ress, n * nbrOfIntsPerThread, nbrOfIntsPerThread);
+        }
+        Arrays.sort(refs);
+        Arrays.sort(ress);
+        assertTrue(Arrays.equals(refs, ress));
+        
+        try {
+            new CombiningSyncRNG(new MTSeqRNG(), 0);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+        try {
+            new CombiningSyncRNG(null);
+            assertTrue(false);
+        } catch (NullPointerException e) {
+            // ok
+        }
+    }
+
+    public void test_RandomUtilz_unsignedMultiplyHigh_twoPow64Remainder() {
+        final Random random = new Random(SEED);
+        final BigInteger twoPow64 = BigInteger.ONE.shiftLeft(64);
+        final long[] specials = new long[]{
+                0L,1L,2L,3L,-1L,-2L,
+                Integer.MAX_VALUE,Integer.MAX_VALUE+1L,Integer.MAX_VALUE+8L,
+                Long.MAX_VALUE,Long.MAX_VALUE-1,Long.MIN_VALUE};
+        for (int k=0;k<100*1000;k++) {
+            final long a = (k < specials.length) ? specials[k] : random.nextLong();
+            final long b = (k < specials.length) ? specials[specials.length-1-k] : random.nextLong() >> random.nextInt(64);
+            
+            final BigInteger ua = BigInteger.valueOf(a).and(twoPow64.subtract(BigInteger.ONE));
+            final BigInteger ub = BigInteger.valueOf(b).and(twoPow64.subtract(BigInteger.ONE));
+            assertEquals(ua.multiply(ub).shiftRight(64).longValue(), RandomUtilz.unsignedMultiplyHigh(a, b));
+            assertEquals(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).shiftRight(64).longValue(), RandomUtilz.multiplyHigh(a, b));
+            
+            if (b > 0) {
+                assertEquals(twoPow64.mod(BigInteger.valueOf(b)).longValue(), RandomUtilz.twoPow64Remainder(b));
+            }
+        }
+    }
+
+    public void test_MTSeqRNG_split() {
+        MTSeqRNG random1 = new MTSeqRNG(SEED);
+        MTSeqRNG random2 = random1.split();
         
         // Small enough for test to be likely to success,
         // large enough to test a few values.
@@ -1172,6 +3069,61 @@ public class RandomsTest extends TestCase {
         }
     }
 
+    /**
+     * Tests that, for each lock mode, MTSyncRNG gives the same values than
+     * MTSeqRNG, that values generated concurrently are exactly the first
+     * ones of the sequence, and that split() preserves the lock mode.
+     */
+    public void test_MTSyncRNG_lockModes() {
+        for (SyncRNG.LockMode lockMode : SyncRNG.LockMode.values()) {
+            final MTSyncRNG random = new MTSyncRNG(SEED, lockMode);
+            assertEquals(lockMode, random.getLockMode());
+            assertEquals(lockMode, random.split().getLockMode());
+            
+            random.setSeed(SEED);
+            final MTSeqRNG ref = new MTSeqRNG(SEED);
+            for (int i=0;i<1000;i++) {
+                assertEquals(ref.nextInt(), random.nextInt());
+            }
+            
+            random.setSeed(SEED);
+            final int nbrOfThreads = 4;
+            final int nbrOfIntsPerThread = 50*1000;
+            final int[][] resByThreadIndex = new int[nbrOfThreads][nbrOfIntsPerThread];
+            final ExecutorService executor = Executors.newCachedThreadPool();
+            for (int n=0;n<nbrOfThreads;n++) {
+                final int[] threadRes = resByThreadIndex[n];
+                executor.execute(new Runnable() {
+                    //@Override
+                    public void run() {
+                        for (int i=0;i<nbrOfIntsPerThread;i++) {
+                            threadRes[i] = random.nextInt();
+                        }
+                    }
+                });
+            }
+            TestUtils.shutdownAndAwaitTermination(executor);
+            
+            final int nbrOfInts = nbrOfThreads * nbrOfIntsPerThread;
+            final int[] refs = new int[nbrOfInts];
+            new MTSeqRNG(SEED).nextInts(refs, 0, nbrOfInts);
+            final int[] ress = new int[nbrOfInts];
+            for (int n=0;n<nbrOfThreads;n++) {
+                System.arraycopy(resByThreadIndex[n], 0, ress, n * nbrOfIntsPerThread, nbrOfIntsPerThread);
+            }
+            Arrays.sort(refs);
+            Arrays.sort(ress);
+            assertTrue(Arrays.equals(refs, ress));
+        }
+        
+        try {
+            new MTSyncRNG(SEED, null);
+            assertTrue(false);
+        } catch (NullPointerException e) {
+            // ok
+        }
+    }
+
     //--------------------------------------------------------------------------
     // PRIVATE METHODS
     //--------------------------------------------------------------------------
@@ -1206,6 +3158,79 @@ public class RandomsTest extends TestCase {
      * 
      */
 
+    /**
+     * @return A buffer of same capacity than the specified array,
+     *         with the specified range as position and limit,
+     *         or null if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    /**
+     * @return A state for RNGs which state is made of the specified longs,
+     *         with no stored bits.
+     */
+    private static byte[] newLongsState(long[] longs) {
+        final ByteBuffer bb = ByteBuffer.allocate(8*longs.length + RandomUtilz.getEncodingByteSizeForStoredBits());
+        for (long value : longs) {
+            bb.putLong(value);
+        }
+        RandomUtilz.encodeNbrOfStoredBits(0, bb);
+        RandomUtilz.encodeStoredBits(0, bb);
+        return bb.array();
+    }
+
+    private static FloatBuffer newFloatBuffer(boolean direct, long[] dst, int off, int len) {
+        if (dst == null) {
+            return null;
+        }
+        RandomUtilz.checkRange(dst.length, off, len);
+        final FloatBuffer result;
+        if (direct) {
+            result = ByteBuffer.allocateDirect(4 * dst.length).asFloatBuffer();
+        } else {
+            result = FloatBuffer.allocate(dst.length);
+        }
+        result.limit(off + len);
+        result.position(off);
+        return result;
+    }
+
+    /**
+     * @return A buffer of same capacity than the specified array,
+     *         with the specified range as position and limit,
+     *         or null if the specified array is null.
+     * @throws IndexOutOfBoundsException if the specified range is not
+     *         in the specified array.
+     */
+    private static DoubleBuffer newDoubleBuffer(boolean direct, long[] dst, int off, int len) {
+        if (dst == null) {
+            return null;
+        }
+        RandomUtilz.checkRange(dst.length, off, len);
+        final DoubleBuffer result;
+        if (direct) {
+            result = ByteBuffer.allocateDirect(8 * dst.length).asDoubleBuffer();
+        } else {
+            result = DoubleBuffer.allocate(dst.length);
+        }
+        result.limit(off + len);
+        result.position(off);
+        return result;
+    }
+
+    /**
+     * @return Alive producer threads of PrefetchConcRNG instances.
+     */
+    private static Set<Thread> getAlivePrefetchProducers() {
+        final Set<Thread> result = new HashSet<Thread>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().equals("PrefetchConcRNG-producer")) {
+                result.add(thread);
+            }
+        }
+        return result;
+    }
+
     /**
      * @return Random bits as LSBits, other bits being 0.
      */
@@ -1303,6 +3328,21 @@ public class RandomsTest extends TestCase {
         }
     }
 
+    /**
+     * @return Seeded instances of AbstractRNG built by factories
+     *         (sequential ones included).
+     */
+    private static ArrayList<AbstractRNG> newAbstractRNGs() {
+        ArrayList<AbstractRNG> result = new ArrayList<AbstractRNG>();
+        for (MyInterfaceRandomFactory factory : newFactories(true)) {
+            final Random random = factory.newRandom(SEED);
+            if (random instanceof AbstractRNG) {
+                result.add((AbstractRNG)random);
+            }
+        }
+        return result;
+    }
+
     private static ArrayList<MyInterfaceRandomFactory> newFactories(boolean sequentialAllowed) {
         ArrayList<MyInterfaceRandomFactory> result = new ArrayList<MyInterfaceRandomFactory>();
         // Testing random, to test our tests.
@@ -1316,6 +3356,16 @@ public class RandomsTest extends TestCase {
             public Random newRandom(long seed){return new RandomConcRNG(seed);}
             public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
         });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new RandomWaitFreeConcRNG();}
+            public Random newRandom(long seed){return new RandomWaitFreeConcRNG(seed);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new CounterConcRNG();}
+            public Random newRandom(long seed){return new CounterConcRNG(seed);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
         result.add(new MyInterfaceRandomFactory() {
             public Random newRandom(){return new RandomRNGAdapter(new Random());}
             public Random newRandom(long seed){return new RandomRNGAdapter(new Random(seed));}
@@ -1326,17 +3376,102 @@ public class RandomsTest extends TestCase {
             public Random newRandom(long seed){return new MTConcRNG(seed);}
             public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
         });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new MTConcRNG(RandomUtilz.longPseudoEntropy(), 100);}
+            public Random newRandom(long seed){return new MTConcRNG(seed, 100);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new MTConcRNG(RandomUtilz.longPseudoEntropy(), 1, true);}
+            public Random newRandom(long seed){return new MTConcRNG(seed, 1, true);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new MTConcRNG(RandomUtilz.longPseudoEntropy(), 1, false, BackoffPolicy.RANDOMIZED, true);}
+            public Random newRandom(long seed){return new MTConcRNG(seed, 1, false, BackoffPolicy.RANDOMIZED, true);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
         result.add(new MyInterfaceRandomFactory() {
             public Random newRandom(){return new MTSyncRNG();}
             public Random newRandom(long seed){return new MTSyncRNG(seed);}
             public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
         });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new MTSyncRNG(RandomUtilz.longPseudoEntropy(), SyncRNG.LockMode.SPIN_THEN_PARK);}
+            public Random newRandom(long seed){return new MTSyncRNG(seed, SyncRNG.LockMode.SPIN_THEN_PARK);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new MT64ConcRNG();}
+            public Random newRandom(long seed){return new MT64ConcRNG(seed);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new SFMTConcRNG();}
+            public Random newRandom(long seed){return new SFMTConcRNG(seed);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new SFMTSyncRNG();}
+            public Random newRandom(long seed){return new SFMTSyncRNG(seed);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new StripedConcRNG();}
+            public Random newRandom(long seed){return new StripedConcRNG(seed);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new PrefetchConcRNG();}
+            public Random newRandom(long seed){return new PrefetchConcRNG(seed);}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
+        result.add(new MyInterfaceRandomFactory() {
+            public Random newRandom(){return new CombiningSyncRNG(new MTSeqRNG());}
+            public Random newRandom(long seed){return new CombiningSyncRNG(new MTSeqRNG(seed));}
+            public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+        });
         if (sequentialAllowed) {
             result.add(new MyInterfaceRandomFactory() {
                 public Random newRandom(){return new MTSeqRNG();}
                 public Random newRandom(long seed){return new MTSeqRNG(seed);}
                 public Random newRandom(Void dummy){return new MTSeqRNG(dummy);}
             });
+            result.add(new MyInterfaceRandomFactory() {
+                public Random newRandom(){return new MT64SeqRNG();}
+                public Random newRandom(long seed){return new MT64SeqRNG(seed);}
+                public Random newRandom(Void dummy){return new MT64SeqRNG(dummy);}
+            });
+            result.add(new MyInterfaceRandomFactory() {
+                public Random newRandom(){return new SFMTSeqRNG();}
+                public Random newRandom(long seed){return new SFMTSeqRNG(seed);}
+                public Random newRandom(Void dummy){return new SFMTSeqRNG(dummy);}
+            });
+            result.add(new MyInterfaceRandomFactory() {
+                public Random newRandom(){return new DSFMTSeqRNG();}
+                public Random newRandom(long seed){return new DSFMTSeqRNG(seed);}
+                public Random newRandom(Void dummy){return new DSFMTSeqRNG(dummy);}
+            });
+            result.add(new MyInterfaceRandomFactory() {
+                public Random newRandom(){return new Xoshiro256StarStarSeqRNG();}
+                public Random newRandom(long seed){return new Xoshiro256StarStarSeqRNG(seed);}
+                public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+            });
+            result.add(new MyInterfaceRandomFactory() {
+                public Random newRandom(){return new Xoroshiro128PlusPlusSeqRNG();}
+                public Random newRandom(long seed){return new Xoroshiro128PlusPlusSeqRNG(seed);}
+                public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+            });
+            result.add(new MyInterfaceRandomFactory() {
+                public Random newRandom(){return new PCG64SeqRNG();}
+                public Random newRandom(long seed){return new PCG64SeqRNG(seed);}
+                public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+            });
+            result.add(new MyInterfaceRandomFactory() {
+                public Random newRandom(){return new SplittableSeqRNG();}
+                public Random newRandom(long seed){return new SplittableSeqRNG(seed);}
+                public Random newRandom(Void dummy){throw new UnsupportedOperationException();}
+            });
             result.add(new MyInterfaceRandomFactory() {
                 public Random newRandom(){return new MXSIntSeqRNG();}
                 public Random newRandom(long seed){return new MXSIntSeqRNG(seed);}
@@ -50,6 +50,12 @@ public class ZigguratTest extends TestCase {
      * for sturdiness tests, we typically approach it.
      */
     private static final double MAX_X = Ziggurat.R_256 - StrictMath.log(1.0/(1L<<53)) * (1.0/Ziggurat.R_256);
+    
+    /**
+     * Max acceptable exponential x (= 44.43391803980815), for the tail
+     * uses a uniform double in [2^-53,1].
+     */
+    private static final double MAX_EXP_X = Ziggurat.EXP_R_256 - StrictMath.log(1.0/(1L<<53));
 
     //--------------------------------------------------------------------------
     // PRIVATE CLASSES
@@ -133,6 +139,30 @@ public class ZigguratTest extends TestCase {
         }
     }
     
+    /**
+     * Testing nextExponential(Random) sturdiness,
+     * with whatever sorts of nextLong().
+     */
+    public void test_nextExponential_Random_sturdiness() {
+        if (DEBUG) {
+            System.out.println("--- test_nextExponential_Random_sturdiness() ---");
+            System.out.println("SEED = "+SEED);
+        }
+        
+        final MySturdinessRandom random = new MySturdinessRandom();
+        
+        for (long i=0;i<NBR_OF_CALLS;i++) {
+            random.clearMemory();
+            final double value = Ziggurat.nextExponential(random);
+            if (!((value >= 0.0) && (value <= MAX_EXP_X))) {
+                System.out.println("SEED = "+SEED);
+                System.out.println("usedRandomInts = "+random.usedRandomInts);
+                System.out.println("usedRandomLongs = "+random.usedRandomLongs);
+                throw new AssertionError("out of range: "+value);
+            }
+        }
+    }
+    
     /*
      * 
      */
@@ -179,6 +209,55 @@ public class ZigguratTest extends TestCase {
         });
     }
 
+    /**
+     * Tests mean and variance, and that the proportion of values
+     * in each interval of a histogram, up to deep in the tail,
+     * matches the exponential distribution.
+     */
+    public void test_nextExponential_Random() {
+        if (DEBUG) {
+            System.out.println("--- test_nextExponential_Random() ---");
+            System.out.println("SEED = "+SEED);
+        }
+        final Random source = newSource(SEED);
+        
+        // Up to 16, i.e. P(x >= 16) = 1.1e-7, to test the tail.
+        final double binWidth = 0.25;
+        final int nbrOfBins = 64;
+        final long[] countByBin = new long[nbrOfBins+1];
+        double sum = 0.0;
+        double sumSq = 0.0;
+        for (long i=0;i<NBR_OF_CALLS;i++) {
+            final double value = Ziggurat.nextExponential(source);
+            sum += value;
+            sumSq += value * value;
+            countByBin[Math.min(nbrOfBins, (int)(value * (1.0/binWidth)))]++;
+        }
+        final double n = (double)NBR_OF_CALLS;
+        final double mean = sum / n;
+        final double variance = sumSq / n - mean * mean;
+        if (DEBUG) {
+            System.out.println("mean = "+mean);
+            System.out.println("variance = "+variance);
+        }
+        // Standard deviations of mean and of mean of squares
+        // are 1/sqrt(n) and sqrt(20/n).
+        assertEquals(1.0, mean, 5.0/Math.sqrt(n));
+        assertEquals(1.0, variance, 5.0*Math.sqrt(20.0/n) + 10.0/Math.sqrt(n));
+        
+        for (int k=0;k<=nbrOfBins;k++) {
+            final double pFrom = StrictMath.exp(-k * binWidth);
+            final double pTo = ((k == nbrOfBins) ? 0.0 : StrictMath.exp(-(k+1) * binWidth));
+            final double expected = n * (pFrom - pTo);
+            // 5 standard deviations (binomial, close to Poisson), plus some
+            // slack for bins with very few expected values.
+            final double tolerance = 5.0 * Math.sqrt(expected) + 3.0;
+            if (Math.abs(countByBin[k] - expected) > tolerance) {
+                throw new AssertionError("bin "+k+": "+countByBin[k]+" values, expected "+expected);
+            }
+        }
+    }
+
     //--------------------------------------------------------------------------
     // PRIVATE METHODS
     //--------------------------------------------------------------------------